@@ -4,6 +4,8 @@
 - Users can enter product details: **Title**, **Description**, **Price**
 - Displays a styled list of all added products
 - Uses in-memory storage with Java collections (no database yet)
+- The product list is an immutable snapshot published atomically, so products can be added from any thread while the list is being painted; versions share their full chunks, so adding a product does not copy the list
+- Search box ranks products by BM25 relevance over title and description (title words weigh more) and shows the best 50
 
 ## Components
 - A form to add products
@@ -19,7 +21,18 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReference;
 
 class Product {
     String title, description;
@@ -35,10 +48,143 @@ class Product {
     }
 }
 
+// Immutable, append-only list of products in chunks of CHUNK. Appending copies the last chunk and
+// the array of chunk references, never the products in the full chunks, which every later version shares.
+final class ProductList extends AbstractList<Product> implements RandomAccess {
+    static final ProductList EMPTY = new ProductList(new Product[0][], 0);
+    private static final int CHUNK = 64;
+
+    private final Product[][] chunks;
+    private final int size;
+
+    private ProductList(Product[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    ProductList plus(Product product) {
+        int chunk = size / CHUNK, offset = size % CHUNK;
+        Product[][] nextChunks = Arrays.copyOf(chunks, chunk + 1);
+        Product[] last = offset == 0 ? new Product[CHUNK] : chunks[chunk].clone();
+        last[offset] = product;
+        nextChunks[chunk] = last;
+        return new ProductList(nextChunks, size + 1);
+    }
+
+    public Product get(int index) {
+        Objects.checkIndex(index, size);
+        return chunks[index / CHUNK][index % CHUNK];
+    }
+
+    public int size() {
+        return size;
+    }
+}
+
+// Immutable list version: each add publishes a new ProductList; readers never lock
+class ProductSnapshotModel extends AbstractListModel<Product> {
+    private final AtomicReference<ProductList> published = new AtomicReference<>(ProductList.EMPTY);
+    private ProductList shown = ProductList.EMPTY;
+
+    // Safe to call from any thread; the Swing list switches to the new version on the EDT. The
+    // publishes of concurrent adds can reach the EDT in any order, and every version holds all the
+    // ones before it, so only a version larger than the one shown is applied.
+    public void add(Product product) {
+        ProductList next;
+        while (true) {
+            ProductList previous = published.get();
+            next = previous.plus(product);
+            if (published.compareAndSet(previous, next)) break;
+        }
+        ProductList version = next;
+        SwingUtilities.invokeLater(() -> {
+            int oldSize = shown.size();
+            if (version.size() > oldSize) {
+                shown = version;
+                fireIntervalAdded(this, oldSize, version.size() - 1);
+            }
+        });
+    }
+
+    public List<Product> snapshot() {
+        return published.get();
+    }
+
+    public int getSize() {
+        return shown.size();
+    }
+
+    public Product getElementAt(int index) {
+        return shown.get(index);
+    }
+}
+
+// Inverted index over title and description words, updated as products are added. Search scores with
+// BM25 (title words count three times as much as description words) and keeps the best results in a
+// bounded heap instead of sorting every hit.
+class ProductSearchIndex {
+    static final double TITLE_BOOST = 3.0, K1 = 1.2, B = 0.75;
+
+    // word -> {product, title count, description count} postings
+    private final HashMap<String, List<int[]>> postings = new HashMap<>();
+    private final List<Product> products = new ArrayList<>();
+    private final List<int[]> lengths = new ArrayList<>();
+    private long titleWords, descriptionWords;
+
+    public synchronized void add(Product product) {
+        int id = products.size();
+        products.add(product);
+        List<String> title = words(product.title), description = words(product.description);
+        lengths.add(new int[]{title.size(), description.size()});
+        titleWords += title.size();
+        descriptionWords += description.size();
+        HashMap<String, int[]> counts = new HashMap<>();
+        for (String w : title) counts.computeIfAbsent(w, k -> new int[]{id, 0, 0})[1]++;
+        for (String w : description) counts.computeIfAbsent(w, k -> new int[]{id, 0, 0})[2]++;
+        counts.forEach((w, posting) -> postings.computeIfAbsent(w, k -> new ArrayList<>()).add(posting));
+    }
+
+    public synchronized List<Product> search(String query, int limit) {
+        int n = products.size();
+        double avgTitle = Math.max(1.0, (double) titleWords / Math.max(1, n));
+        double avgDescription = Math.max(1.0, (double) descriptionWords / Math.max(1, n));
+        HashMap<Integer, Double> scores = new HashMap<>();
+        for (String w : new LinkedHashSet<>(words(query))) {
+            List<int[]> list = postings.getOrDefault(w, Collections.emptyList());
+            double idf = Math.log(1 + (n - list.size() + 0.5) / (list.size() + 0.5));
+            for (int[] p : list) {
+                int[] len = lengths.get(p[0]);
+                double tf = TITLE_BOOST * p[1] / (1 - B + B * len[0] / avgTitle)
+                        + p[2] / (1 - B + B * len[1] / avgDescription);
+                scores.merge(p[0], idf * tf / (K1 + tf), Double::sum);
+            }
+        }
+        // Min-heap holding the best limit products; the weakest is evicted first
+        PriorityQueue<Integer> best = new PriorityQueue<>((a, b) -> Double.compare(scores.get(a), scores.get(b)));
+        for (Integer id : scores.keySet()) {
+            best.add(id);
+            if (best.size() > limit) best.poll();
+        }
+        ArrayList<Product> results = new ArrayList<>();
+        while (!best.isEmpty()) results.add(products.get(best.poll()));
+        Collections.reverse(results);
+        return results;
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String w : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) words.add(w);
+        }
+        return words;
+    }
+}
+
 public class EbayClone extends JFrame {
     private JTextField titleField, priceField;
     private JTextArea descField;
-    private DefaultListModel<Product> productListModel;
+    private ProductSnapshotModel productListModel;
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
 
     public EbayClone() {
         setTitle("eBay Clone - Swing Version");
@@ -65,7 +211,7 @@ public class EbayClone extends JFrame {
         inputPanel.add(addButton);
 
         // Product List Panel
-        productListModel = new DefaultListModel<>();
+        productListModel = new ProductSnapshotModel();
         JList<Product> productList = new JList<>(productListModel);
         productList.setCellRenderer(new DefaultListCellRenderer() {
             public Component getListCellRendererComponent(JList<?> list, Object value, int index,
@@ -79,7 +225,29 @@ public class EbayClone extends JFrame {
 
         JScrollPane listScrollPane = new JScrollPane(productList);
 
-        add(inputPanel, BorderLayout.NORTH);
+        // Search Panel
+        JTextField searchField = new JTextField(20);
+        JButton searchButton = new JButton("Search");
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(searchField);
+        searchPanel.add(searchButton);
+        searchButton.addActionListener(e -> {
+            List<Product> results = searchIndex.search(searchField.getText(), 50);
+            if (results.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No products found!");
+            } else {
+                JList<Product> resultList = new JList<>(results.toArray(new Product[0]));
+                resultList.setCellRenderer(productList.getCellRenderer());
+                JScrollPane resultPane = new JScrollPane(resultList);
+                resultPane.setPreferredSize(new Dimension(400, 300));
+                JOptionPane.showMessageDialog(this, resultPane, "Search Results", JOptionPane.PLAIN_MESSAGE);
+            }
+        });
+
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(inputPanel, BorderLayout.CENTER);
+        northPanel.add(searchPanel, BorderLayout.SOUTH);
+        add(northPanel, BorderLayout.NORTH);
         add(listScrollPane, BorderLayout.CENTER);
 
         // Button Action
@@ -91,7 +259,9 @@ public class EbayClone extends JFrame {
             if (!title.isEmpty() && !priceText.isEmpty()) {
                 try {
                     double price = Double.parseDouble(priceText);
-                    productListModel.addElement(new Product(title, desc, price));
+                    Product product = new Product(title, desc, price);
+                    productListModel.add(product);
+                    searchIndex.add(product);
                     titleField.setText("");
                     descField.setText("");
                     priceField.setText("");
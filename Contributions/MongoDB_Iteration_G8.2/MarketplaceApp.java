@@ -5,6 +5,12 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 public class MarketplaceApp {
     public static void main(String[] args) {
@@ -126,12 +132,50 @@ class RegisterFrame extends JFrame {
 
 // --- MARKETPLACE GUI ---
 class MarketplaceWithMongo extends JFrame {
-    private JPanel categoryPanel, productPanel;
-    private ArrayList<Product> cart;
+    private JPanel categoryPanel;
+    // Products of the current listing; only the cards in view exist, see VirtualGrid
+    private VirtualGrid<Product> productGrid;
+    // Headings and messages for the listing: closest matches, nothing found, errors
+    private JLabel statusLabel;
+    // Cart and checkout come from marketplace-core (src/core), like the other apps
+    private final Cart cart = new Cart(Money.Currency.INR);
+    private final CheckoutService checkout = new CheckoutService(new OrderService(null));
     private MongoDatabase database;
     private MongoCollection<Document> productCollection;
     private JTextField searchField;
     private JButton searchButton;
+    private final ExecutorService suggestExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "suggestions");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingSuggestion;
+    // Every read of the product collection for the window runs here, never on the EDT. Two threads,
+    // so a catalog reload does not hold up the listing the user is waiting for.
+    private final ExecutorService queryExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "product-queries");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The query filling productGrid; starting another one cancels it
+    private ProductQuery currentQuery;
+    // Typo-tolerant fallback for searches that match nothing; built from the names read in loadCategories()
+    private FuzzyIndex fuzzyIndex;
+    private List<String> fuzzyNames = new ArrayList<>();
+    // Search results by the exact filter sent to MongoDB. MongoDB gives no change feed here, so the cache is
+    // versioned by catalog reloads: every loadCategories() starts a new version and empties it. A reload
+    // runs from the Refresh button, and whenever the probe below sees the collection's document count or
+    // newest _id change; an edit of an existing product changes neither and shows after a Refresh.
+    private final QueryCache<List<Document>> searchCache = new QueryCache<>(200, 8L << 20, MarketplaceWithMongo::weigh);
+    private long catalogVersion;
+    private static final int CATALOG_PROBE_MILLIS = 30_000;
+    // The count and newest _id of the collection as of the last reload, and whether one is running
+    private String catalogFingerprint;
+    private boolean loadingCatalog;
+    // Card images from the documents' "image" field (a path or URL), decoded in the background by the
+    // ThumbnailCache the Swing apps share in src/swing; compile it and src/core along with this directory
+    private final ThumbnailCache thumbnails = new ThumbnailCache(160, 120, 2, 32L << 20,
+            java.nio.file.Path.of(System.getProperty("user.home"), ".marketplace", "thumbnails"));
 
     private final Color PRIMARY = new Color(0x0074D9);
     private final Color BACKGROUND = new Color(0xF0F2F5);
@@ -145,8 +189,6 @@ class MarketplaceWithMongo extends JFrame {
         getContentPane().setBackground(BACKGROUND);
         setLayout(new BorderLayout());
 
-        cart = new ArrayList<>();
-
         MongoClient mongoClient = MongoClients.create("mongodb://localhost:27017");
         database = mongoClient.getDatabase("marketplace");
         productCollection = database.getCollection("products");
@@ -159,11 +201,15 @@ class MarketplaceWithMongo extends JFrame {
         searchField.setFont(FONT_NORMAL);
         searchButton = createStyledButton("🔍 Search");
         searchButton.addActionListener(this::performSearch);
+        installSuggestions();
+        JButton refreshButton = createStyledButton("⟳ Refresh");
+        refreshButton.addActionListener(e -> loadCategories());
 
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         searchPanel.setBackground(BACKGROUND);
         searchPanel.add(searchField);
         searchPanel.add(searchButton);
+        searchPanel.add(refreshButton);
 
         categoryPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         categoryPanel.setBackground(BACKGROUND);
@@ -173,11 +219,18 @@ class MarketplaceWithMongo extends JFrame {
         topPanel.add(categoryPanel, BorderLayout.CENTER);
         add(topPanel, BorderLayout.NORTH);
 
-        productPanel = new JPanel(new GridLayout(0, 3, 20, 20));
-        productPanel.setBackground(BACKGROUND);
-        JScrollPane scrollPane = new JScrollPane(productPanel);
+        productGrid = new VirtualGrid<>(3, 20, ProductCard::new);
+        productGrid.setBackground(BACKGROUND);
+        JScrollPane scrollPane = new JScrollPane(productGrid);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
-        add(scrollPane, BorderLayout.CENTER);
+        statusLabel = new JLabel(" ");
+        statusLabel.setFont(FONT_NORMAL);
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 20, 5, 20));
+        JPanel listing = new JPanel(new BorderLayout());
+        listing.setBackground(BACKGROUND);
+        listing.add(statusLabel, BorderLayout.NORTH);
+        listing.add(scrollPane, BorderLayout.CENTER);
+        add(listing, BorderLayout.CENTER);
 
         JButton cartButton = createStyledButton("🛒 View Cart");
         cartButton.setPreferredSize(new Dimension(160, 40));
@@ -185,36 +238,169 @@ class MarketplaceWithMongo extends JFrame {
         add(cartButton, BorderLayout.SOUTH);
 
         loadCategories();
+        installCatalogProbe();
     }
 
+    // The collection is read and the fuzzy index built on queryExecutor; the category buttons, the
+    // index and the new catalog version are swapped in on the EDT once the cursor is exhausted.
     private void loadCategories() {
-        Set<String> categories = new HashSet<>();
-        for (Document doc : productCollection.find()) {
-            String category = doc.getString("category");
-            if (category != null) categories.add(category);
+        if (loadingCatalog) {
+            return;
         }
+        loadingCatalog = true;
+        SwingWorker<Void, Void> load = new SwingWorker<Void, Void>() {
+            private final Set<String> categories = new HashSet<>();
+            private List<String> names;
+            private FuzzyIndex index;
+            private String fingerprint;
+
+            @Override
+            protected Void doInBackground() {
+                // Taken before the read, so a product added during it is seen by the next probe
+                fingerprint = catalogFingerprint();
+                Set<String> distinct = new LinkedHashSet<>();
+                Document fields = new Document("name", 1).append("category", 1);
+                try (MongoCursor<Document> cursor = productCollection.find().projection(fields).iterator()) {
+                    while (cursor.hasNext()) {
+                        Document doc = cursor.next();
+                        String category = doc.getString("category");
+                        if (category != null) categories.add(category);
+                        String name = doc.getString("name");
+                        if (name != null) distinct.add(name);
+                    }
+                }
+                names = new ArrayList<>(distinct);
+                index = FuzzyIndex.build(names::get, names.size());
+                return null;
+            }
 
-        categoryPanel.removeAll();
-        for (String category : categories) {
-            JButton catButton = createStyledButton(category);
-            catButton.setBackground(new Color(0xFFDC00));
-            catButton.addActionListener(e -> showProductsByCategory(category));
-            categoryPanel.add(catButton);
-        }
+            @Override
+            protected void done() {
+                loadingCatalog = false;
+                categoryPanel.removeAll();
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    categoryPanel.add(new JLabel("Could not load categories: " + rootMessage(ex)));
+                    categoryPanel.revalidate();
+                    return;
+                }
+                catalogVersion++;
+                catalogFingerprint = fingerprint;
+                fuzzyNames = names;
+                fuzzyIndex = index;
+
+                for (String category : categories) {
+                    JButton catButton = createStyledButton(category);
+                    catButton.setBackground(new Color(0xFFDC00));
+                    catButton.addActionListener(e -> showProductsByCategory(category));
+                    categoryPanel.add(catButton);
+                }
+
+                revalidate();
+                repaint();
+            }
+        };
+        categoryPanel.add(new JLabel("Loading categories..."));
+        queryExecutor.execute(load);
+    }
+
+    // Every CATALOG_PROBE_MILLIS, reads the collection's fingerprint on queryExecutor (an estimated
+    // count from the collection metadata and one _id index lookup) and reloads if it has changed
+    private void installCatalogProbe() {
+        javax.swing.Timer probe = new javax.swing.Timer(CATALOG_PROBE_MILLIS, e -> {
+            if (loadingCatalog) {
+                return;
+            }
+            queryExecutor.execute(() -> {
+                String fingerprint;
+                try {
+                    fingerprint = catalogFingerprint();
+                } catch (RuntimeException ex) {
+                    return; // the server is unreachable; try again at the next tick
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (!loadingCatalog && !fingerprint.equals(catalogFingerprint)) {
+                        loadCategories();
+                    }
+                });
+            });
+        });
+        probe.start();
+    }
+
+    // Runs off the EDT
+    private String catalogFingerprint() {
+        Document newest = productCollection.find().projection(new Document("_id", 1))
+                .sort(new Document("_id", -1)).limit(1).first();
+        return productCollection.estimatedDocumentCount() + ":" + (newest == null ? "" : newest.get("_id"));
+    }
+
+    // Type-ahead: keystrokes are debounced, the prefix query runs off the EDT and a new keystroke
+    // cancels the one in flight. The prefix regex is anchored but case-insensitive, so MongoDB cannot
+    // bound an index scan with it and checks every "name" (from the index, if there is one); at most
+    // 8 names come back, ranked by the "popularity" field when the documents have one.
+    private void installSuggestions() {
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+
+        javax.swing.Timer debounce = new javax.swing.Timer(150, e -> {
+            String prefix = searchField.getText().trim();
+            if (pendingSuggestion != null) {
+                pendingSuggestion.cancel(true);
+            }
+            if (prefix.isEmpty()) {
+                popup.setVisible(false);
+                return;
+            }
+            Future<?>[] self = new Future<?>[1];
+            self[0] = suggestExecutor.submit(() -> {
+                List<String> names = new ArrayList<>();
+                Document filter = new Document("name", new Document("$regex", "^" + Pattern.quote(prefix)).append("$options", "i"));
+                try (MongoCursor<Document> cursor = productCollection.find(filter)
+                        .sort(new Document("popularity", -1)).limit(8).iterator()) {
+                    while (cursor.hasNext() && !Thread.currentThread().isInterrupted()) {
+                        names.add(cursor.next().getString("name"));
+                    }
+                } catch (Exception ex) {
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (self[0].isCancelled() || !prefix.equals(searchField.getText().trim())) return;
+                    popup.setVisible(false);
+                    popup.removeAll();
+                    for (String name : names) {
+                        JMenuItem item = new JMenuItem(name);
+                        item.setFont(FONT_NORMAL);
+                        item.addActionListener(ev -> {
+                            searchField.setText(name);
+                            searchButton.doClick();
+                        });
+                        popup.add(item);
+                    }
+                    if (!names.isEmpty() && searchField.isShowing()) {
+                        popup.show(searchField, 0, searchField.getHeight());
+                    }
+                });
+            });
+            pendingSuggestion = self[0];
+        });
+        debounce.setRepeats(false);
 
-        revalidate();
-        repaint();
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { debounce.restart(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { debounce.restart(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { }
+        });
+        searchButton.addActionListener(e -> {
+            debounce.stop();
+            popup.setVisible(false);
+        });
     }
 
     private void showProductsByCategory(String category) {
-        productPanel.removeAll();
-        for (Document doc : productCollection.find(new Document("category", category))) {
-            String name = doc.getString("name");
-            String priceStr = getPriceAsString(doc);
-            productPanel.add(createProductCard(name, priceStr));
-        }
-        revalidate();
-        repaint();
+        startQuery(new ProductQuery(new Document("category", category), null, null, null,
+                "No products in " + category));
     }
 
     private void performSearch(ActionEvent e) {
@@ -224,63 +410,277 @@ class MarketplaceWithMongo extends JFrame {
             return;
         }
 
-        productPanel.removeAll();
-        FindIterable<Document> results = productCollection.find(
-                new Document("name", new Document("$regex", keyword).append("$options", "i")));
+        QueryParser.Node parsed = null;
+        if (QueryParser.isStructured(keyword)) {
+            try {
+                parsed = QueryParser.parse(keyword, Money.Currency.INR);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid query: " + ex.getMessage());
+                return;
+            }
+        }
 
-        boolean found = false;
-        for (Document doc : results) {
-            found = true;
-            String name = doc.getString("name");
-            String priceStr = getPriceAsString(doc);
-            productPanel.add(createProductCard(name, priceStr));
+        Document filter = parsed != null
+                ? toFilter(parsed)
+                : new Document("name", new Document("$regex", keyword).append("$options", "i"));
+        // Keyed by the filter itself: two searches share an entry only if MongoDB would return the same
+        // documents for both, which a normalized keyword (folding accents and spaces) does not promise
+        String key = filter.toJson();
+        startQuery(new ProductQuery(filter, searchCache.get(key, catalogVersion), key,
+                parsed == null ? keyword : null, "No products found for: " + keyword));
+    }
+
+    // Empties the grid and runs query in place of the one in flight, which is cancelled
+    private void startQuery(ProductQuery query) {
+        if (currentQuery != null) {
+            currentQuery.cancel(true);
         }
+        currentQuery = query;
+        productGrid.clear();
+        statusLabel.setText(" ");
+        queryExecutor.execute(query);
+    }
 
-        if (!found) {
-            productPanel.add(new JLabel("No products found for: " + keyword));
+    private static String rootMessage(Exception ex) {
+        Throwable cause = ex instanceof ExecutionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    // One listing of the product grid. The cursor is read on queryExecutor and every document is
+    // turned into a Product (name and Money) and published as it arrives; SwingWorker hands them to
+    // process() on the EDT in batches, which only append to productGrid, so the first cards show
+    // after the first round trip and the EDT never builds components for results, however many
+    // come. cancel(true) interrupts the cursor and drops whatever has not been shown.
+    //
+    // Fields are captured on the EDT when the query is created, so the worker never reads state a
+    // catalog reload may be replacing.
+    private class ProductQuery extends SwingWorker<List<Document>, Object> {
+        private static final int CURSOR_BATCH = 64;
+
+        private final Document filter;
+        private final List<Document> cached;
+        private final String cacheKey;
+        private final String fuzzyKeyword;
+        private final String emptyMessage;
+        private final long version = catalogVersion;
+        private final FuzzyIndex fuzzy = fuzzyIndex;
+        private final List<String> fuzzyCandidates = fuzzyNames;
+        private volatile int published;
+        private volatile int badPrices;
+        private volatile String firstBadPrice;
+
+        // cached: earlier results for the same query, shown instead of querying again (null if none).
+        // cacheKey: where to keep the results, or null. fuzzyKeyword: a plain search to retry with
+        // typo tolerance when nothing matches, or null. Products and String headings are published.
+        ProductQuery(Document filter, List<Document> cached, String cacheKey, String fuzzyKeyword, String emptyMessage) {
+            this.filter = filter;
+            this.cached = cached;
+            this.cacheKey = cacheKey;
+            this.fuzzyKeyword = fuzzyKeyword;
+            this.emptyMessage = emptyMessage;
+        }
+
+        @Override
+        protected List<Document> doInBackground() {
+            List<Document> found = cached != null ? cached : new ArrayList<>();
+            if (cached != null) {
+                for (Document doc : cached) {
+                    if (isCancelled()) break;
+                    sendProduct(doc);
+                }
+            } else {
+                read(productCollection.find(filter), found);
+            }
+
+            if (found.isEmpty() && fuzzyKeyword != null && fuzzy != null && !isCancelled()) {
+                // Nothing matched as typed; fetch the closest names allowing a typo or two per word
+                List<String> closest = new ArrayList<>();
+                for (int id : fuzzy.search(fuzzyKeyword, fuzzyCandidates.size())) {
+                    closest.add(fuzzyCandidates.get(id));
+                    if (closest.size() == 50) break;
+                }
+                if (!closest.isEmpty()) {
+                    send("Showing closest matches for: " + fuzzyKeyword);
+                    read(productCollection.find(new Document("name", new Document("$in", closest))), null);
+                }
+            }
+            return found;
         }
 
-        revalidate();
-        repaint();
+        private void read(FindIterable<Document> query, List<Document> found) {
+            try (MongoCursor<Document> cursor = query.batchSize(CURSOR_BATCH).iterator()) {
+                while (!isCancelled() && cursor.hasNext()) {
+                    Document doc = cursor.next();
+                    if (found != null) found.add(doc);
+                    sendProduct(doc);
+                }
+            }
+        }
+
+        // Products without a usable price are counted and named in the status line, not shown
+        private void sendProduct(Document doc) {
+            Product product = toProduct(doc);
+            if (product != null) {
+                send(product);
+                return;
+            }
+            if (badPrices++ == 0) {
+                firstBadPrice = doc.getString("name") + " (price " + doc.get("price") + ")";
+            }
+        }
+
+        private void send(Object item) {
+            published++;
+            publish(item);
+        }
+
+        @Override
+        protected void process(List<Object> chunk) {
+            if (isCancelled()) return;
+            List<Product> products = new ArrayList<>(chunk.size());
+            for (Object item : chunk) {
+                if (item instanceof Product) {
+                    products.add((Product) item);
+                } else {
+                    productGrid.append(products);
+                    products.clear();
+                    statusLabel.setText((String) item);
+                }
+            }
+            productGrid.append(products);
+        }
+
+        // May run before the last batch reaches process(), which still appends it as usual
+        @Override
+        protected void done() {
+            if (isCancelled()) return;
+            List<Document> found;
+            try {
+                found = get();
+            } catch (InterruptedException | ExecutionException ex) {
+                statusLabel.setText("Could not load products: " + rootMessage(ex));
+                return;
+            }
+            if (cached == null && cacheKey != null) {
+                searchCache.put(cacheKey, version, found);
+            }
+            if (badPrices > 0) {
+                statusLabel.setText(badPrices + " product(s) not shown: unreadable price, e.g. " + firstBadPrice);
+            } else if (published == 0) {
+                statusLabel.setText(emptyMessage);
+            }
+        }
     }
 
-    private JPanel createProductCard(String name, String priceStr) {
-        JPanel card = new JPanel();
-        card.setLayout(new BoxLayout(card, BoxLayout.Y_AXIS));
-        card.setBackground(Color.WHITE);
-        card.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(Color.LIGHT_GRAY, 1),
-                BorderFactory.createEmptyBorder(10, 10, 10, 10)));
-
-        JLabel nameLabel = new JLabel(name, SwingConstants.CENTER);
-        nameLabel.setFont(FONT_BOLD);
-        nameLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-
-        JLabel priceLabel = new JLabel("₹" + priceStr);
-        priceLabel.setFont(FONT_NORMAL);
-        priceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-
-        JLabel imageLabel = new JLabel("[Image]");
-        imageLabel.setFont(FONT_NORMAL);
-        imageLabel.setForeground(Color.GRAY);
-        imageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-
-        JButton addButton = createStyledButton("Add to Cart");
-        addButton.setAlignmentX(Component.CENTER_ALIGNMENT);
-        addButton.addActionListener(e -> {
-            cart.add(new Product(name, priceStr));
-            JOptionPane.showMessageDialog(this, name + " added to cart.");
-        });
+    // Pushes a structured query down to MongoDB as one filter document, so only matching products
+    // come back. Words and name: are case-insensitive substrings of "name", as in the plain search;
+    // category: matches the whole category ignoring case; price bounds compare the numeric "price"
+    // field in rupees (documents that store the price as a string do not match a price condition);
+    // NOT becomes $nor.
+    static Document toFilter(QueryParser.Node node) {
+        if (node instanceof QueryParser.Term) {
+            return nameContains(((QueryParser.Term) node).word);
+        }
+        if (node instanceof QueryParser.Match) {
+            QueryParser.Match match = (QueryParser.Match) node;
+            if (match.field.equals(QueryParser.CATEGORY)) {
+                return new Document("category", new Document("$regex", "^" + Pattern.quote(match.value) + "$").append("$options", "i"));
+            }
+            return nameContains(match.value);
+        }
+        if (node instanceof QueryParser.PriceRange) {
+            QueryParser.PriceRange range = (QueryParser.PriceRange) node;
+            Document bounds = new Document();
+            if (range.minMinor != Long.MIN_VALUE) bounds.append("$gte", rupees(range.minMinor));
+            if (range.maxMinor != Long.MAX_VALUE) bounds.append("$lte", rupees(range.maxMinor));
+            return new Document("price", bounds);
+        }
+        if (node instanceof QueryParser.Not) {
+            return new Document("$nor", List.of(toFilter(((QueryParser.Not) node).child)));
+        }
+        List<QueryParser.Node> children = node instanceof QueryParser.And
+                ? ((QueryParser.And) node).children
+                : ((QueryParser.Or) node).children;
+        List<Document> filters = new ArrayList<>();
+        for (QueryParser.Node child : children) {
+            filters.add(toFilter(child));
+        }
+        return new Document(node instanceof QueryParser.And ? "$and" : "$or", filters);
+    }
+
+    private static Document nameContains(String text) {
+        return new Document("name", new Document("$regex", Pattern.quote(text)).append("$options", "i"));
+    }
+
+    // Whole rupees as a long, so an integer "price" field compares without conversion
+    private static Object rupees(long minor) {
+        return minor % 100 == 0 ? (Object) (minor / 100) : minor / 100.0;
+    }
+
+    // Rough heap size of cached documents: the name plus fixed per-document overhead
+    private static long weigh(List<Document> docs) {
+        long bytes = 64;
+        for (Document doc : docs) {
+            String name = doc.getString("name");
+            bytes += 256 + (name == null ? 0 : 2L * name.length());
+        }
+        return bytes;
+    }
+
+    // A pooled product card: built once with its labels, button and listeners, then rebound by
+    // productGrid to whichever product scrolls into its place. Its image is a fixed-size icon, so a
+    // thumbnail arriving repaints just this card's image label.
+    private class ProductCard extends JPanel implements VirtualGrid.Cell<Product> {
+        private final JLabel nameLabel = new JLabel(" ", SwingConstants.CENTER);
+        private final JLabel priceLabel = new JLabel(" ");
+        private final JLabel imageLabel = new JLabel();
+        private final ThumbnailCache.Thumbnail thumbnail = thumbnails.thumbnailFor(imageLabel);
+        private Product product;
+
+        ProductCard() {
+            setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+            setBackground(Color.WHITE);
+            setBorder(BorderFactory.createCompoundBorder(
+                    BorderFactory.createLineBorder(Color.LIGHT_GRAY, 1),
+                    BorderFactory.createEmptyBorder(10, 10, 10, 10)));
+
+            nameLabel.setFont(FONT_BOLD);
+            nameLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+            priceLabel.setFont(FONT_NORMAL);
+            priceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+            imageLabel.setIcon(thumbnail);
+            imageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+            JButton addButton = createStyledButton("Add to Cart");
+            addButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+            addButton.addActionListener(e -> {
+                cart.add(product.name, product.price);
+                JOptionPane.showMessageDialog(MarketplaceWithMongo.this, product.name + " added to cart.");
+            });
+
+            add(imageLabel);
+            add(Box.createRigidArea(new Dimension(0, 8)));
+            add(nameLabel);
+            add(Box.createRigidArea(new Dimension(0, 5)));
+            add(priceLabel);
+            add(Box.createRigidArea(new Dimension(0, 8)));
+            add(addButton);
+        }
 
-        card.add(imageLabel);
-        card.add(Box.createRigidArea(new Dimension(0, 8)));
-        card.add(nameLabel);
-        card.add(Box.createRigidArea(new Dimension(0, 5)));
-        card.add(priceLabel);
-        card.add(Box.createRigidArea(new Dimension(0, 8)));
-        card.add(addButton);
+        @Override
+        public JComponent component() {
+            return this;
+        }
 
-        return card;
+        @Override
+        public void bind(Product item) {
+            product = item;
+            nameLabel.setText(item.name);
+            priceLabel.setText(item.price.format());
+            thumbnail.show(item.image);
+        }
     }
 
     private JButton createStyledButton(String text) {
@@ -305,14 +705,34 @@ class MarketplaceWithMongo extends JFrame {
         return button;
     }
 
-    private String getPriceAsString(Document doc) {
+    // Null when the document has no usable price, see getPrice()
+    private Product toProduct(Document doc) {
+        Money price = getPrice(doc);
+        if (price == null) {
+            return null;
+        }
+        Object image = doc.get("image");
+        return new Product(doc.getString("name"), price, image instanceof String ? (String) image : null);
+    }
+
+    // Prices are converted to Money once, when the document is read from the collection. A stored
+    // double is rounded to the paisa; a missing or unreadable price gives null, so the product is
+    // reported and left out instead of being listed at zero.
+    private Money getPrice(Document doc) {
         Object priceObj = doc.get("price");
-        if (priceObj instanceof Number) {
-            return String.format("%.2f", ((Number) priceObj).doubleValue());
-        } else if (priceObj instanceof String) {
-            return (String) priceObj;
+        try {
+            if (priceObj instanceof Integer || priceObj instanceof Long) {
+                return Money.of(Math.multiplyExact(((Number) priceObj).longValue(), 100), Money.Currency.INR);
+            } else if (priceObj instanceof Number) {
+                java.math.BigDecimal rupees = new java.math.BigDecimal(priceObj.toString()).setScale(2, java.math.RoundingMode.HALF_UP);
+                return Money.of(rupees.unscaledValue().longValueExact(), Money.Currency.INR);
+            } else if (priceObj instanceof String) {
+                return Money.parse((String) priceObj, Money.Currency.INR);
+            }
+        } catch (NumberFormatException | ArithmeticException ignored) {
+            // Reported by the query that read the document
         }
-        return "0.00";
+        return null;
     }
 
     private void showCart(ActionEvent e) {
@@ -323,22 +743,23 @@ class MarketplaceWithMongo extends JFrame {
         JTextArea cartArea = new JTextArea();
         cartArea.setEditable(false);
         cartArea.setFont(FONT_NORMAL);
-        double total = 0;
-
-        for (Product p : cart) {
-            cartArea.append(p.name + " - ₹" + p.price + "\n");
-            try {
-                total += Double.parseDouble(p.price.replaceAll("[^0-9.]", ""));
-            } catch (NumberFormatException ignored) {}
+        for (Cart.Line line : cart.lines()) {
+            cartArea.append(line.name + " x" + line.quantity() + " - " + line.total() + "\n");
         }
 
-        cartArea.append("\n\nTotal: ₹" + String.format("%.2f", total));
+        cartArea.append("\n\nTotal: " + cart.total());
 
         JPanel buttonPanel = new JPanel();
         JButton placeOrderButton = createStyledButton("✔ Place Order");
         placeOrderButton.addActionListener(e1 -> {
-            JOptionPane.showMessageDialog(this, "Order placed successfully!");
-            cart.clear();
+            Order order;
+            try {
+                order = checkout.checkout(cart);
+            } catch (IllegalArgumentException | java.io.IOException ex) {
+                JOptionPane.showMessageDialog(cartFrame, "Could not place the order: " + ex.getMessage());
+                return;
+            }
+            JOptionPane.showMessageDialog(this, "Order " + order.id + " placed successfully! Total: " + order.total);
             cartFrame.dispose();
         });
 
@@ -350,11 +771,14 @@ class MarketplaceWithMongo extends JFrame {
     }
 
     static class Product {
-        String name, price;
+        String name;
+        Money price;
+        String image;
 
-        Product(String name, String price) {
+        Product(String name, Money price, String image) {
             this.name = name;
             this.price = price;
+            this.image = image;
         }
     }
 }
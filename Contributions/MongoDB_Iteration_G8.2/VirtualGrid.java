@@ -0,0 +1,184 @@
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.event.ChangeListener;
+
+/*
+ * Grid of cards that only has components for the cards in view.
+ *
+ * The grid holds the items (any number of them) and a pool of cells made by the factory. Its
+ * preferred height is that of all the rows, so the JScrollPane scrolls as if every card were there,
+ * but only the rows inside the viewport, plus one, get a cell: on every scroll the visible cells are
+ * placed at their rows and bound to their items. Item i always goes to cell i modulo the pool size,
+ * so scrolling by a row rebinds only the cells of the row that came into view. The pool grows only
+ * when the viewport does, which keeps the number of Swing components fixed however many items the
+ * grid is showing.
+ *
+ * Cells all have the height of the first one made; columns share the viewport width. Used on the EDT.
+ */
+final class VirtualGrid<T> extends JPanel implements Scrollable {
+
+    /** A pooled card: its component, shown with whatever item it was bound to last. */
+    interface Cell<T> {
+        JComponent component();
+
+        void bind(T item);
+    }
+
+    private final int columns;
+    private final int gap;
+    private final Supplier<? extends Cell<T>> factory;
+    private final List<T> items = new ArrayList<>();
+    private final List<Cell<T>> pool = new ArrayList<>();
+    // Index of the item each pooled cell shows, -1 if none
+    private final List<Integer> bound = new ArrayList<>();
+    private final ChangeListener scrolled = e -> layoutCells();
+    private int cellHeight;
+
+    VirtualGrid(int columns, int gap, Supplier<? extends Cell<T>> factory) {
+        super(null);
+        this.columns = columns;
+        this.gap = gap;
+        this.factory = factory;
+    }
+
+    /** Adds items after the ones already shown; cells in view are not rebound. */
+    void append(List<? extends T> more) {
+        if (more.isEmpty()) return;
+        items.addAll(more);
+        revalidate();
+        repaint();
+    }
+
+    /** Removes every item, keeping the pooled cells for the next ones. */
+    void clear() {
+        items.clear();
+        for (int i = 0; i < bound.size(); i++) {
+            bound.set(i, -1);
+        }
+        revalidate();
+        repaint();
+    }
+
+    int itemCount() {
+        return items.size();
+    }
+
+    /** The number of cells made so far, which is the number of card components alive. */
+    int poolSize() {
+        return pool.size();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (getParent() instanceof JViewport) {
+            ((JViewport) getParent()).addChangeListener(scrolled);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if (getParent() instanceof JViewport) {
+            ((JViewport) getParent()).removeChangeListener(scrolled);
+        }
+        super.removeNotify();
+    }
+
+    @Override
+    public void doLayout() {
+        layoutCells();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int rows = (items.size() + columns - 1) / columns;
+        return new Dimension(getWidth(), gap + rows * (cellHeight() + gap));
+    }
+
+    private void layoutCells() {
+        Rectangle visible = getVisibleRect();
+        int rowHeight = cellHeight() + gap;
+        int rows = (items.size() + columns - 1) / columns;
+        int first = 0;
+        int end = 0;
+        if (rows > 0 && visible.height > 0) {
+            int firstRow = Math.max(0, (visible.y - gap) / rowHeight);
+            int lastRow = Math.min(rows - 1, (visible.y + visible.height) / rowHeight);
+            first = firstRow * columns;
+            end = Math.min(items.size(), (lastRow + 1) * columns);
+            int needed = ((visible.height + rowHeight - 1) / rowHeight + 1) * columns;
+            while (pool.size() < needed) {
+                Cell<T> cell = factory.get();
+                pool.add(cell);
+                bound.add(-1);
+                add(cell.component());
+            }
+        }
+        // The pool may have just grown, so every visible item finds its cell again
+        int cellWidth = Math.max(1, (getWidth() - gap * (columns + 1)) / columns);
+        boolean[] used = new boolean[pool.size()];
+        for (int index = first; index < end; index++) {
+            int slot = index % pool.size();
+            Cell<T> cell = pool.get(slot);
+            if (bound.get(slot) != index) {
+                cell.bind(items.get(index));
+                bound.set(slot, index);
+            }
+            int row = index / columns;
+            int column = index % columns;
+            cell.component().setBounds(gap + column * (cellWidth + gap), gap + row * rowHeight, cellWidth, cellHeight());
+            cell.component().setVisible(true);
+            used[slot] = true;
+        }
+        for (int slot = 0; slot < pool.size(); slot++) {
+            if (!used[slot]) {
+                pool.get(slot).component().setVisible(false);
+            }
+        }
+    }
+
+    private int cellHeight() {
+        if (cellHeight == 0) {
+            Cell<T> prototype = factory.get();
+            pool.add(prototype);
+            bound.add(-1);
+            add(prototype.component());
+            prototype.component().setVisible(false);
+            cellHeight = Math.max(1, prototype.component().getPreferredSize().height);
+        }
+        return cellHeight;
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -13,6 +13,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 public class MarketplaceApp extends JFrame {
+    // Shared by every table and its cells, so painting a cell never creates a font or colour
+    static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 18);
+    static final Font TABLE_HEADER_FONT = new Font("Arial", Font.BOLD, 18);
+    static final Font ADD_BUTTON_FONT = new Font("Arial", Font.BOLD, 16);
+    static final Color ADD_BUTTON_COLOR = new Color(46, 204, 113);
+
     CardLayout cardLayout;
     JPanel mainPanel;
     ArrayList<Product> cart = new ArrayList<>();
@@ -188,8 +194,8 @@ public class MarketplaceApp extends JFrame {
 
         JTable table = new JTable(model);
         table.setRowHeight(40);
-        table.setFont(new Font("Arial", Font.PLAIN, 18));
-        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 18));
+        table.setFont(TABLE_FONT);
+        table.getTableHeader().setFont(TABLE_HEADER_FONT);
         table.getColumn("Add to Cart").setCellRenderer(new ButtonRenderer());
         table.getColumn("Add to Cart").setCellEditor(new ButtonEditor());
 
@@ -235,8 +241,8 @@ public class MarketplaceApp extends JFrame {
 
         JTable table = new JTable(model);
         table.setRowHeight(40);
-        table.setFont(new Font("Arial", Font.PLAIN, 18));
-        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 18));
+        table.setFont(TABLE_FONT);
+        table.getTableHeader().setFont(TABLE_HEADER_FONT);
         table.getColumn("Add to Cart").setCellRenderer(new ButtonRenderer());
         table.getColumn("Add to Cart").setCellEditor(new ButtonEditor());
 
@@ -279,8 +285,8 @@ public class MarketplaceApp extends JFrame {
         cartModel = new DefaultTableModel(columns, 0);
         cartTable = new JTable(cartModel);
         cartTable.setRowHeight(40);
-        cartTable.setFont(new Font("Arial", Font.PLAIN, 18));
-        cartTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 18));
+        cartTable.setFont(TABLE_FONT);
+        cartTable.getTableHeader().setFont(TABLE_HEADER_FONT);
 
         JScrollPane scrollPane = new JScrollPane(cartTable);
         cartPanel.add(scrollPane, BorderLayout.CENTER);
@@ -336,13 +342,13 @@ public class MarketplaceApp extends JFrame {
     class ButtonRenderer extends JButton implements javax.swing.table.TableCellRenderer {
         public ButtonRenderer() {
             setOpaque(true);
+            setBackground(ADD_BUTTON_COLOR);
+            setForeground(Color.white);
+            setFont(ADD_BUTTON_FONT);
         }
 
         public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
             setText((value == null) ? "Add" : value.toString());
-            setBackground(new Color(46, 204, 113));
-            setForeground(Color.white);
-            setFont(new Font("Arial", Font.BOLD, 16));
             return this;
         }
     }
@@ -357,15 +363,15 @@ public class MarketplaceApp extends JFrame {
             super(new JCheckBox());
             button = new JButton();
             button.setOpaque(true);
+            button.setBackground(ADD_BUTTON_COLOR);
+            button.setForeground(Color.white);
+            button.setFont(ADD_BUTTON_FONT);
             button.addActionListener(e -> fireEditingStopped());
         }
 
         public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
             label = (value == null) ? "Add" : value.toString();
             button.setText(label);
-            button.setBackground(new Color(46, 204, 113));
-            button.setForeground(Color.white);
-            button.setFont(new Font("Arial", Font.BOLD, 16));
             clicked = true;
             this.row = row;
             return button;
@@ -4,7 +4,7 @@ This Java Swing application provides a basic marketplace cart and checkout funct
 
 ## Features
 * Product Selection: A dropdown menu allows users to choose from a list of available products, each with a name and price.
-* Product Image Display: Although currently displaying placeholder text, this area is intended to show an image of the selected product.
+* Product Image Display: Shows a thumbnail of the selected product, read from the `images` folder next to where the application is run. Images are decoded and scaled on background threads by `ThumbnailCache`, which keeps recent thumbnails in memory within a fixed pixel budget and saves them under `~/.marketplace/thumbnails` so later runs skip decoding the originals; a grey placeholder shows until the image arrives (or if there is none).
 * Add to Cart: Users can add the selected product to their shopping cart.
 * Shopping Cart:
     * Displays the selected product.
@@ -20,33 +20,32 @@ This Java Swing application provides a basic marketplace cart and checkout funct
     * Shows a placeholder for the payment method with an "Edit" button (which uses a `JOptionPane` for input).
     * Provides a dropdown to select a shipping method (with placeholder costs).
     * Displays an "Order summary" including the item name, item total, and order total (which updates based on quantity and gift wrap).
-    * A "Place order" button saves basic order details to a file named `orders.txt` and shows a confirmation message.
+    * A "Place order" button places the order through `CheckoutService`, which appends it to a file named `orders.txt`, empties the cart and shows a confirmation message.
 * Header: Displays a "Marketplace" logo and navigation buttons for "Home" (back to product selection) and "Cart".
 * Footer: Shows a copyright notice.
 
 ## How to Run
-1. Save the code: Save the provided Java code as `MarketplaceCartCheckout.java`.
-2. Compile: Open a terminal or command prompt in the directory where you saved the file and compile the code using the Java compiler:
+1. Save the code: Save the provided Java code as `MarketplaceCartCheckout.java`. The cart, money and order classes come from the marketplace engine in `src/core`, and `ThumbnailCache` from the Swing helpers in `src/swing`.
+2. Compile: Open a terminal or command prompt in the repository root and compile this directory together with the engine and the Swing helpers using the Java compiler:
     ```bash
-    javac MarketplaceCartCheckout.java
+    javac -encoding UTF-8 -d out src/core/*.java src/swing/*.java src/Cart/*.java
     ```
 3. Execute: After successful compilation, run the application using the Java Virtual Machine:
     ```bash
-    java MarketplaceCartCheckout
+    java -cp out MarketplaceCartCheckout
     ```
     This will open the Marketplace Cart and Checkout application window.
 
 ## Notes
 * This is a basic implementation and lacks many features of a real-world e-commerce application.
-* Product images are not actually loaded; the application displays placeholder text for images.
+* Product images are loaded from `images/smartphone.jpg`, `images/laptop.jpg`, `images/headphones.jpg` and `images/example-product.jpg`; a missing file leaves the placeholder.
 * The "Save for later" functionality simply adds the item name to a message dialog.
 * Shipping costs are placeholders and not dynamically calculated based on the selected method.
 * The checkout process is simplified, and no actual payment processing or address validation is implemented.
-* Order details are saved to a plain text file (`orders.txt`) in the same directory where the application is run.
+* Order details (date, item, quantity, item total, gift wrap charge, order total and instructions) are saved by `OrderService` to a plain text file (`orders.txt`) in the same directory where the application is run.
 * The application uses a `CardLayout` to switch between different panels (Product Selection, Cart, and Checkout).
 
 ## Potential Enhancements
-* Implement actual loading and display of product images.
 * Enhance the "Save for later" functionality, perhaps by displaying saved items in a list.
 * Implement dynamic calculation of shipping costs based on the selected method and potentially the shipping address.
 * Add input fields for shipping address and payment details in the checkout panel instead of using `JOptionPane`.
@@ -62,20 +61,29 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class MarketplaceCartCheckout extends JFrame {
     private CardLayout cardLayout;
     private JPanel mainPanel;
     private JLabel quantityLabel, subtotalLabel, itemTotalLabel, orderTotalLabel;
-    private int quantity = 1;
-    private double price = 49.99;
+    // Holds the one product being bought; the totals and the placed order come from marketplace-core
+    private final Cart cart = new Cart(Money.Currency.USD);
+    private final CheckoutService checkout = new CheckoutService(new OrderService(Paths.get("orders.txt")));
+    private static final Money GIFT_WRAP_PRICE = Money.parse("$5.00", Money.Currency.USD);
     private boolean itemSavedForLater = false;
     
     // Enhanced components
     private JComboBox<String> productDropdown;
+    private Money[] productPrices;
     private JLabel productImageLabel;
+    private ThumbnailCache.Thumbnail productThumbnail;
+    private final ThumbnailCache thumbnails = new ThumbnailCache(280, 180, 2, 16L << 20,
+            Path.of(System.getProperty("user.home"), ".marketplace", "thumbnails"));
+    private static final String[] PRODUCT_IMAGES = {
+            "images/smartphone.jpg", "images/laptop.jpg", "images/headphones.jpg", "images/example-product.jpg"};
     private JTextArea specialInstructions;
     private JCheckBox giftWrapCheckbox;
     private JLabel shippingMethodLabel;
@@ -146,19 +154,26 @@ public class MarketplaceCartCheckout extends JFrame {
 
         // Product selection dropdown
         String[] products = {"Smartphone - $499.99", "Laptop - $899.99", "Headphones - $99.99", "Example Product - $49.99"};
+        productPrices = new Money[products.length];
+        for (int i = 0; i < products.length; i++) {
+            productPrices[i] = Money.parse(products[i].substring(products[i].lastIndexOf('$')), Money.Currency.USD);
+        }
         productDropdown = new JComboBox<>(products);
         productDropdown.addActionListener(e -> updateProductDisplay());
+        putInCart(products.length - 1, 1);
 
         // Product image display
         productImageLabel = new JLabel("", JLabel.CENTER);
         productImageLabel.setPreferredSize(new Dimension(300, 200));
         productImageLabel.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
+        productThumbnail = thumbnails.thumbnailFor(productImageLabel);
+        productImageLabel.setIcon(productThumbnail);
+        updateProductDisplay();
 
         // Add to cart button
         JButton addToCartButton = new JButton("Add to Cart");
         addToCartButton.addActionListener(e -> {
-            String selected = (String)productDropdown.getSelectedItem();
-            price = Double.parseDouble(selected.split("\\$")[1]);
+            putInCart(productDropdown.getSelectedIndex(), Math.max(1, cart.itemCount()));
             updateCart();
             cardLayout.show(mainPanel, "Cart");
         });
@@ -176,17 +191,24 @@ public class MarketplaceCartCheckout extends JFrame {
     }
 
     private void updateProductDisplay() {
-        // In a real app, you would load actual product images here
-        productImageLabel.setText("Image: " + productDropdown.getSelectedItem());
+        // Loads in the background; the label repaints when the thumbnail arrives
+        productThumbnail.show(PRODUCT_IMAGES[productDropdown.getSelectedIndex()]);
+        productImageLabel.setToolTipText(String.valueOf(productDropdown.getSelectedItem()));
+    }
+
+    // Replaces what is in the cart with quantity of one product
+    private void putInCart(int product, int quantity) {
+        cart.clear();
+        cart.add(productDropdown.getItemAt(product), productPrices[product], quantity);
     }
 
     private void updateCart() {
         // Update cart quantities and totals
         if (quantityLabel != null) {
-            quantityLabel.setText(String.valueOf(quantity));
+            quantityLabel.setText(String.valueOf(cart.itemCount()));
         }
         if (subtotalLabel != null) {
-            subtotalLabel.setText("Subtotal (" + quantity + " item): $" + String.format("%.2f", price * quantity));
+            subtotalLabel.setText("Subtotal (" + cart.itemCount() + " item): " + cart.total());
         }
     }
 
@@ -218,18 +240,22 @@ public class MarketplaceCartCheckout extends JFrame {
         quantityPanel.setBackground(Color.WHITE);
         quantityPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
-        quantityLabel = new JLabel(String.valueOf(quantity));
+        quantityLabel = new JLabel(String.valueOf(cart.itemCount()));
         JButton minusButton = createQuantityButton("-");
         JButton plusButton = createQuantityButton("+");
 
         minusButton.addActionListener(e -> {
-            if (quantity > 1) {
-                quantity--;
+            if (cart.itemCount() > 1) {
+                cart.setQuantity(0, cart.itemCount() - 1);
                 updateCart();
             }
         });
         plusButton.addActionListener(e -> {
-            quantity++;
+            if (cart.isEmpty()) {
+                putInCart(productDropdown.getSelectedIndex(), 1);
+            } else {
+                cart.setQuantity(0, cart.itemCount() + 1);
+            }
             updateCart();
         });
 
@@ -246,7 +272,7 @@ public class MarketplaceCartCheckout extends JFrame {
         JButton saveButton = createActionButton("Save for later");
 
         removeButton.addActionListener(e -> {
-            quantity = 0;
+            cart.clear();
             updateCart();
         });
         saveButton.addActionListener(e -> saveForLater());
@@ -276,7 +302,7 @@ public class MarketplaceCartCheckout extends JFrame {
         cartPanel.add(productPanel);
 
         // Subtotal
-        subtotalLabel = new JLabel("Subtotal (" + quantity + " item): $" + String.format("%.2f", price * quantity));
+        subtotalLabel = new JLabel("Subtotal (" + cart.itemCount() + " item): " + cart.total());
         subtotalLabel.setFont(new Font("Arial", Font.BOLD, 16));
         subtotalLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         cartPanel.add(subtotalLabel);
@@ -414,8 +440,8 @@ public class MarketplaceCartCheckout extends JFrame {
         JLabel productLabel = new JLabel((String)productDropdown.getSelectedItem());
         productLabel.setFont(new Font("Arial", Font.PLAIN, 14));
 
-        itemTotalLabel = new JLabel("Item total: $" + String.format("%.2f", price * quantity));
-        orderTotalLabel = new JLabel("Order total: $" + String.format("%.2f", price * quantity));
+        itemTotalLabel = new JLabel("Item total: " + cart.total());
+        orderTotalLabel = new JLabel("Order total: " + cart.total());
         orderTotalLabel.setFont(new Font("Arial", Font.BOLD, 16));
 
         summaryPanel.add(summaryTitle);
@@ -437,15 +463,7 @@ public class MarketplaceCartCheckout extends JFrame {
         placeOrderButton.setForeground(Color.WHITE);
         placeOrderButton.setFocusPainted(false);
         placeOrderButton.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
-        placeOrderButton.addActionListener(e -> {
-            double total = price * quantity;
-            if (total <= 0.0) {
-                JOptionPane.showMessageDialog(this, "Cannot place an order with $0.00 total.", "Error", JOptionPane.ERROR_MESSAGE);
-            } else {
-                saveOrderDetails();
-                JOptionPane.showMessageDialog(this, "Order placed successfully!");
-            }
-        });
+        placeOrderButton.addActionListener(e -> placeOrder());
 
         checkoutPanel.add(Box.createRigidArea(new Dimension(0, 20)));
         checkoutPanel.add(placeOrderButton);
@@ -484,23 +502,23 @@ public class MarketplaceCartCheckout extends JFrame {
     }
 
     private void updateOrderTotal() {
-        double total = price * quantity;
+        Money total = cart.total();
         
         if (giftWrapCheckbox.isSelected()) {
-            total += 5.00;
+            total = total.plus(GIFT_WRAP_PRICE);
         }
         
         // Update shipping cost based on selection
         // (You would add this logic when implementing shipping options)
         
         if (orderTotalLabel != null) {
-            orderTotalLabel.setText("Order total: $" + String.format("%.2f", total));
+            orderTotalLabel.setText("Order total: " + total);
         }
     }
 
     private void updateCheckout() {
         if (itemTotalLabel != null) {
-            itemTotalLabel.setText("Item total: $" + String.format("%.2f", price * quantity));
+            itemTotalLabel.setText("Item total: " + cart.total());
         }
         if (orderTotalLabel != null) {
             updateOrderTotal();
@@ -515,20 +533,22 @@ public class MarketplaceCartCheckout extends JFrame {
         JOptionPane.showMessageDialog(this, "Item saved for later!");
     }
 
-    private void saveOrderDetails() {
-        String orderDetails = "Order Date: " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "\n";
-        orderDetails += "Item: " + productDropdown.getSelectedItem() + "\n";
-        orderDetails += "Quantity: " + quantity + "\n";
-        orderDetails += "Total: $" + String.format("%.2f", price * quantity) + "\n";
-        orderDetails += "Gift Wrap: " + (giftWrapCheckbox.isSelected() ? "Yes" : "No") + "\n";
-        orderDetails += "Special Instructions: " + specialInstructions.getText() + "\n";
-        orderDetails += "---------------------------------------------\n\n";
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("orders.txt", true))) {
-            writer.write(orderDetails);
+    // CheckoutService appends the order to orders.txt and empties the cart
+    private void placeOrder() {
+        Map<String, Money> charges = giftWrapCheckbox.isSelected() ? Map.of("Gift Wrap", GIFT_WRAP_PRICE) : Map.of();
+        Order order;
+        try {
+            order = checkout.checkout(cart, charges, specialInstructions.getText());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Cannot place an order with $0.00 total.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "Error saving the order.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        updateCart();
+        updateCheckout();
+        JOptionPane.showMessageDialog(this, "Order placed successfully! Order total: " + order.total);
     }
 
     private JPanel createFooter() {
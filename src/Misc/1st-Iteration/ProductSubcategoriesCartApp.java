@@ -18,12 +18,14 @@ The application consists of two main screens, navigated using a `CardLayout`:
 2.  Cart Page:
     * Displays a table of items currently in the shopping cart with the following columns:
         * Product: The name of the product added to the cart.
-        * Price: The price of the product.
+        * Quantity: How many of it are in the cart; editable, and 0 removes the line.
+        * Price: The price of the line (unit price times quantity).
+    * The table and the "View Cart" button follow the cart as it changes: `CartTableModel` is driven by the change events of `Cart`, which keeps the total and item count as lines are added, changed or removed, so each change updates one row and one button label even in a cart of thousands of lines.
     * Includes a "Continue Shopping" button that navigates the user back to the Product Page.
     * Includes a "Proceed to Checkout" button. Clicking this button:
         * If the cart is empty, displays a warning message.
-        * If the cart contains items, simulates a successful order placement with a thank you message.
-        * Clears the shopping cart.
+        * If the cart contains items, places the order through `CheckoutService` and shows its number and total with a thank you message.
+        * Clears the shopping cart (the checkout does this as part of placing the order).
         * Updates the cart count on the "View Cart" button back to zero.
         * Navigates the user back to the Product Page.
 
@@ -35,52 +37,53 @@ The application is built using Java Swing components:
 * `JLabel`: Displays text information like titles.
 * `JButton`: Interactive buttons for "Add to Cart", "View Cart", "Continue Shopping", and "Proceed to Checkout".
 * `JTable`: Displays the list of products and the items in the shopping cart.
-* `DefaultTableModel`: Manages the data displayed in the `JTable` components.
+* `DefaultTableModel`: Manages the data displayed in the product `JTable`.
+* `CartTableModel`: Shows the lines of the `Cart` in the cart `JTable`, firing only the rows each change touches.
 * `JScrollPane`: Provides scrollability for the tables if the content exceeds the display area.
 * `CardLayout`: Manages the switching between the Product and Cart pages.
 * `BorderLayout`, `FlowLayout`: Layout managers used to arrange components within panels.
 * `BorderFactory`: Used to create borders for visual styling.
 * `Color`, `Font`: Used for customizing the appearance of components.
 * `JOptionPane`: Used to display confirmation and informational messages.
-* `ArrayList`: Used to store the `Product` objects in the shopping cart.
+* `Cart` (`src/core`): The shopping cart, a list of lines (product, unit price, quantity) with a running total.
+* `CheckoutService` (`src/core`): Turns the cart into an `Order` and empties it.
 * `TableCellRenderer`: An interface implemented by `ButtonRenderer` to customize how the "Add to Cart" button is displayed in the product table.
 * `DefaultCellEditor`: A base class extended by `ButtonEditor` to handle the click events of the "Add to Cart" buttons in the product table.
 
 The code includes inner classes:
-* `Product`: A simple class to represent a product with a name and price.
 * `ButtonRenderer`: A custom table cell renderer to display the "Add to Cart" button in the product table.
 * `ButtonEditor`: A custom table cell editor to handle the action when the "Add to Cart" button is clicked, adding the product to the cart and updating the UI.
 
 ## How to Run
-1.  Save the code as `ProductSubcategoriesCartApp.java`.
-2.  Compile the code using a Java compiler: `javac ProductSubcategoriesCartApp.java`
-3.  Run the compiled class: `java ProductSubcategoriesCartApp`
+1.  Save the code as `ProductSubcategoriesCartApp.java`. `Cart`, `Money` and the checkout classes come from the marketplace engine in `src/core`.
+2.  Compile it together with the engine and the shared Swing helpers (`CartTableModel`) from the repository root: `javac -encoding UTF-8 -d out src/core/*.java src/swing/*.java src/Misc/1st-Iteration/*.java`
+3.  Run the compiled class: `java -cp out ProductSubcategoriesCartApp`
 
 This will open the GUI application, allowing you to browse the products, add them to the cart, view the cart, and simulate a checkout process.
 
 ## Dependencies
-* Java Development Kit (JDK) 8 or higher.
+* Java Development Kit (JDK) 11 or higher.
 
 ## Limitations
-* In-Memory Cart: The shopping cart data is stored in an `ArrayList` within the application's memory. The cart contents are not saved once the application is closed.
-* Simulated Checkout: The "Proceed to Checkout" functionality is a basic simulation. It displays a success message but does not involve any actual payment processing, order creation, or inventory management.
+* In-Memory Cart: The shopping cart data is stored in a `Cart` within the application's memory. The cart contents are not saved once the application is closed.
+* Simulated Checkout: The "Proceed to Checkout" functionality is a basic simulation. It places an order in memory and displays a success message, but does not involve any actual payment processing or inventory management.
 * No Data Persistence: The product data displayed in the product table is hardcoded within the `createProductPage()` method. There is no mechanism to load product information from an external source.
 * Basic UI: The user interface is designed for demonstration purposes and is quite simple.
-* Single "Add to Cart" Action: The application only provides a basic "Add to Cart" action without options for quantity adjustment or removal from the cart (except at checkout).
+* Single "Add to Cart" Action: Quantities are changed in the cart table; there is no separate remove button (set the quantity to 0).
 * No User Accounts or Authentication: There is no concept of user accounts or logins.
 * Limited Error Handling: The application has minimal error handling.
 * No Search or Filtering: The application lacks features for searching or filtering products.
 * No Product Details Page: Clicking on a product doesn't lead to a separate details page.
 
 ## Notes
-* The application uses an in-memory `ArrayList` to store the shopping cart data.
+* The application uses an in-memory `Cart` to store the shopping cart data.
 * The checkout process is a simple simulation.
 * The UI is designed for basic demonstration purposes.*/
 
 import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
-import java.util.ArrayList;
+import java.io.IOException;
 
 public class ProductSubcategoriesCartApp {
     private JFrame frame;
@@ -88,8 +91,9 @@ public class ProductSubcategoriesCartApp {
     private JPanel mainPanel;
     private JTable productTable;
     private JTable cartTable;
-    private DefaultTableModel cartModel;
-    private ArrayList<Product> cart = new ArrayList<>();
+    private CartTableModel cartModel;
+    private final Cart cart = new Cart(Money.Currency.USD);
+    private final CheckoutService checkout = new CheckoutService(new OrderService(null));
     private JButton cartButton; // Reference to update cart count
 
     public ProductSubcategoriesCartApp() {
@@ -122,11 +126,11 @@ public class ProductSubcategoriesCartApp {
         // Product table
         String[] columns = {"Category", "Product", "Price", "Action"};
         Object[][] data = {
-            {"Electronics", "Wireless Headphones", "$59.99", "Add to Cart"},
-            {"Electronics", "Bluetooth Speaker", "$39.99", "Add to Cart"},
-            {"Clothing", "Cotton T-Shirt", "$19.99", "Add to Cart"},
-            {"Home", "Coffee Maker", "$49.99", "Add to Cart"},
-            {"Books", "Java Programming", "$29.99", "Add to Cart"}
+            {"Electronics", "Wireless Headphones", usd("$59.99"), "Add to Cart"},
+            {"Electronics", "Bluetooth Speaker", usd("$39.99"), "Add to Cart"},
+            {"Clothing", "Cotton T-Shirt", usd("$19.99"), "Add to Cart"},
+            {"Home", "Coffee Maker", usd("$49.99"), "Add to Cart"},
+            {"Books", "Java Programming", usd("$29.99"), "Add to Cart"}
         };
 
         DefaultTableModel model = new DefaultTableModel(data, columns) {
@@ -163,12 +167,9 @@ public class ProductSubcategoriesCartApp {
         panel.add(scrollPane, BorderLayout.CENTER);
 
         // View Cart button
-        cartButton = new JButton("View Cart (" + cart.size() + ")");
+        cartButton = new JButton("View Cart (" + cart.itemCount() + ") - " + cart.total());
         styleButton(cartButton, new Color(70, 130, 180));
-        cartButton.addActionListener(e -> {
-            updateCartView();
-            cardLayout.show(mainPanel, "Cart");
-        });
+        cartButton.addActionListener(e -> cardLayout.show(mainPanel, "Cart"));
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         buttonPanel.setBackground(new Color(240, 240, 240));
@@ -190,14 +191,10 @@ public class ProductSubcategoriesCartApp {
         panel.add(title, BorderLayout.NORTH);
 
         // Cart table
-        String[] columns = {"Product", "Price"};
-        cartModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        
+        cartModel = new CartTableModel(cart);
+        // The cart keeps its count and total as lines change, so each change costs one label update
+        cartModel.addTableModelListener(e -> cartButton.setText("View Cart (" + cart.itemCount() + ") - " + cart.total()));
+
         cartTable = new JTable(cartModel);
         cartTable.setRowHeight(45);
         cartTable.setFont(new Font("Segoe UI", Font.PLAIN, 16));
@@ -221,11 +218,15 @@ public class ProductSubcategoriesCartApp {
         checkoutButton.addActionListener(e -> {
             if (cart.isEmpty()) {
                 JOptionPane.showMessageDialog(frame, "Your cart is empty!", "Checkout", JOptionPane.WARNING_MESSAGE);
-            } else {
-                JOptionPane.showMessageDialog(frame, "Order placed successfully!", "Thank You", JOptionPane.INFORMATION_MESSAGE);
-                cart.clear();
-                updateCartView();
+                return;
+            }
+            try {
+                Order order = checkout.checkout(cart);
+                JOptionPane.showMessageDialog(frame, "Order " + order.id + " placed successfully! Total: " + order.total,
+                        "Thank You", JOptionPane.INFORMATION_MESSAGE);
                 cardLayout.show(mainPanel, "Products");
+            } catch (IllegalArgumentException | IOException ex) {
+                JOptionPane.showMessageDialog(frame, "Could not place the order: " + ex.getMessage(), "Checkout", JOptionPane.ERROR_MESSAGE);
             }
         });
 
@@ -236,15 +237,8 @@ public class ProductSubcategoriesCartApp {
         return panel;
     }
 
-    private void updateCartView() {
-        // Update cart table
-        cartModel.setRowCount(0);
-        for (Product product : cart) {
-            cartModel.addRow(new Object[]{product.name, product.price});
-        }
-        
-        // Update cart count
-        cartButton.setText("View Cart (" + cart.size() + ")");
+    private static Money usd(String price) {
+        return Money.parse(price, Money.Currency.USD);
     }
 
     private void styleButton(JButton button, Color color) {
@@ -258,16 +252,6 @@ public class ProductSubcategoriesCartApp {
         ));
     }
 
-    class Product {
-        String name;
-        String price;
-
-        Product(String name, String price) {
-            this.name = name;
-            this.price = price;
-        }
-    }
-
     class ButtonRenderer extends JButton implements TableCellRenderer {
         public ButtonRenderer() {
             setOpaque(true);
@@ -304,8 +288,8 @@ public class ProductSubcategoriesCartApp {
                 
                 // Add product to cart
                 String product = (String) productTable.getValueAt(row, 1);
-                String price = (String) productTable.getValueAt(row, 2);
-                cart.add(new Product(product, price));
+                Money price = (Money) productTable.getValueAt(row, 2);
+                cart.add(product, price);
                 
                 // Update UI
                 SwingUtilities.invokeLater(() -> {
@@ -313,7 +297,6 @@ public class ProductSubcategoriesCartApp {
                         product + " added to cart!", 
                         "Success", 
                         JOptionPane.INFORMATION_MESSAGE);
-                    updateCartView();
                 });
             });
         }
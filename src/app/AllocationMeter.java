@@ -0,0 +1,66 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.swing.RepaintManager;
+
+/*
+ * Measurement mode for painting: a RepaintManager that reports how many bytes the EDT allocates
+ * per painted frame.
+ *
+ * Every call to paintDirtyRegions() paints one frame. The thread's allocation counter
+ * (com.sun.management.ThreadMXBean) is read before and after it, and every REPORT_FRAMES frames the
+ * average and largest allocation per frame go to standard output. Repainting a product table should
+ * report only what Java2D itself allocates for the frame: the renderers share their fonts and colours
+ * (the button border is the look and feel's shared instance) and the table model keeps the rows it
+ * has recently served, so the numbers stay flat however long the table is.
+ *
+ * Installed by install() when the JVM is started with -Dmarketplace.measureAllocations=true; on a
+ * JVM without per-thread allocation counters it stays off.
+ */
+final class AllocationMeter extends RepaintManager {
+    static final String PROPERTY = "marketplace.measureAllocations";
+    static final int REPORT_FRAMES = 120;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private long frames;
+    private long totalBytes;
+    private long maxBytes;
+
+    private AllocationMeter(com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+    }
+
+    /** Installs the meter as the current RepaintManager if the property asks for it. Call on the EDT. */
+    static void install() {
+        if (!Boolean.getBoolean(PROPERTY)) {
+            return;
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("Allocation measurement is not supported by this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        if (!counters.isThreadAllocatedMemoryEnabled()) {
+            counters.setThreadAllocatedMemoryEnabled(true);
+        }
+        RepaintManager.setCurrentManager(new AllocationMeter(counters));
+    }
+
+    @Override
+    public void paintDirtyRegions() {
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        super.paintDirtyRegions();
+        long bytes = threads.getThreadAllocatedBytes(id) - before;
+        frames++;
+        totalBytes += bytes;
+        maxBytes = Math.max(maxBytes, bytes);
+        if (frames == REPORT_FRAMES) {
+            System.out.println("Painted " + frames + " frames: " + totalBytes / frames + " bytes allocated per frame on average, "
+                    + maxBytes + " at most");
+            frames = 0;
+            totalBytes = 0;
+            maxBytes = 0;
+        }
+    }
+}
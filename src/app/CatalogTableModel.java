@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import javax.swing.table.AbstractTableModel;
+
+/*
+ * Read-through table model over products of a catalog.
+ *
+ * The model holds only the catalog, the row count and a function from row index to product id;
+ * getValueAt() reads the name and price of that product from the catalog when the table paints the
+ * cell. Nothing is copied per row, so a listing of 200,000 products opens as fast and in as little
+ * memory as a listing of ten, and only the visible rows are ever decoded.
+ *
+ * The last rows served are kept in a small direct-mapped cache (ROW_CACHE slots, row modulo the
+ * size), so repainting the visible rows hands the renderers the same name and Money again and
+ * allocates nothing; only rows scrolled into view are read from the catalog.
+ */
+final class CatalogTableModel extends AbstractTableModel {
+    static final String[] COLUMNS = {"Product", "Price", "Add to Cart"};
+    static final int PRODUCT = 0;
+    static final int PRICE = 1;
+    static final int ADD = 2;
+    private static final int ROW_CACHE = 256;
+
+    private final Catalog catalog;
+    private final int rowCount;
+    private final IntUnaryOperator idAt;
+    private final int[] cachedRows = new int[ROW_CACHE];
+    private final String[] cachedNames = new String[ROW_CACHE];
+    private final Money[] cachedPrices = new Money[ROW_CACHE];
+
+    /** idAt maps each row from 0 to rowCount - 1 to a product id of catalog. */
+    CatalogTableModel(Catalog catalog, int rowCount, IntUnaryOperator idAt) {
+        this.catalog = catalog;
+        this.rowCount = rowCount;
+        this.idAt = idAt;
+        Arrays.fill(cachedRows, -1);
+    }
+
+    /** The product id shown in a row. */
+    int productAt(int row) {
+        return idAt.applyAsInt(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == ADD) {
+            return "Add";
+        }
+        int slot = row & (ROW_CACHE - 1);
+        if (cachedRows[slot] != row) {
+            int id = productAt(row);
+            cachedNames[slot] = catalog.name(id);
+            cachedPrices[slot] = catalog.price(id);
+            cachedRows[slot] = row;
+        }
+        return column == PRODUCT ? cachedNames[slot] : cachedPrices[slot];
+    }
+
+    // Only the button column takes clicks; names and prices are read-only
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == ADD;
+    }
+}
@@ -0,0 +1,297 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.InvocationEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.swing.AbstractButton;
+
+/*
+ * Measurement mode for the Event Dispatch Thread: an EventQueue that times every event it
+ * dispatches and keeps a latency histogram per kind of event.
+ *
+ * Events are grouped by a key made of the event type and its source: "MOUSE_RELEASED JButton
+ * 'Search'", "action Checkout", "invocation MarketplaceApp$$Lambda". Code can also time a named
+ * part of itself with span(name), which is cheap enough to leave in place (a shared no-op when
+ * the monitor is off). Only busy time counts: while the EDT waits for the next event, also inside
+ * the loop of a modal dialog, the clock stops, and an event dispatched from such a loop is counted
+ * for itself and not for the event that opened the dialog.
+ *
+ * A watchdog thread looks at the EDT four times per stall threshold; when the EDT has been busy for
+ * longer than the threshold it prints the EDT's stack right then, while it is still stuck, so the
+ * report shows where the time goes and not just that it went. The histograms (count, median, 99th
+ * percentile and maximum per key) are printed when the JVM exits, and report() returns them.
+ *
+ * Installed by install() when the JVM is started with -Dmarketplace.monitorEdt=<milliseconds> (the
+ * stall threshold; "true" means 100). Any Swing app can call install() first thing on the EDT.
+ */
+final class EdtMonitor extends EventQueue {
+    static final String PROPERTY = "marketplace.monitorEdt";
+    private static final int MAX_DEPTH = 64;
+    private static final Span NO_SPAN = () -> { };
+
+    private static volatile EdtMonitor installed;
+
+    private final long stallNanos;
+    private final Map<String, Histogram> histograms = new HashMap<>();
+    // AWT starts a new dispatch thread after an uncaught exception; this is the latest one
+    private volatile Thread edt;
+    // Busy time of the EDT so far, in nanoseconds, and when the current busy stretch began (0 while waiting)
+    private long busyTotal;
+    private volatile long busySince;
+    private volatile String current = "";
+    private long reportedStall;
+    // Per nesting level of dispatchEvent: the busy total on entry and the busy time of nested events
+    private final long[] startBusy = new long[MAX_DEPTH];
+    private final long[] nestedBusy = new long[MAX_DEPTH];
+    private int depth;
+
+    /** A timed part of an event; close() records it. */
+    interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private EdtMonitor(long stallNanos) {
+        this.stallNanos = stallNanos;
+        this.edt = Thread.currentThread();
+    }
+
+    /** Replaces the system event queue with the monitor if the property asks for it. Call on the EDT. */
+    static void install() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.equalsIgnoreCase("false")) {
+            return;
+        }
+        long millis;
+        try {
+            millis = value.equalsIgnoreCase("true") ? 100 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(PROPERTY + " must be a number of milliseconds, got " + value);
+        }
+        EdtMonitor monitor = new EdtMonitor(TimeUnit.MILLISECONDS.toNanos(millis));
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(monitor);
+        installed = monitor;
+
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "edt-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, millis / 4);
+        watchdog.scheduleAtFixedRate(monitor::checkStall, period, period, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(monitor.report()), "edt-report"));
+    }
+
+    /**
+     * Starts timing a named part of the current event, e.g.
+     * EdtMonitor.Span span = EdtMonitor.span("search"); try { ... } finally { span.close(); }
+     */
+    static Span span(String name) {
+        EdtMonitor monitor = installed;
+        if (monitor == null || Thread.currentThread() != monitor.edt) {
+            return NO_SPAN;
+        }
+        long start = monitor.busyNow(System.nanoTime());
+        return () -> monitor.record("span " + name, monitor.busyNow(System.nanoTime()) - start);
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        if (depth == MAX_DEPTH) {
+            super.dispatchEvent(event);
+            return;
+        }
+        long now = System.nanoTime();
+        pause(now);
+        if (depth == 0) {
+            edt = Thread.currentThread();
+        }
+        int level = depth++;
+        String key = keyOf(event);
+        String outer = current;
+        startBusy[level] = busyTotal;
+        nestedBusy[level] = 0;
+        current = key;
+        busySince = now;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long end = System.nanoTime();
+            pause(end);
+            long busy = busyTotal - startBusy[level];
+            depth--;
+            if (level > 0) {
+                nestedBusy[level - 1] += busy;
+            }
+            current = outer;
+            record(key, busy - nestedBusy[level]);
+            busySince = end;
+        }
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        pause(System.nanoTime());
+        try {
+            return super.getNextEvent();
+        } finally {
+            busySince = System.nanoTime();
+        }
+    }
+
+    /** The histograms so far, slowest keys (by total time) first. */
+    String report() {
+        List<Map.Entry<String, Histogram>> entries;
+        synchronized (histograms) {
+            entries = new ArrayList<>();
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                entries.add(Map.entry(entry.getKey(), entry.getValue().copy()));
+            }
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue().total, a.getValue().total));
+        StringBuilder text = new StringBuilder("EDT latency (count, median, p99, max in ms):\n");
+        for (Map.Entry<String, Histogram> entry : entries) {
+            Histogram h = entry.getValue();
+            text.append(String.format("  %-60s %8d %9.3f %9.3f %9.3f%n", entry.getKey(), h.count,
+                    h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6, h.max / 1e6));
+        }
+        return text.toString();
+    }
+
+    private void pause(long now) {
+        long since = busySince;
+        if (since != 0) {
+            busyTotal += now - since;
+            busySince = 0;
+        }
+    }
+
+    private long busyNow(long now) {
+        long since = busySince;
+        return busyTotal + (since != 0 ? now - since : 0);
+    }
+
+    private void record(String key, long nanos) {
+        synchronized (histograms) {
+            histograms.computeIfAbsent(key, k -> new Histogram()).record(nanos);
+        }
+    }
+
+    // On the watchdog thread
+    private void checkStall() {
+        long since = busySince;
+        if (since == 0 || since == reportedStall || System.nanoTime() - since < stallNanos) {
+            return;
+        }
+        reportedStall = since;
+        String key = current;
+        StackTraceElement[] stack = edt.getStackTrace();
+        StringBuilder text = new StringBuilder("EDT stalled for more than ")
+                .append(TimeUnit.NANOSECONDS.toMillis(stallNanos)).append(" ms in ").append(key).append('\n');
+        for (StackTraceElement frame : stack) {
+            text.append("\tat ").append(frame).append('\n');
+        }
+        System.out.print(text);
+    }
+
+    private static String keyOf(AWTEvent event) {
+        if (event instanceof ActionEvent) {
+            return "action " + ((ActionEvent) event).getActionCommand();
+        }
+        String params = event.paramString();
+        if (event instanceof InvocationEvent) {
+            // "...,runnable=Outer$$Lambda$14/0x0000000800c0b000@1b2c3d,notifier=..." -> "invocation Outer$$Lambda"
+            int start = params.indexOf("runnable=");
+            if (start < 0) return "invocation";
+            start += "runnable=".length();
+            int end = start;
+            while (end < params.length() && (Character.isJavaIdentifierPart(params.charAt(end)) || params.charAt(end) == '.')) {
+                end++;
+            }
+            String runnable = params.substring(start, end);
+            return "invocation " + runnable.substring(runnable.lastIndexOf('.') + 1).replaceAll("\\$\\d+$", "");
+        }
+        int comma = params.indexOf(',');
+        String type = comma < 0 ? params : params.substring(0, comma);
+        if (type.isEmpty()) {
+            type = className(event);
+        }
+        Object source = event.getSource();
+        if (source == null) {
+            return type;
+        }
+        String component = className(source);
+        if (source instanceof AbstractButton && ((AbstractButton) source).getText() != null) {
+            return type + " " + component + " '" + ((AbstractButton) source).getText() + "'";
+        }
+        return type + " " + component;
+    }
+
+    // The simple name, or the full name for an anonymous class
+    private static String className(Object object) {
+        String name = object.getClass().getSimpleName();
+        return name.isEmpty() ? object.getClass().getName() : name;
+    }
+
+    // Latencies in buckets of a quarter octave: four buckets per power of two, so a percentile is
+    // within 19% of the true value whatever the scale
+    private static final class Histogram {
+        final long[] counts = new long[248];
+        long count;
+        long total;
+        long max;
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            counts[bucket(nanos)]++;
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        long percentile(double p) {
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(max, upperBound(i));
+                }
+            }
+            return max;
+        }
+
+        Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+            copy.count = count;
+            copy.total = total;
+            copy.max = max;
+            return copy;
+        }
+
+        static int bucket(long nanos) {
+            if (nanos < 4) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            return 4 * (exponent - 1) + (int) ((nanos >>> (exponent - 2)) & 3);
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            int exponent = bucket / 4 + 1;
+            long lower = (4L + bucket % 4) << (exponent - 2);
+            return lower + (1L << (exponent - 2)) - 1;
+        }
+    }
+}
@@ -17,40 +17,61 @@ Key Features:
 How to Run:
 
 1. Prerequisites: Ensure you have a Java Development Kit (JDK) installed on your system.
-2. Save the Code: Save the provided Java source code as `MarketplaceApp.java`.
-3. Compile: Open a terminal or command prompt, navigate to the directory where you saved `MarketplaceApp.java`, and compile the code using the `javac` command:
+2. Get the Code: The app is `src/app`; the engine it runs on (catalog, search, cart, checkout and orders, with no Swing code) is `src/core`, and the Swing helpers it shares with the other apps (`CartTableModel`) are in `src/swing`.
+3. Compile: From the repository root, compile the three directories together using the `javac` command:
    ```bash
-   javac MarketplaceApp.java
+   javac -encoding UTF-8 -d out src/core/*.java src/swing/*.java src/app/*.java
    ```
 4. Execute: After successful compilation, run the application using the `java` command:
    ```bash
-   java MarketplaceApp
+   java -cp out MarketplaceApp
    ```
 
 Code Structure Overview:
 
-* `MarketplaceApp` Class: The main class that sets up the application window, initializes components, handles navigation, and manages the product catalog and shopping cart. It uses `CardLayout` to switch between different panels (home, cart, category views, search results).
-* `Product` Class: A simple data class representing a product with attributes for its name and price.
+* `MarketplaceApp` Class: The main class that sets up the application window, initializes components and handles navigation. It uses `CardLayout` to switch between different panels (home, cart, category views, search results), and leaves the catalog, searching, the cart and checkout to the `Marketplace` engine.
+* `Marketplace` Class (`src/core`): The headless engine the app is a client of: `CatalogService`, `SearchService`, `CartService`, `CheckoutService` and `OrderService`.
+* `Cart` Class (`src/core`): The shopping cart, a list of lines (product name, unit price, quantity) that keeps its total as it changes and reports each change to its listeners.
 * `ButtonRenderer` Class: A custom `TableCellRenderer` for displaying buttons within a `JTable`. Used for the "Add to Cart" buttons in product listings and search results.
-* `ButtonEditor` Class: A custom `TableCellEditor` that handles the action when the "Add to Cart" button is clicked. It retrieves the product information from the table row, adds it to the `cart` ArrayList, and displays a confirmation message.
+* `ButtonEditor` Class: A custom `TableCellEditor` that handles the action when the "Add to Cart" button is clicked. It takes the product id of the table row and adds that product, as the listing's catalog version has it, to the `cart` through `CartService`, and displays a confirmation message.
 
 Functionality Details:
 
-* Product Population (`populateProducts()`): This method initializes the marketplace with a small set of sample products organized into different categories using a `HashMap`.
+* Marketplace Core (`src/core`, `Marketplace`): Everything except the screens runs in a headless engine with no Swing or AWT code. `CatalogService` owns the catalog versions, the writer thread and the search indexes; `SearchService` runs listings and searches and keeps the query cache; `CartService` keeps carts by id; `CheckoutService` turns a cart into an `Order`, which `OrderService` numbers and keeps. All of them are thread-safe, so a benchmark or a server can drive the same engine from many threads at full speed, and this app only turns clicks into calls and results into components.
+* Marketplace API (`src/server`, `MarketplaceServer`): The engine behind this window also runs without it, as an HTTP/JSON service for a web storefront: catalog browsing with facet counts, search, carts by id and checkout. It reads the same `-Dmarketplace.catalog` and `-Dmarketplace.feed` properties, streams listings as they are written and turns requests away with 503 when too many are already in flight.
+* Catalog Loading (`loadCatalog()`): When started with `-Dmarketplace.catalog=<file>`, the catalog is read from a memory-mapped binary catalog file (`CatalogFile`); only the header is read at startup and each product is decoded when a table row or search hit needs it.
+* Feed Import (`importFeed()`, `CatalogService.importFeed()`): When started with `-Dmarketplace.feed=<file.csv|file.jsonl>`, the feed is streamed through `FeedImporter` on the catalog writer thread (parsed in chunks on a fork-join pool, with prices and categories validated) and the resulting catalog is published as the next version when the import finishes.
+* Selling (`showSellDialog()`, `CatalogService.sell()`): The "Sell" button lists a new product; it is added on the catalog writer thread and published as a new catalog version, with the search index updated incrementally.
+* Type-ahead (`installSuggestions()`): While the user types, suggestions come from a compact array-encoded prefix trie (`PrefixTrie`) ranked by how often each product was added to a cart. Keystrokes are debounced, the lookup runs off the EDT, and each new keystroke cancels the previous lookup.
+* Ranked Search (`TextIndex`): A search first looks the query words up in a full-text index over product titles and descriptions and lists the best 50 matches by BM25 relevance, with title words weighted above description words; the best results are kept in a bounded heap instead of sorting every hit.
+* Name Search (`TrigramIndex`): When no whole word matches, the query is matched as a substring of product names. Names are indexed by trigram when the catalog loads, so a search only checks the products whose names share every trigram of the query instead of scanning the whole catalog.
+* Search Keys (`SearchKeys`): Every name is reduced once, when it is indexed, to a search key: Unicode NFKD with accents removed and case folded, so "Café", "cafe" and full-width "ｃａｆｅ" all match each other. The keys are packed into one char array, queries are reduced the same way, and matching a product compares the two in place without allocating.
+* Typo-tolerant Search (`FuzzyIndex`): When nothing contains the query as typed, the words of the query are looked up in a BK-tree of all name words, allowing one edit for short words and two for longer ones ("hedphones" finds "Headphones"); the closest matches are listed first.
+* Catalog Versions (`VersionedCatalog`): The catalog is an immutable snapshot published atomically. Category listings and searches read `CatalogService.current()` once and use that version throughout, so they never block on, or see half of, a running import.
+* Product Population (`CatalogService.openSample()`): This method initializes the marketplace with a small set of sample products, stored in the column-oriented `CatalogStore` (int product ids, a long price column in paise, dictionary-encoded categories and a packed UTF-8 name arena).
 * Top Navigation (`createTopPanel()`): Creates the top section of the application with a logo and placeholder navigation buttons.
 * Home Page (`homePage()`): Displays the search bar, category buttons, and a welcoming title and subtitle.
 * Category Product Display (`showProductsForCategory()`): Dynamically creates a panel to display products belonging to a specific category in a `JTable` with "Add to Cart" buttons and a "View Cart" button.
-* Search Functionality (`searchButton` ActionListener and `showSearchResults()`): Implements the search functionality. When a user enters a query and clicks the search button, the application iterates through all products and displays any matches in a new `JTable` within a dedicated panel. A "Back to Home" button is provided.
-* Shopping Cart (`cartPage()` and `refreshCartPage()`): The `cartPage()` method sets up the initial cart view with a `JTable`. The `refreshCartPage()` method updates the table content based on the items in the `cart` ArrayList.
-* Adding to Cart (via `ButtonEditor`): When the "Add" button is clicked in a product listing or search result, the corresponding `Product` object is added to the `cart` ArrayList.
-* Checkout Simulation: Clicking the "Checkout" button on the cart page displays a simple order confirmation message and clears the `cart`.
+* Search Functionality (`searchButton` ActionListener, `showProducts()` and `SearchService`): Implements the search functionality. When a user enters a query and clicks the search button, `SearchService` prepares and runs it, and the matching products are displayed in a `JTable` within a dedicated panel. A "Back to Home" button is provided.
+* Query Language (`QueryParser`, `QueryPlan`): The search box also takes structured queries such as `category:Electronics AND price<5000 AND (phone OR tablet) -refurbished`, with `name:`, quoted phrases, price ranges (`price:100..500`), OR, NOT and parentheses. The query is parsed into a tree and compiled to a plan whose steps are ordered by how many products each is estimated to match (read off the word, category, price and trigram indexes), so the most selective condition runs first and later ones only check the remaining candidates. The plan shows in the tooltip of the results heading.
+* Parallel Search (`ParallelSearch`): Ranking a query over a large catalog is split into shards of 65536 product ids, scored as fork-join tasks on `searchPool` (one thread per core), and the top 50 of each shard are merged pairwise. Catalogs of up to two shards are searched on the calling thread.
+* Query Cache (`QueryCache`): The rows of recent listings and searches are cached by normalized query, filters and sort order (at most 256 results or 16 MB, least recently used evicted first). The cache is emptied when a new catalog version is published; hit and miss counts show in the tooltip of the results heading.
+* Price Sorting (`PriceIndex`): Listings can be sorted by price. Each catalog version carries a per-category index of product ids in price order (a sorted main run plus a small sorted run of recent additions), which answers price ranges and cheapest/most expensive queries with two binary searches and a walk over the results.
+* Product Tables (`CatalogTableModel`): Listings are shown through a read-through table model that looks up the name and price of a row in the catalog when the row is painted. Nothing is copied per product, and a listing in catalog order keeps its rows as a bitmap and finds row i with `Bitmap.select(i)`, so opening a category of 200,000 products takes as long and as much memory as a category of ten.
+* Faceted Filtering (`FacetIndex`, `Bitmap`): Category listings and search results share one page with a sidebar of category and price-band checkboxes, each showing how many products it would leave. Every category, price band and attribute value keeps a compressed bitmap of its product ids, so combining a search with filters is a few bitmap intersections.
+* Screens (`ScreenManager`): Listing and search pages stay in the `CardLayout` for reuse, up to 32 category pages and 8 search or filtered pages, least recently shown removed first; opening one again only flips the card. Pages are dropped when a new catalog version is published, so a long session keeps a bounded number of component trees.
+* Cell Rendering (`ButtonRenderer`, `ButtonEditor`, `AllocationMeter`): Table fonts and the button colour are shared constants, the renderer button is styled once and skips the repaint and property-change events of a live component, and the table model keeps the rows it last served, so repainting a table allocates nothing beyond what Java2D itself needs for the frame. Starting with `-Dmarketplace.measureAllocations=true` prints the bytes allocated on the EDT per painted frame.
+* EDT Latency (`EdtMonitor`): Starting with `-Dmarketplace.monitorEdt=100` replaces the event queue with one that times every event (busy time only, not time spent waiting in a dialog) and keeps a latency histogram per event type and source, plus spans around the search button and `ButtonEditor.getCellEditorValue()`. When the EDT stays busy longer than the given milliseconds, its stack is printed while it is still stuck; the histograms (count, median, 99th percentile, maximum) are printed on exit.
+* Shopping Cart (`cartPage()`, `Cart`, `CartTableModel`): The cart is a list of lines (product, quantity, price) with a running total and item count. Every change fires an event naming the lines it inserted, updated or deleted, and the cart table model passes it on as the matching `fireTableRows...` call, so adding, changing or removing a line repaints that one row and the total label, even in a cart of thousands of lines. The quantity column is editable; setting it to 0 removes the line.
+* Adding to Cart (via `ButtonEditor`): When the "Add" button is clicked in a product listing or search result, the product is added to the `cart`, raising the quantity of its line if it is already there.
+* Checkout (`CheckoutService`, `Order`): Clicking the "Checkout" button on the cart page places an order for the lines of the `cart` (locked while they are copied and cleared, so nothing added meanwhile is lost) and shows its number and total.
 
 Limitations:
 
 * No Persistent Data: Product data and the shopping cart are not saved when the application closes.
 * Basic Simulation: The "Sell," "Bet&Buy," and "Checkout" functionalities are very basic and do not represent real-world implementations.
-* Limited Product Catalog: The number of products is small and hardcoded within the `populateProducts()` method.
-* No User Accounts or Order Management: The application does not handle user accounts or order history.
+* Limited Product Catalog: The number of products is small and hardcoded within `CatalogService.openSample()`.
+* No User Accounts or Order Management: The application does not handle user accounts; orders are kept in memory only.
 
 Potential Future Enhancements:
 
@@ -69,17 +90,45 @@ Update:
 */
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MarketplaceApp extends JFrame {
+    // Shared by every table and its cells, so painting a cell never creates a font or colour
+    static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 18);
+    static final Font TABLE_HEADER_FONT = new Font("Arial", Font.BOLD, 18);
+    static final Font ADD_BUTTON_FONT = new Font("Arial", Font.BOLD, 16);
+    static final Color ADD_BUTTON_COLOR = new Color(46, 204, 113);
+
     CardLayout cardLayout;
     JPanel mainPanel;
-    ArrayList<Product> cart = new ArrayList<>();
-    HashMap<String, ArrayList<Product>> categoryProducts = new HashMap<>();
+    // The engine; catalog writes, index builds and search shards run on its own threads
+    final Marketplace market = new Marketplace(Money.Currency.INR, null);
+    final Cart cart = market.carts.cart("desktop");
+
+    // Type-ahead: suggestion lookups run here, one at a time, and a new keystroke cancels the previous one
+    final ExecutorService suggestExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "suggestions");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Listing screens kept in mainPanel for reuse: one per category, and a few recent searches and
+    // filtered listings; older ones are removed from the CardLayout
+    private ScreenManager categoryScreens;
+    private ScreenManager resultScreens;
+    private Future<?> pendingSuggestion;
 
     public MarketplaceApp() {
         setTitle("Marketplace");
@@ -88,7 +137,7 @@ public class MarketplaceApp extends JFrame {
         setLocationRelativeTo(null);
         setLayout(new BorderLayout());
 
-        populateProducts();
+        loadCatalog();
 
         JPanel topPanel = createTopPanel();
         add(topPanel, BorderLayout.NORTH);
@@ -98,31 +147,61 @@ public class MarketplaceApp extends JFrame {
 
         mainPanel.add(homePage(), "Home");
         mainPanel.add(cartPage(), "Cart");
+        categoryScreens = new ScreenManager(mainPanel, cardLayout, "Category:", 32);
+        resultScreens = new ScreenManager(mainPanel, cardLayout, "Results:", 8);
 
         add(mainPanel, BorderLayout.CENTER);
         setVisible(true);
+
+        String feed = System.getProperty("marketplace.feed");
+        if (feed != null) {
+            importFeed(Paths.get(feed));
+        }
+    }
+
+    // Imports a product feed on the catalog writer, which publishes it as one new version; the
+    // worker only waits for the report
+    private void importFeed(Path feed) {
+        Future<FeedImporter.Report> importing = market.catalog.importFeed(feed);
+        new SwingWorker<FeedImporter.Report, Void>() {
+            @Override
+            protected FeedImporter.Report doInBackground() throws Exception {
+                return importing.get();
+            }
+
+            @Override
+            protected void done() {
+                FeedImporter.Report report;
+                try {
+                    report = importing.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MarketplaceApp.this, "Could not import " + feed + ": " + cause.getMessage(),
+                            "Import", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                StringBuilder message = new StringBuilder(report.toString());
+                report.errors.forEach(error -> message.append("\n  ").append(error));
+                JOptionPane.showMessageDialog(MarketplaceApp.this, message.toString(), "Import", JOptionPane.INFORMATION_MESSAGE);
+            }
+        }.execute();
     }
 
-    private void populateProducts() {
-        categoryProducts.put("Electronics", new ArrayList<>() {{
-            add(new Product("Smartphone", "₹14999"));
-            add(new Product("Headphones", "₹2999"));
-        }});
-
-        categoryProducts.put("Clothing", new ArrayList<>() {{
-            add(new Product("T-Shirt", "₹499"));
-            add(new Product("Jacket", "₹1999"));
-        }});
-
-        categoryProducts.put("Home & Garden", new ArrayList<>() {{
-            add(new Product("Coffee Mug", "₹299"));
-            add(new Product("Garden Tools", "₹899"));
-        }});
-
-        categoryProducts.put("Sports", new ArrayList<>() {{
-            add(new Product("Football", "₹999"));
-            add(new Product("Tennis Racket", "₹1599"));
-        }});
+    // Opens the binary catalog named by -Dmarketplace.catalog=<file>, or falls back to the sample products.
+    // A catalog file is shown at once and searched by scanning until its name index is built in the background.
+    private void loadCatalog() {
+        String catalogPath = System.getProperty("marketplace.catalog");
+        if (catalogPath != null) {
+            Path path = Paths.get(catalogPath);
+            try {
+                market.catalog.open(path);
+                return;
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Could not open catalog " + path + ": " + e.getMessage()
+                        + "\nShowing the sample catalog instead.", "Catalog", JOptionPane.WARNING_MESSAGE);
+            }
+        }
+        market.catalog.openSample();
     }
 
     private JPanel createTopPanel() {
@@ -144,7 +223,11 @@ public class MarketplaceApp extends JFrame {
             navButton.setForeground(Color.BLACK);
             navButton.setBorder(BorderFactory.createEmptyBorder(5, 15, 5, 15));
             navButton.setFont(new Font("Arial", Font.PLAIN, 28));
-            navButton.addActionListener(e -> JOptionPane.showMessageDialog(this, item + " page clicked!"));
+            if (item.equals("Sell")) {
+                navButton.addActionListener(e -> showSellDialog());
+            } else {
+                navButton.addActionListener(e -> JOptionPane.showMessageDialog(this, item + " page clicked!"));
+            }
             navPanel.add(navButton);
         }
 
@@ -153,6 +236,55 @@ public class MarketplaceApp extends JFrame {
         return topPanel;
     }
 
+    private void showSellDialog() {
+        if (!market.catalog.isWritable()) {
+            JOptionPane.showMessageDialog(this, "This catalog is read-only.");
+            return;
+        }
+        JTextField nameField = new JTextField();
+        JComboBox<String> categoryBox = new JComboBox<>(CatalogService.CATEGORIES);
+        JTextField descriptionField = new JTextField();
+        JTextField priceField = new JTextField();
+        Object[] fields = {"Product name:", nameField, "Category:", categoryBox, "Description:", descriptionField, "Price (₹):", priceField};
+        if (JOptionPane.showConfirmDialog(this, fields, "Sell an item", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        String name = nameField.getText().trim();
+        String category = (String) categoryBox.getSelectedItem();
+        String description = descriptionField.getText().trim();
+        Money price;
+        try {
+            price = Money.parse(priceField.getText(), Money.Currency.INR);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter a valid price!");
+            return;
+        }
+        if (name.isEmpty() || !price.isPositive() || price.currency() != Money.Currency.INR) {
+            JOptionPane.showMessageDialog(this, "A name and a positive ₹ price are required!");
+            return;
+        }
+        Future<VersionedCatalog.Version> listing = market.catalog.sell(category, name, description, price);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                listing.get();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    listing.get();
+                    JOptionPane.showMessageDialog(MarketplaceApp.this, name + " is now listed in " + category + ".");
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MarketplaceApp.this, "Could not list " + name + ": " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     private JPanel homePage() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBackground(Color.WHITE);
@@ -166,26 +298,20 @@ public class MarketplaceApp extends JFrame {
         searchButton.setFocusPainted(false);
         searchButton.setBackground(Color.LIGHT_GRAY);
 
+        installSuggestions(searchField, searchButton);
+
         searchButton.addActionListener(e -> {
-            String query = searchField.getText().trim().toLowerCase();
+            String query = searchField.getText().trim();
             if (query.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Please enter a search term.");
                 return;
             }
 
-            ArrayList<Product> results = new ArrayList<>();
-            for (ArrayList<Product> products : categoryProducts.values()) {
-                for (Product p : products) {
-                    if (p.name.toLowerCase().contains(query)) {
-                        results.add(p);
-                    }
-                }
-            }
-
-            if (results.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "No products found for: " + query);
-            } else {
-                showSearchResults(results, query);
+            EdtMonitor.Span span = EdtMonitor.span("search");
+            try {
+                showProducts(query, new LinkedHashMap<>(), SearchService.SORT_RELEVANCE);
+            } finally {
+                span.close();
             }
         });
 
@@ -214,9 +340,7 @@ public class MarketplaceApp extends JFrame {
 
         JPanel categoryPanel = new JPanel(new GridLayout(2, 4, 20, 20));
         categoryPanel.setBackground(Color.WHITE);
-        String[] categories = {"Electronics", "Clothing", "Home & Garden", "Sports", "Toys", "Motors", "Collectibles", "Deals"};
-
-        for (String cat : categories) {
+        for (String cat : CatalogService.CATEGORIES) {
             JButton catButton = new JButton(cat);
             catButton.setFocusPainted(false);
             catButton.setBackground(Color.WHITE);
@@ -231,30 +355,166 @@ public class MarketplaceApp extends JFrame {
         return panel;
     }
 
+    private void installSuggestions(JTextField searchField, JButton searchButton) {
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+
+        Timer debounce = new Timer(120, e -> {
+            String prefix = searchField.getText().trim();
+            if (pendingSuggestion != null) {
+                pendingSuggestion.cancel(true);
+            }
+            if (prefix.isEmpty()) {
+                popup.setVisible(false);
+                return;
+            }
+            Future<?>[] self = new Future<?>[1];
+            self[0] = suggestExecutor.submit(() -> {
+                List<String> suggestions = market.catalog.suggest(prefix, PrefixTrie.TOP_K);
+                if (suggestions.isEmpty() || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (self[0].isCancelled() || !prefix.equals(searchField.getText().trim())) {
+                        return;
+                    }
+                    showSuggestions(popup, searchField, searchButton, suggestions);
+                });
+            });
+            pendingSuggestion = self[0];
+        });
+        debounce.setRepeats(false);
+
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { debounce.restart(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { debounce.restart(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { }
+        });
+        searchButton.addActionListener(e -> {
+            debounce.stop();
+            popup.setVisible(false);
+        });
+    }
+
+    private void showSuggestions(JPopupMenu popup, JTextField searchField, JButton searchButton, List<String> suggestions) {
+        popup.setVisible(false);
+        popup.removeAll();
+        if (suggestions.isEmpty() || !searchField.isShowing()) {
+            return;
+        }
+        for (String suggestion : suggestions) {
+            JMenuItem item = new JMenuItem(suggestion);
+            item.setFont(new Font("Arial", Font.PLAIN, 16));
+            item.addActionListener(e -> {
+                searchField.setText(suggestion);
+                searchButton.doClick();
+            });
+            popup.add(item);
+        }
+        popup.setPopupSize(searchField.getWidth(), popup.getPreferredSize().height);
+        popup.show(searchField, 0, searchField.getHeight());
+    }
+
     private void showProductsForCategory(String category) {
+        LinkedHashMap<String, Set<String>> selected = new LinkedHashMap<>();
+        selected.put(FacetIndex.CATEGORY, new LinkedHashSet<>(List.of(category)));
+        showProducts(null, selected, SearchService.SORT_RELEVANCE);
+    }
+
+    // Category browsing and search are one query, run by the SearchService: the products matching
+    // the search text (every product when browsing) intersected with the facet values ticked in the
+    // sidebar. Each tick runs the query again and builds a page, unless a page for the same query,
+    // filters and catalog version is still kept by the screen managers.
+    private void showProducts(String query, Map<String, Set<String>> selected, int sortOrder) {
+        SearchService.Query prepared;
+        try {
+            prepared = market.search.prepare(query, selected, sortOrder);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Invalid query: " + e.getMessage());
+            return;
+        }
+        String key = prepared.key;
+        ScreenManager screens = prepared.isCategoryListing() ? categoryScreens : resultScreens;
+        if (screens.show(key, prepared.version.number)) {
+            return;
+        }
+        SearchService.Result result = market.search.run(prepared);
+        if (query != null && result.matches.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No products found for: " + query);
+            return;
+        }
+        Catalog catalog = result.version.catalog;
+        FacetIndex facets = result.facets;
+        Bitmap matches = result.matches;
+        String heading = result.heading;
+
         JPanel productPanel = new JPanel(new BorderLayout());
         productPanel.setBackground(Color.WHITE);
 
-        JLabel title = new JLabel("Products in " + category, JLabel.CENTER);
+        JLabel title = new JLabel(heading, JLabel.CENTER);
         title.setFont(new Font("Arial", Font.BOLD, 30));
-        title.setBorder(BorderFactory.createEmptyBorder(20, 0, 20, 0));
-        productPanel.add(title, BorderLayout.NORTH);
-
-        ArrayList<Product> products = categoryProducts.getOrDefault(category, new ArrayList<>());
-
-        String[] columns = {"Product", "Price", "Add to Cart"};
-        DefaultTableModel model = new DefaultTableModel(columns, 0);
-
-        for (Product p : products) {
-            model.addRow(new Object[]{p.name, p.price, "Add"});
+        title.setBorder(BorderFactory.createEmptyBorder(20, 0, 10, 0));
+        title.setToolTipText((result.plan != null ? "Plan: " + result.plan + "; " : "") + "Query cache: " + market.search.cacheStats());
+        JComboBox<String> sortBox = new JComboBox<>(SearchService.SORT_ORDERS);
+        sortBox.setSelectedIndex(sortOrder);
+        sortBox.addActionListener(e -> {
+            // The change opens another screen; this one keeps showing its own order for when it is reused
+            int chosen = sortBox.getSelectedIndex();
+            if (chosen != sortOrder) {
+                sortBox.setSelectedIndex(sortOrder);
+                showProducts(query, selected, chosen);
+            }
+        });
+        JPanel sortPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        sortPanel.setBackground(Color.WHITE);
+        sortPanel.add(new JLabel("Sort by:"));
+        sortPanel.add(sortBox);
+        JPanel header = new JPanel(new BorderLayout());
+        header.setBackground(Color.WHITE);
+        header.add(title, BorderLayout.CENTER);
+        header.add(sortPanel, BorderLayout.SOUTH);
+        productPanel.add(header, BorderLayout.NORTH);
+
+        JPanel sidebar = new JPanel();
+        sidebar.setLayout(new BoxLayout(sidebar, BoxLayout.Y_AXIS));
+        sidebar.setBackground(Color.WHITE);
+        sidebar.setBorder(BorderFactory.createEmptyBorder(0, 20, 0, 10));
+        for (String facet : facets.facetNames()) {
+            JPanel group = new JPanel();
+            group.setLayout(new BoxLayout(group, BoxLayout.Y_AXIS));
+            group.setBackground(Color.WHITE);
+            group.setBorder(BorderFactory.createTitledBorder(facet));
+            Set<String> ticked = selected.getOrDefault(facet, Set.of());
+            facets.counts(facet, matches, selected).forEach((value, count) -> {
+                if (count == 0 && !ticked.contains(value)) {
+                    return;
+                }
+                JCheckBox box = new JCheckBox(value + " (" + count + ")", ticked.contains(value));
+                box.setFont(new Font("Arial", Font.PLAIN, 14));
+                box.setBackground(Color.WHITE);
+                box.addActionListener(e -> {
+                    boolean tick = box.isSelected();
+                    box.setSelected(!tick);
+                    LinkedHashMap<String, Set<String>> next = new LinkedHashMap<>();
+                    selected.forEach((f, values) -> next.put(f, new LinkedHashSet<>(values)));
+                    Set<String> values = next.computeIfAbsent(facet, f -> new LinkedHashSet<>());
+                    if (tick) values.add(value);
+                    else values.remove(value);
+                    showProducts(query, next, sortOrder);
+                });
+                group.add(box);
+            });
+            sidebar.add(group);
         }
+        productPanel.add(new JScrollPane(sidebar), BorderLayout.WEST);
 
-        JTable table = new JTable(model);
+        // Rows are read from the catalog as they are painted, never copied into the model
+        JTable table = new JTable(new CatalogTableModel(catalog, result.rowCount, result::rowAt));
         table.setRowHeight(40);
-        table.setFont(new Font("Arial", Font.PLAIN, 18));
-        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 18));
+        table.setFont(TABLE_FONT);
+        table.getTableHeader().setFont(TABLE_HEADER_FONT);
         table.getColumn("Add to Cart").setCellRenderer(new ButtonRenderer());
-        table.getColumn("Add to Cart").setCellEditor(new ButtonEditor());
+        table.getColumn("Add to Cart").setCellEditor(new ButtonEditor(result.version));
 
         JScrollPane scrollPane = new JScrollPane(table);
         productPanel.add(scrollPane, BorderLayout.CENTER);
@@ -266,48 +526,10 @@ public class MarketplaceApp extends JFrame {
         viewCart.setFocusPainted(false);
         viewCart.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
 
-        viewCart.addActionListener(e -> {
-            refreshCartPage();
-            cardLayout.show(mainPanel, "Cart");
-        });
-
-        JPanel bottom = new JPanel();
-        bottom.setBackground(Color.WHITE);
-        bottom.add(viewCart);
-        productPanel.add(bottom, BorderLayout.SOUTH);
-
-        mainPanel.add(productPanel, category);
-        cardLayout.show(mainPanel, category);
-    }
-
-    private void showSearchResults(ArrayList<Product> results, String query) {
-        JPanel searchPanel = new JPanel(new BorderLayout());
-        searchPanel.setBackground(Color.WHITE);
-
-        JLabel title = new JLabel("Search Results for \"" + query + "\"", JLabel.CENTER);
-        title.setFont(new Font("Arial", Font.BOLD, 30));
-        title.setBorder(BorderFactory.createEmptyBorder(20, 0, 20, 0));
-        searchPanel.add(title, BorderLayout.NORTH);
-
-        String[] columns = {"Product", "Price", "Add to Cart"};
-        DefaultTableModel model = new DefaultTableModel(columns, 0);
-
-        for (Product p : results) {
-            model.addRow(new Object[]{p.name, p.price, "Add"});
-        }
-
-        JTable table = new JTable(model);
-        table.setRowHeight(40);
-        table.setFont(new Font("Arial", Font.PLAIN, 18));
-        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 18));
-        table.getColumn("Add to Cart").setCellRenderer(new ButtonRenderer());
-        table.getColumn("Add to Cart").setCellEditor(new ButtonEditor());
-
-        JScrollPane scrollPane = new JScrollPane(table);
-        searchPanel.add(scrollPane, BorderLayout.CENTER);
+        viewCart.addActionListener(e -> cardLayout.show(mainPanel, "Cart"));
 
         JButton back = new JButton("Back to Home");
-        back.setFont(new Font("Arial", Font.BOLD, 18));
+        back.setFont(new Font("Arial", Font.BOLD, 20));
         back.setBackground(new Color(52, 152, 219));
         back.setForeground(Color.white);
         back.setFocusPainted(false);
@@ -317,17 +539,20 @@ public class MarketplaceApp extends JFrame {
         JPanel bottom = new JPanel();
         bottom.setBackground(Color.WHITE);
         bottom.add(back);
+        bottom.add(viewCart);
+        productPanel.add(bottom, BorderLayout.SOUTH);
 
-        searchPanel.add(bottom, BorderLayout.SOUTH);
-
-        String panelName = "Search_" + System.currentTimeMillis();
-        mainPanel.add(searchPanel, panelName);
-        cardLayout.show(mainPanel, panelName);
+        if (result.reusable) {
+            screens.add(key, result.version.number, productPanel);
+        } else {
+            screens.showOnce(productPanel);
+        }
     }
 
     private JPanel cartPanel;
     private JTable cartTable;
-    private DefaultTableModel cartModel;
+    private CartTableModel cartModel;
+    private JLabel cartTotalLabel;
 
     private JPanel cartPage() {
         cartPanel = new JPanel(new BorderLayout());
@@ -338,12 +563,11 @@ public class MarketplaceApp extends JFrame {
         title.setBorder(BorderFactory.createEmptyBorder(20, 0, 20, 0));
         cartPanel.add(title, BorderLayout.NORTH);
 
-        String[] columns = {"Product", "Price"};
-        cartModel = new DefaultTableModel(columns, 0);
+        cartModel = new CartTableModel(cart);
         cartTable = new JTable(cartModel);
         cartTable.setRowHeight(40);
-        cartTable.setFont(new Font("Arial", Font.PLAIN, 18));
-        cartTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 18));
+        cartTable.setFont(TABLE_FONT);
+        cartTable.getTableHeader().setFont(TABLE_HEADER_FONT);
 
         JScrollPane scrollPane = new JScrollPane(cartTable);
         cartPanel.add(scrollPane, BorderLayout.CENTER);
@@ -366,12 +590,25 @@ public class MarketplaceApp extends JFrame {
         checkout.setFocusPainted(false);
         checkout.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
         checkout.addActionListener(e -> {
-            JOptionPane.showMessageDialog(this, "Order Placed Successfully! Thank you for shopping.");
-            cart.clear();
-            refreshCartPage();
+            Order order;
+            try {
+                order = market.checkout.checkout(cart);
+            } catch (IllegalArgumentException | IOException ex) {
+                JOptionPane.showMessageDialog(this, "Could not place the order: " + ex.getMessage());
+                return;
+            }
+            JOptionPane.showMessageDialog(this, "Order " + order.id + " Placed Successfully! Total: " + order.total
+                    + ". Thank you for shopping.");
             cardLayout.show(mainPanel, "Home");
         });
 
+        // The cart keeps its total as lines change, so every change costs one label update
+        cartTotalLabel = new JLabel("Total: " + cart.total());
+        cartModel.addTableModelListener(e -> cartTotalLabel.setText("Total: " + cart.total()));
+        cartTotalLabel.setFont(new Font("Arial", Font.BOLD, 18));
+        cartTotalLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 20));
+
+        bottom.add(cartTotalLabel);
         bottom.add(back);
         bottom.add(checkout);
 
@@ -380,55 +617,82 @@ public class MarketplaceApp extends JFrame {
         return cartPanel;
     }
 
-    private void refreshCartPage() {
-        cartModel.setRowCount(0);
-        for (Product p : cart) {
-            cartModel.addRow(new Object[]{p.name, p.price});
-        }
-    }
-
-    class Product {
-        String name, price;
-
-        Product(String name, String price) {
-            this.name = name;
-            this.price = price;
-        }
-    }
-
+    // One button stamps every cell of the column. Its style is set once, the text only when it
+    // differs, and like DefaultTableCellRenderer it skips the revalidation, repaint and property
+    // change events a real component would fire, so stamping a cell allocates nothing.
     class ButtonRenderer extends JButton implements javax.swing.table.TableCellRenderer {
         public ButtonRenderer() {
             setOpaque(true);
+            setBackground(ADD_BUTTON_COLOR);
+            setForeground(Color.white);
+            setFont(ADD_BUTTON_FONT);
         }
 
         public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-            setText((value == null) ? "Add" : value.toString());
-            setBackground(new Color(46, 204, 113));
-            setForeground(Color.white);
-            setFont(new Font("Arial", Font.BOLD, 16));
+            String text = (value == null) ? "Add" : value.toString();
+            if (!text.equals(getText())) {
+                setText(text);
+            }
             return this;
         }
+
+        @Override
+        public void invalidate() {
+        }
+
+        @Override
+        public void validate() {
+        }
+
+        @Override
+        public void revalidate() {
+        }
+
+        @Override
+        public void repaint(long tm, int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void repaint(Rectangle r) {
+        }
+
+        @Override
+        public void repaint() {
+        }
+
+        @Override
+        protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        }
+
+        @Override
+        public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+        }
     }
 
     class ButtonEditor extends DefaultCellEditor {
         protected JButton button;
+        // The catalog version the table shows, so a row's product id means the product on screen
+        private final VersionedCatalog.Version version;
         private String label;
         private boolean clicked;
         private int row;
 
-        public ButtonEditor() {
+        public ButtonEditor(VersionedCatalog.Version version) {
             super(new JCheckBox());
+            this.version = version;
             button = new JButton();
             button.setOpaque(true);
+            button.setBackground(ADD_BUTTON_COLOR);
+            button.setForeground(Color.white);
+            button.setFont(ADD_BUTTON_FONT);
             button.addActionListener(e -> fireEditingStopped());
         }
 
         public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
             label = (value == null) ? "Add" : value.toString();
-            button.setText(label);
-            button.setBackground(new Color(46, 204, 113));
-            button.setForeground(Color.white);
-            button.setFont(new Font("Arial", Font.BOLD, 16));
+            if (!label.equals(button.getText())) {
+                button.setText(label);
+            }
             clicked = true;
             this.row = row;
             return button;
@@ -436,14 +700,18 @@ public class MarketplaceApp extends JFrame {
 
         public Object getCellEditorValue() {
             if (clicked) {
-                JTable table = (JTable) button.getParent();
-                while (!(table instanceof JTable)) {
-                    table = (JTable) table.getParent();
+                EdtMonitor.Span span = EdtMonitor.span("getCellEditorValue");
+                try {
+                    JTable table = (JTable) button.getParent();
+                    while (!(table instanceof JTable)) {
+                        table = (JTable) table.getParent();
+                    }
+                    int id = ((CatalogTableModel) table.getModel()).productAt(table.convertRowIndexToModel(row));
+                    market.carts.add(cart, version, id, 1);
+                    JOptionPane.showMessageDialog(null, version.catalog.name(id) + " added to cart!");
+                } finally {
+                    span.close();
                 }
-                String name = (String) table.getValueAt(row, 0);
-                String price = (String) table.getValueAt(row, 1);
-                cart.add(new Product(name, price));
-                JOptionPane.showMessageDialog(null, name + " added to cart!");
             }
             clicked = false;
             return label;
@@ -460,6 +728,10 @@ public class MarketplaceApp extends JFrame {
     }
 
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(MarketplaceApp::new);
+        SwingUtilities.invokeLater(() -> {
+            AllocationMeter.install();
+            EdtMonitor.install();
+            new MarketplaceApp();
+        });
     }
 }
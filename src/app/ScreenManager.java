@@ -0,0 +1,85 @@
+import java.awt.CardLayout;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.JPanel;
+
+/*
+ * Bounded set of screens in a CardLayout, reused until they are evicted.
+ *
+ * Each screen is kept under a key (a category, or a normalized query with its filters) in access
+ * order; showing a screen that is already there just flips the card, and adding one beyond capacity
+ * removes the least recently shown screen from the container, so its component tree can be
+ * collected. Screens belong to one catalog version like QueryCache entries: the first call for a
+ * newer version removes them all. A screen that must not be reused (built from an index that is
+ * still catching up) goes into a single transient card, replaced by the next one.
+ *
+ * Used on the EDT only.
+ */
+final class ScreenManager {
+    private final JPanel container;
+    private final CardLayout layout;
+    private final String prefix;
+    private final int capacity;
+    private final LinkedHashMap<String, JPanel> screens = new LinkedHashMap<>(16, 0.75f, true);
+    private long version = Long.MIN_VALUE;
+    private JPanel transientScreen;
+
+    /** prefix keeps the card names of this manager apart from other cards in the same container. */
+    ScreenManager(JPanel container, CardLayout layout, String prefix, int capacity) {
+        this.container = container;
+        this.layout = layout;
+        this.prefix = prefix;
+        this.capacity = capacity;
+    }
+
+    /** Shows the screen kept under key for catalogVersion; returns false, showing nothing, if there is none. */
+    boolean show(String key, long catalogVersion) {
+        moveTo(catalogVersion);
+        if (screens.get(key) == null) {
+            return false;
+        }
+        layout.show(container, prefix + key);
+        return true;
+    }
+
+    /** Adds a screen under key, shows it and evicts the least recently shown screens beyond capacity. */
+    void add(String key, long catalogVersion, JPanel screen) {
+        moveTo(catalogVersion);
+        JPanel previous = screens.put(key, screen);
+        if (previous != null) {
+            container.remove(previous);
+        }
+        container.add(screen, prefix + key);
+        Iterator<Map.Entry<String, JPanel>> eldest = screens.entrySet().iterator();
+        while (screens.size() > capacity) {
+            container.remove(eldest.next().getValue());
+            eldest.remove();
+        }
+        layout.show(container, prefix + key);
+    }
+
+    /** Shows a screen that is not kept, in place of the previous transient screen. */
+    void showOnce(JPanel screen) {
+        if (transientScreen != null) {
+            container.remove(transientScreen);
+        }
+        transientScreen = screen;
+        container.add(screen, prefix + "\u0000transient");
+        layout.show(container, prefix + "\u0000transient");
+    }
+
+    int size() {
+        return screens.size();
+    }
+
+    private void moveTo(long catalogVersion) {
+        if (catalogVersion != version) {
+            for (JPanel screen : screens.values()) {
+                container.remove(screen);
+            }
+            screens.clear();
+            version = catalogVersion;
+        }
+    }
+}
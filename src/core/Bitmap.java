@@ -0,0 +1,559 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/*
+ * Compressed set of product ids in the style of a Roaring bitmap.
+ *
+ * Ids are split by their high 16 bits into chunks of 65536. A chunk holding few ids stores them as a
+ * sorted char array; once it holds more than 4096 ids it switches to a plain 1024-word bitset
+ * (8 KB, the size 4096 chars would take). Sparse sets stay small, dense sets are intersected a
+ * 64-bit word at a time, and chunks missing on either side are skipped without being read.
+ *
+ * A bitmap is built by one thread and may then be read by any number of threads; and(), or(),
+ * andNot() and andCardinality() return new bitmaps or counts and never modify their operands.
+ */
+final class Bitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[4];
+    // Either a char[] holding counts[i] sorted values or a long[WORDS] bitset
+    private Object[] containers = new Object[4];
+    private int[] counts = new int[4];
+    private int size;
+    // Ids held by the containers before each one, built by the first select() after a change
+    private volatile int[] ranks;
+
+    /** Bitmap holding the given ids, which may come in any order. */
+    static Bitmap of(int[] ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        Bitmap bitmap = new Bitmap();
+        for (int id : sorted) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    /** Bitmap holding every id from 0 to count - 1. */
+    static Bitmap range(int count) {
+        Bitmap bitmap = new Bitmap();
+        for (int id = 0; id < count; id++) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    /** A bitmap with the same ids that can be added to without changing this one. */
+    Bitmap copy() {
+        Bitmap copy = new Bitmap();
+        for (int i = 0; i < size; i++) {
+            copy.appendCopy(keys[i], containers[i], counts[i]);
+        }
+        return copy;
+    }
+
+    /** Adds a non-negative id; adding ids in ascending order is the fast path. */
+    void add(int id) {
+        ranks = null;
+        char key = (char) (id >>> 16);
+        char low = (char) id;
+        int i = size > 0 && keys[size - 1] == key ? size - 1 : Arrays.binarySearch(keys, 0, size, key);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, key, new char[4], 0);
+        }
+        Object container = containers[i];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) == 0) {
+                bits[low >>> 6] |= mask;
+                counts[i]++;
+            }
+            return;
+        }
+        char[] values = (char[]) container;
+        int n = counts[i];
+        int pos = n > 0 && values[n - 1] < low ? n : Arrays.binarySearch(values, 0, n, low);
+        if (pos >= 0 && pos < n) {
+            return;
+        }
+        if (pos < 0) pos = -pos - 1;
+        if (n == ARRAY_MAX) {
+            long[] bits = toBits(values, n);
+            bits[low >>> 6] |= 1L << low;
+            containers[i] = bits;
+            counts[i] = n + 1;
+            return;
+        }
+        if (n == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, n * 2));
+            containers[i] = values;
+        }
+        System.arraycopy(values, pos, values, pos + 1, n - pos);
+        values[pos] = low;
+        counts[i] = n + 1;
+    }
+
+    boolean contains(int id) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (id >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) id;
+        Object container = containers[i];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, counts[i], low) >= 0;
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * The id at position rank (from 0) in ascending order. Finds the container by binary search over
+     * running counts and then the id within it, so a table can show row i of a bitmap without the
+     * bitmap being copied into an array.
+     */
+    int select(int rank) {
+        int[] before = ranks();
+        if (rank < 0 || rank >= before[size]) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of range 0.." + before[size]);
+        }
+        int lo = containerOf(before, rank);
+        int high = keys[lo] << 16;
+        int remaining = rank - before[lo];
+        Object container = containers[lo];
+        if (container instanceof char[]) {
+            return high | ((char[]) container)[remaining];
+        }
+        long[] bits = (long[]) container;
+        for (int w = 0; ; w++) {
+            int count = Long.bitCount(bits[w]);
+            if (remaining < count) {
+                long word = bits[w];
+                for (int k = 0; k < remaining; k++) {
+                    word &= word - 1;
+                }
+                return high | (w << 6) | Long.numberOfTrailingZeros(word);
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * The ids from position rank (from 0) on, in ascending order. Finds the first one as select()
+     * does and then walks the containers, so reading a page of n ids costs one search and n steps
+     * instead of n searches. rank may equal the cardinality, for a cursor that is already done.
+     */
+    Cursor cursor(int rank) {
+        int[] before = ranks();
+        if (rank < 0 || rank > before[size]) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of range 0.." + before[size]);
+        }
+        Cursor cursor = new Cursor();
+        if (rank == before[size]) {
+            cursor.container = size;
+            return cursor;
+        }
+        cursor.load(containerOf(before, rank));
+        int remaining = rank - before[cursor.container];
+        if (containers[cursor.container] instanceof char[]) {
+            cursor.position = remaining;
+        } else {
+            long[] bits = (long[]) containers[cursor.container];
+            int w = 0;
+            while (remaining >= Long.bitCount(bits[w])) {
+                remaining -= Long.bitCount(bits[w]);
+                w++;
+            }
+            long word = bits[w];
+            for (int k = 0; k < remaining; k++) {
+                word &= word - 1;
+            }
+            cursor.position = w;
+            cursor.word = word;
+        }
+        return cursor;
+    }
+
+    /** Reads a bitmap's ids in ascending order; see cursor(). */
+    final class Cursor {
+        private int container;
+        // The next value in a char[] container, or the word being read in a bitset container
+        private int position;
+        private long word;
+
+        private Cursor() {
+        }
+
+        boolean hasNext() {
+            while (container < size) {
+                Object values = containers[container];
+                if (values instanceof char[]) {
+                    if (position < counts[container]) {
+                        return true;
+                    }
+                } else {
+                    long[] bits = (long[]) values;
+                    while (word == 0 && ++position < WORDS) {
+                        word = bits[position];
+                    }
+                    if (word != 0) {
+                        return true;
+                    }
+                }
+                load(container + 1);
+            }
+            return false;
+        }
+
+        int next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int high = keys[container] << 16;
+            Object values = containers[container];
+            if (values instanceof char[]) {
+                return high | ((char[]) values)[position++];
+            }
+            int id = high | (position << 6) | Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            return id;
+        }
+
+        private void load(int i) {
+            container = i;
+            position = 0;
+            word = i < size && containers[i] instanceof long[] ? ((long[]) containers[i])[0] : 0;
+        }
+    }
+
+    /** Approximate heap bytes used by the containers. */
+    long sizeInBytes() {
+        long total = 64;
+        for (int i = 0; i < size; i++) {
+            Object container = containers[i];
+            total += 16 + (container instanceof long[] ? 8L * WORDS : 2L * ((char[]) container).length);
+        }
+        return total;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Bitmap and(Bitmap other) {
+        Bitmap result = new Bitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendAnd(keys[i], containers[i], counts[i], other.containers[j], other.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    Bitmap or(Bitmap other) {
+        Bitmap result = new Bitmap();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendCopy(keys[i], containers[i], counts[i]);
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.appendCopy(other.keys[j], other.containers[j], other.counts[j]);
+                j++;
+            } else {
+                result.appendOr(keys[i], containers[i], counts[i], other.containers[j], other.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /** The ids of this bitmap that are not in other. */
+    Bitmap andNot(Bitmap other) {
+        Bitmap result = new Bitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.appendAndNot(keys[i], containers[i], counts[i], other.containers[j], other.counts[j]);
+            } else {
+                result.appendCopy(keys[i], containers[i], counts[i]);
+            }
+        }
+        return result;
+    }
+
+    /** Size of the intersection, without building it. */
+    int andCardinality(Bitmap other) {
+        int total = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += andCount(containers[i], counts[i], other.containers[j], other.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /** The ids in ascending order. */
+    int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] bits = (long[]) container;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        ids[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int k = 0; k < counts[i]; k++) {
+                    ids[n++] = high | values[k];
+                }
+            }
+        }
+        return ids;
+    }
+
+    // The running counts, built once per change
+    private int[] ranks() {
+        int[] before = ranks;
+        if (before == null) {
+            before = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                before[i + 1] = before[i] + counts[i];
+            }
+            ranks = before;
+        }
+        return before;
+    }
+
+    // The container holding the id at rank, by binary search over the running counts
+    private int containerOf(int[] before, int rank) {
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (before[mid] <= rank) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private void appendAnd(char key, Object a, int countA, Object b, int countB) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] bitsA = (long[]) a, bitsB = (long[]) b;
+            long[] bits = new long[WORDS];
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                bits[w] = bitsA[w] & bitsB[w];
+                count += Long.bitCount(bits[w]);
+            }
+            if (count > ARRAY_MAX) {
+                appendContainer(key, bits, count);
+            } else if (count > 0) {
+                appendContainer(key, toValues(bits, count), count);
+            }
+            return;
+        }
+        if (a instanceof long[]) {
+            appendAnd(key, b, countB, a, countA);
+            return;
+        }
+        char[] values = (char[]) a;
+        char[] kept = new char[countA];
+        int count = 0;
+        if (b instanceof long[]) {
+            long[] bits = (long[]) b;
+            for (int k = 0; k < countA; k++) {
+                if ((bits[values[k] >>> 6] & (1L << values[k])) != 0) kept[count++] = values[k];
+            }
+        } else {
+            char[] other = (char[]) b;
+            for (int x = 0, y = 0; x < countA && y < countB; ) {
+                if (values[x] < other[y]) x++;
+                else if (values[x] > other[y]) y++;
+                else { kept[count++] = values[x]; x++; y++; }
+            }
+        }
+        if (count > 0) {
+            appendContainer(key, kept, count);
+        }
+    }
+
+    private void appendAndNot(char key, Object a, int countA, Object b, int countB) {
+        if (a instanceof long[]) {
+            long[] bits = ((long[]) a).clone();
+            if (b instanceof long[]) {
+                long[] other = (long[]) b;
+                for (int w = 0; w < WORDS; w++) bits[w] &= ~other[w];
+            } else {
+                char[] values = (char[]) b;
+                for (int k = 0; k < countB; k++) bits[values[k] >>> 6] &= ~(1L << values[k]);
+            }
+            int count = 0;
+            for (long word : bits) count += Long.bitCount(word);
+            if (count > ARRAY_MAX) {
+                appendContainer(key, bits, count);
+            } else if (count > 0) {
+                appendContainer(key, toValues(bits, count), count);
+            }
+            return;
+        }
+        char[] values = (char[]) a;
+        char[] kept = new char[countA];
+        int count = 0;
+        if (b instanceof long[]) {
+            long[] bits = (long[]) b;
+            for (int k = 0; k < countA; k++) {
+                if ((bits[values[k] >>> 6] & (1L << values[k])) == 0) kept[count++] = values[k];
+            }
+        } else {
+            char[] other = (char[]) b;
+            int y = 0;
+            for (int x = 0; x < countA; x++) {
+                while (y < countB && other[y] < values[x]) y++;
+                if (y == countB || other[y] != values[x]) kept[count++] = values[x];
+            }
+        }
+        if (count > 0) {
+            appendContainer(key, kept, count);
+        }
+    }
+
+    private static int andCount(Object a, int countA, Object b, int countB) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] bitsA = (long[]) a, bitsB = (long[]) b;
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                count += Long.bitCount(bitsA[w] & bitsB[w]);
+            }
+            return count;
+        }
+        if (a instanceof long[]) {
+            return andCount(b, countB, a, countA);
+        }
+        char[] values = (char[]) a;
+        int count = 0;
+        if (b instanceof long[]) {
+            long[] bits = (long[]) b;
+            for (int k = 0; k < countA; k++) {
+                if ((bits[values[k] >>> 6] & (1L << values[k])) != 0) count++;
+            }
+        } else {
+            char[] other = (char[]) b;
+            for (int x = 0, y = 0; x < countA && y < countB; ) {
+                if (values[x] < other[y]) x++;
+                else if (values[x] > other[y]) y++;
+                else { count++; x++; y++; }
+            }
+        }
+        return count;
+    }
+
+    private void appendOr(char key, Object a, int countA, Object b, int countB) {
+        if (a instanceof char[] && b instanceof char[] && countA + countB <= ARRAY_MAX) {
+            char[] x = (char[]) a, y = (char[]) b;
+            char[] merged = new char[countA + countB];
+            int i = 0, j = 0, n = 0;
+            while (i < countA || j < countB) {
+                if (j == countB || (i < countA && x[i] < y[j])) merged[n++] = x[i++];
+                else if (i == countA || x[i] > y[j]) merged[n++] = y[j++];
+                else { merged[n++] = x[i++]; j++; }
+            }
+            appendContainer(key, merged, n);
+            return;
+        }
+        long[] bits = a instanceof long[] ? ((long[]) a).clone() : toBits((char[]) a, countA);
+        if (b instanceof long[]) {
+            long[] other = (long[]) b;
+            for (int w = 0; w < WORDS; w++) bits[w] |= other[w];
+        } else {
+            char[] values = (char[]) b;
+            for (int k = 0; k < countB; k++) bits[values[k] >>> 6] |= 1L << values[k];
+        }
+        int count = 0;
+        for (long word : bits) count += Long.bitCount(word);
+        if (count > ARRAY_MAX) {
+            appendContainer(key, bits, count);
+        } else {
+            appendContainer(key, toValues(bits, count), count);
+        }
+    }
+
+    private void appendCopy(char key, Object container, int count) {
+        Object copy = container instanceof long[] ? ((long[]) container).clone() : Arrays.copyOf((char[]) container, count);
+        appendContainer(key, copy, count);
+    }
+
+    private void appendContainer(char key, Object container, int count) {
+        insertContainer(size, key, container, count);
+    }
+
+    private void insertContainer(int i, char key, Object container, int count) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        System.arraycopy(counts, i, counts, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        counts[i] = count;
+        size++;
+    }
+
+    private static long[] toBits(char[] values, int count) {
+        long[] bits = new long[WORDS];
+        for (int k = 0; k < count; k++) {
+            bits[values[k] >>> 6] |= 1L << values[k];
+        }
+        return bits;
+    }
+
+    private static char[] toValues(long[] bits, int count) {
+        char[] values = new char[count];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * Shopping cart: a list of lines (product name, unit price, quantity) with a running total.
+ *
+ * Adding a product that is already in the cart at the same price raises the quantity of its line.
+ * A line added with a catalog product id is that product's one line: adding the product again
+ * raises its quantity, at the product's new price if it has changed, and indexOf(productId) finds
+ * it however the lines before it have moved, so a client can address it by the id.
+ * Every change tells the listeners which line indexes it inserted, updated or deleted, and the
+ * total, the item count and the lookup from product to line are adjusted by the change itself, so
+ * a view of a cart with thousands of lines updates one row and one label per change instead of
+ * reading the whole cart again. Removing a line shifts the lines after it up by one, like the rows
+ * of a table.
+ *
+ * Thread-safe: every method locks the cart, so a checkout can hold the lock while it reads and
+ * clears the lines. Listeners are called on the thread that made the change, while it holds the
+ * lock; the Swing apps change their carts only on the EDT, so their table models hear about it there.
+ */
+final class Cart {
+
+    /** One product in the cart. */
+    static final class Line {
+        /** The catalog product id, or -1 for a product added by name and price only. */
+        final int productId;
+        final String name;
+        final Money unitPrice;
+        private volatile int quantity;
+        private int index;
+        private volatile Money total;
+
+        private Line(int productId, String name, Money unitPrice, int quantity) {
+            this.productId = productId;
+            this.name = name;
+            this.unitPrice = unitPrice;
+            this.quantity = quantity;
+        }
+
+        int quantity() {
+            return quantity;
+        }
+
+        /** unitPrice times quantity, computed once per quantity. */
+        Money total() {
+            Money value = total;
+            if (value == null) {
+                value = unitPrice.times(quantity);
+                total = value;
+            }
+            return value;
+        }
+    }
+
+    /** Told about every change, with the range of line indexes it affected (inclusive). */
+    interface Listener {
+        void linesInserted(int first, int last);
+
+        void linesUpdated(int first, int last);
+
+        void linesDeleted(int first, int last);
+    }
+
+    private final Money.Currency currency;
+    private final ArrayList<Line> lines = new ArrayList<>();
+    private final HashMap<String, Line> byProduct = new HashMap<>();
+    private final HashMap<Integer, Line> byId = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long totalMinor;
+    private int itemCount;
+
+    Cart(Money.Currency currency) {
+        this.currency = currency;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    Money.Currency currency() {
+        return currency;
+    }
+
+    /** Adds one of a product; returns the index of its line. */
+    int add(String name, Money unitPrice) {
+        return add(name, unitPrice, 1);
+    }
+
+    /** Adds quantity of a product, to its existing line if it has one; returns the index of the line. */
+    int add(String name, Money unitPrice, int quantity) {
+        return add(-1, name, unitPrice, quantity);
+    }
+
+    /**
+     * Adds quantity of catalog product productId (-1 if it has none), to its existing line if it has
+     * one; returns the index of the line.
+     */
+    synchronized int add(int productId, String name, Money unitPrice, int quantity) {
+        if (unitPrice.currency() != currency) {
+            throw new IllegalArgumentException("Cart is in " + currency + ", got a price in " + unitPrice.currency());
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive, got " + quantity);
+        }
+        Line line = productId >= 0 ? byId.get(productId) : byProduct.get(key(name, unitPrice));
+        if (line != null && line.name.equals(name)) {
+            if (line.unitPrice.equals(unitPrice)) {
+                setQuantity(line.index, Math.addExact(line.quantity, quantity));
+            } else {
+                reprice(line, unitPrice, Math.addExact(line.quantity, quantity));
+            }
+            return line.index;
+        }
+        line = new Line(productId, name, unitPrice, quantity);
+        line.index = lines.size();
+        lines.add(line);
+        index(line);
+        totalMinor = Math.addExact(totalMinor, line.total().minor());
+        itemCount = Math.addExact(itemCount, quantity);
+        for (Listener listener : listeners) {
+            listener.linesInserted(line.index, line.index);
+        }
+        return line.index;
+    }
+
+    /** Changes the quantity of a line; zero or less removes it. */
+    synchronized void setQuantity(int index, int quantity) {
+        if (quantity <= 0) {
+            remove(index);
+            return;
+        }
+        Line line = lines.get(index);
+        if (line.quantity == quantity) {
+            return;
+        }
+        totalMinor = Math.subtractExact(totalMinor, line.total().minor());
+        itemCount -= line.quantity;
+        line.quantity = quantity;
+        line.total = null;
+        totalMinor = Math.addExact(totalMinor, line.total().minor());
+        itemCount = Math.addExact(itemCount, quantity);
+        for (Listener listener : listeners) {
+            listener.linesUpdated(index, index);
+        }
+    }
+
+    synchronized void remove(int index) {
+        Line line = lines.remove(index);
+        unindex(line);
+        for (int i = index; i < lines.size(); i++) {
+            lines.get(i).index = i;
+        }
+        totalMinor -= line.total().minor();
+        itemCount -= line.quantity;
+        for (Listener listener : listeners) {
+            listener.linesDeleted(index, index);
+        }
+    }
+
+    synchronized void clear() {
+        int size = lines.size();
+        if (size == 0) {
+            return;
+        }
+        lines.clear();
+        byProduct.clear();
+        byId.clear();
+        totalMinor = 0;
+        itemCount = 0;
+        for (Listener listener : listeners) {
+            listener.linesDeleted(0, size - 1);
+        }
+    }
+
+    /** The number of lines. */
+    synchronized int size() {
+        return lines.size();
+    }
+
+    synchronized boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    synchronized Line line(int index) {
+        return lines.get(index);
+    }
+
+    /** The index of the line of catalog product productId, or -1 if the cart has none. */
+    synchronized int indexOf(int productId) {
+        Line line = byId.get(productId);
+        return line == null ? -1 : line.index;
+    }
+
+    /** A copy of the lines, in order. */
+    synchronized List<Line> lines() {
+        return new ArrayList<>(lines);
+    }
+
+    /** The sum of the quantities of all lines. */
+    synchronized int itemCount() {
+        return itemCount;
+    }
+
+    synchronized Money total() {
+        return Money.of(totalMinor, currency);
+    }
+
+    // The same product at a new price keeps its place in the cart, with the new price for all of it
+    private void reprice(Line line, Money unitPrice, int quantity) {
+        Line next = new Line(line.productId, line.name, unitPrice, quantity);
+        next.index = line.index;
+        lines.set(line.index, next);
+        unindex(line);
+        index(next);
+        totalMinor = Math.addExact(totalMinor - line.total().minor(), next.total().minor());
+        itemCount = Math.addExact(itemCount - line.quantity, quantity);
+        for (Listener listener : listeners) {
+            listener.linesUpdated(next.index, next.index);
+        }
+    }
+
+    private void index(Line line) {
+        if (line.productId >= 0) {
+            byId.put(line.productId, line);
+        } else {
+            byProduct.put(key(line.name, line.unitPrice), line);
+        }
+    }
+
+    private void unindex(Line line) {
+        if (line.productId >= 0) {
+            byId.remove(line.productId, line);
+        } else {
+            byProduct.remove(key(line.name, line.unitPrice), line);
+        }
+    }
+
+    private static String key(String name, Money unitPrice) {
+        return name + '\u0000' + unitPrice.minor();
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The open shopping carts, by cart id (a session, a user, or "desktop" for a Swing app), and adding
+ * catalog products to them.
+ *
+ * Carts are bounded: a cart not used for idleMillis is forgotten, and at most maxCarts are open at
+ * once. Reading a cart with find() never creates one, so only adding to a cart can grow the map;
+ * when it is full, the idle carts are swept out (at most once a second) and, if none are idle, the
+ * new cart is refused with IllegalStateException. A forgotten cart object still works for whoever
+ * holds it, like a Swing app holding its own.
+ *
+ * Thread-safe: carts are kept in a concurrent map, and each Cart locks itself.
+ */
+final class CartService {
+    static final int DEFAULT_MAX_CARTS = 100_000;
+    static final long DEFAULT_IDLE_MILLIS = 2 * 60 * 60 * 1000L;
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private static final class Open {
+        final Cart cart;
+        volatile long lastUsed;
+
+        Open(Cart cart, long now) {
+            this.cart = cart;
+            this.lastUsed = now;
+        }
+    }
+
+    private final CatalogService catalog;
+    private final int maxCarts;
+    private final long idleMillis;
+    private final ConcurrentHashMap<String, Open> carts = new ConcurrentHashMap<>();
+    private volatile long lastSweep;
+
+    CartService(CatalogService catalog) {
+        this(catalog, DEFAULT_MAX_CARTS, DEFAULT_IDLE_MILLIS);
+    }
+
+    CartService(CatalogService catalog, int maxCarts, long idleMillis) {
+        this.catalog = catalog;
+        this.maxCarts = maxCarts;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * The cart with this id, created empty on first use. Throws IllegalStateException when maxCarts
+     * carts are open and none of them is idle.
+     */
+    Cart cart(String id) {
+        long now = System.currentTimeMillis();
+        Cart existing = find(id, now);
+        if (existing != null) {
+            return existing;
+        }
+        if (carts.size() >= maxCarts) {
+            sweep(now);
+            if (carts.size() >= maxCarts) {
+                throw new IllegalStateException("Too many open carts, try again later");
+            }
+        }
+        Open open = carts.computeIfAbsent(id, k -> new Open(new Cart(catalog.currency()), now));
+        open.lastUsed = now;
+        return open.cart;
+    }
+
+    /** The open cart with this id, or null; never creates one. */
+    Cart find(String id) {
+        return find(id, System.currentTimeMillis());
+    }
+
+    /** Forgets a cart; returns it, or null if there was none. */
+    Cart close(String id) {
+        Open open = carts.remove(id);
+        return open == null ? null : open.cart;
+    }
+
+    int openCarts() {
+        return carts.size();
+    }
+
+    /**
+     * Adds quantity of product id to the cart with this id and returns the cart. The cart is opened
+     * only after the product and quantity have been checked, so a rejected request leaves no cart
+     * behind. Throws IllegalArgumentException as add(Cart, int, int) does, and IllegalStateException
+     * as cart() does.
+     */
+    Cart add(String id, int productId, int quantity) {
+        check(catalog.current().catalog, productId, quantity);
+        Cart cart = cart(id);
+        add(cart, productId, quantity);
+        return cart;
+    }
+
+    /**
+     * Adds quantity of product id of the current catalog version to a cart; returns the index of its
+     * line. Throws IllegalArgumentException for an id the catalog does not have or a quantity that is
+     * not positive.
+     */
+    int add(Cart cart, int productId, int quantity) {
+        return add(cart, catalog.current(), productId, quantity);
+    }
+
+    /**
+     * Adds quantity of product id of version, the catalog version the buyer was shown (a search
+     * result's version), at the name and price it had there; a later catalog may have given the id to
+     * another product. Returns the index of its line.
+     */
+    int add(Cart cart, VersionedCatalog.Version version, int productId, int quantity) {
+        Catalog products = version.catalog;
+        check(products, productId, quantity);
+        int line = cart.add(productId, products.name(productId), products.price(productId), quantity);
+        catalog.recordAddToCart(products.name(productId));
+        return line;
+    }
+
+    private static void check(Catalog products, int productId, int quantity) {
+        if (productId < 0 || productId >= products.size()) {
+            throw new IllegalArgumentException("No product with id " + productId);
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive, got " + quantity);
+        }
+    }
+
+    // An idle cart found here is forgotten as if it had been swept
+    private Cart find(String id, long now) {
+        Open open = carts.get(id);
+        if (open == null) {
+            return null;
+        }
+        if (now - open.lastUsed > idleMillis) {
+            carts.remove(id, open);
+            return null;
+        }
+        open.lastUsed = now;
+        return open.cart;
+    }
+
+    private void sweep(long now) {
+        if (now - lastSweep < SWEEP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastSweep = now;
+        carts.entrySet().removeIf(entry -> now - entry.getValue().lastUsed > idleMillis);
+    }
+}
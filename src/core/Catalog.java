@@ -0,0 +1,29 @@
+/*
+ * Read-only view of the product catalog served by CatalogService.
+ *
+ * Products are addressed by int id from 0 to size() - 1. Implementations are CatalogStore, which
+ * keeps everything on the heap, and CatalogFile, which reads a memory-mapped catalog file.
+ */
+interface Catalog {
+    int size();
+
+    String name(int id);
+
+    /** Free-text description of the product, or an empty string when it has none. */
+    String description(int id);
+
+    Money price(int id);
+
+    long priceMinor(int id);
+
+    String category(int id);
+
+    Money.Currency currency();
+
+    int categoryCount();
+
+    String categoryName(int code);
+
+    /** Returns the ids of the products in a category in insertion order, or an empty array. */
+    int[] productsIn(String category);
+}
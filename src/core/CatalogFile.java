@@ -0,0 +1,328 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/*
+ * Binary catalog file opened through memory mapping.
+ *
+ * Opening a file only reads the fixed header and the small category table; product records are
+ * decoded the first time a table row or search hit asks for them, so startup time does not depend
+ * on the size of the catalog. Files larger than 2 GB are mapped as several overlapping windows.
+ *
+ * Layout (big-endian), version 2:
+ *
+ *   header          int magic "MKTC", short version, short currency, int productCount,
+ *                   int categoryCount, long categoryTableOffset, long offsetTableOffset
+ *   records         per product: int categoryCode, long priceMinor, short nameLength, name (UTF-8),
+ *                   int descriptionLength, description (UTF-8)
+ *   offset table    productCount longs, the file position of each record
+ *   category rows   per category: rowCount ints, the product ids in that category
+ *   category table  per category: short nameLength, name (UTF-8), int rowCount, long rowsOffset
+ *
+ * Version 1 files, whose records end after the name, are still read; their descriptions are empty.
+ */
+class CatalogFile implements Catalog, AutoCloseable {
+    static final int MAGIC = 0x4D4B5443;
+    static final short VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+    private static final int MAX_DESCRIPTION_BYTES = 1 << 19;
+    private static final long WINDOW_SIZE = 1L << 30;
+    // Windows overlap by more than the largest record so no read ever straddles two windows
+    private static final long WINDOW_OVERLAP = 1L << 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] windows;
+    private final short version;
+    private final Money.Currency currency;
+    private final int size;
+    private final long offsetTable;
+    private final String[] categoryNames;
+    private final int[] categoryRowCounts;
+    private final long[] categoryRowOffsets;
+    private final HashMap<String, Integer> categoryCodes = new HashMap<>();
+
+    private CatalogFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long length = channel.size();
+        if (length < HEADER_SIZE) {
+            throw new IOException("Not a catalog file: too short");
+        }
+
+        int windowCount = (int) ((length + WINDOW_SIZE - 1) / WINDOW_SIZE);
+        windows = new MappedByteBuffer[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            long start = i * WINDOW_SIZE;
+            long mapped = Math.min(WINDOW_SIZE + WINDOW_OVERLAP, length - start);
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, mapped);
+        }
+
+        if (getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog file: bad magic number");
+        }
+        version = getShort(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported catalog file version " + version);
+        }
+        // Every header field is checked against the file's length before it is used, so a truncated
+        // or corrupt file fails here with an IOException and not later with an index out of range
+        int currencyCode = getShort(6);
+        check(currencyCode >= 0 && currencyCode < Money.Currency.values().length, "unknown currency " + currencyCode);
+        currency = Money.Currency.values()[currencyCode];
+        size = getInt(8);
+        int categoryCount = getInt(12);
+        long categoryTable = getLong(16);
+        offsetTable = getLong(24);
+        check(size >= 0, "negative product count " + size);
+        check(offsetTable >= HEADER_SIZE && offsetTable <= length - 8L * size,
+                "offset table at " + offsetTable + " for " + size + " products does not fit in " + length + " bytes");
+        check(categoryTable >= HEADER_SIZE && categoryTable <= length, "category table at " + categoryTable + " is outside the file");
+        // A category entry takes at least 14 bytes
+        check(categoryCount >= 0 && categoryCount <= (length - categoryTable) / 14, "bad category count " + categoryCount);
+
+        categoryNames = new String[categoryCount];
+        categoryRowCounts = new int[categoryCount];
+        categoryRowOffsets = new long[categoryCount];
+        long pos = categoryTable;
+        for (int code = 0; code < categoryCount; code++) {
+            check(pos + 2 <= length, "category table is truncated");
+            int nameLength = getShort(pos) & 0xFFFF;
+            check(pos + 2 + nameLength + 12 <= length, "category table is truncated");
+            categoryNames[code] = getString(pos + 2, nameLength);
+            pos += 2 + nameLength;
+            categoryRowCounts[code] = getInt(pos);
+            categoryRowOffsets[code] = getLong(pos + 4);
+            pos += 12;
+            check(categoryRowCounts[code] >= 0 && categoryRowCounts[code] <= size
+                            && categoryRowOffsets[code] >= HEADER_SIZE && categoryRowOffsets[code] <= length - 4L * categoryRowCounts[code],
+                    "rows of category " + categoryNames[code] + " are outside the file");
+            categoryCodes.put(categoryNames[code], code);
+        }
+    }
+
+    private static void check(boolean valid, String problem) throws IOException {
+        if (!valid) {
+            throw new IOException("Corrupt catalog file: " + problem);
+        }
+    }
+
+    static CatalogFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new CatalogFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Writes a catalog in the current file format, streaming the records to disk. */
+    static void write(Catalog catalog, Path path) throws IOException {
+        int size = catalog.size();
+        int categoryCount = catalog.categoryCount();
+        long[] recordOffsets = new long[size];
+        HashMap<String, Integer> codes = new HashMap<>();
+        for (int code = 0; code < categoryCount; code++) {
+            codes.put(catalog.categoryName(code), code);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            CountingOutput out = new CountingOutput(Channels.newOutputStream(channel));
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(new byte[HEADER_SIZE]);
+
+            for (int id = 0; id < size; id++) {
+                recordOffsets[id] = out.count;
+                byte[] name = nameBytes(catalog.name(id));
+                byte[] description = descriptionBytes(catalog.description(id));
+                data.writeInt(codes.get(catalog.category(id)));
+                data.writeLong(catalog.priceMinor(id));
+                data.writeShort(name.length);
+                data.write(name);
+                data.writeInt(description.length);
+                data.write(description);
+            }
+
+            long offsetTable = out.count;
+            for (long offset : recordOffsets) {
+                data.writeLong(offset);
+            }
+
+            long[] rowOffsets = new long[categoryCount];
+            int[] rowCounts = new int[categoryCount];
+            for (int code = 0; code < categoryCount; code++) {
+                rowOffsets[code] = out.count;
+                int[] rows = catalog.productsIn(catalog.categoryName(code));
+                rowCounts[code] = rows.length;
+                for (int id : rows) {
+                    data.writeInt(id);
+                }
+            }
+
+            long categoryTable = out.count;
+            for (int code = 0; code < categoryCount; code++) {
+                byte[] name = nameBytes(catalog.categoryName(code));
+                data.writeShort(name.length);
+                data.write(name);
+                data.writeInt(rowCounts[code]);
+                data.writeLong(rowOffsets[code]);
+            }
+            data.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) catalog.currency().ordinal())
+                    .putInt(size).putInt(categoryCount).putLong(categoryTable).putLong(offsetTable);
+            header.flip();
+            channel.write(header, 0);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String name(int id) {
+        long record = recordOffset(id);
+        return getString(record + 14, getShort(record + 12) & 0xFFFF);
+    }
+
+    @Override
+    public String description(int id) {
+        if (version == 1) {
+            recordOffset(id);
+            return "";
+        }
+        long record = recordOffset(id);
+        long pos = record + 14 + (getShort(record + 12) & 0xFFFF);
+        return getString(pos + 4, getInt(pos));
+    }
+
+    @Override
+    public Money price(int id) {
+        return Money.of(priceMinor(id), currency);
+    }
+
+    @Override
+    public long priceMinor(int id) {
+        return getLong(recordOffset(id) + 4);
+    }
+
+    @Override
+    public String category(int id) {
+        return categoryNames[getInt(recordOffset(id))];
+    }
+
+    @Override
+    public Money.Currency currency() {
+        return currency;
+    }
+
+    @Override
+    public int categoryCount() {
+        return categoryNames.length;
+    }
+
+    @Override
+    public String categoryName(int code) {
+        return categoryNames[code];
+    }
+
+    @Override
+    public int[] productsIn(String category) {
+        Integer code = categoryCodes.get(category);
+        if (code == null) {
+            return new int[0];
+        }
+        int[] rows = new int[categoryRowCounts[code]];
+        long pos = categoryRowOffsets[code];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = getInt(pos + 4L * i);
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long recordOffset(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Product id " + id + " out of range 0.." + size);
+        }
+        return getLong(offsetTable + 8L * id);
+    }
+
+    private ByteBuffer window(long pos) {
+        return windows[(int) (pos / WINDOW_SIZE)];
+    }
+
+    private int getInt(long pos) {
+        return window(pos).getInt((int) (pos % WINDOW_SIZE));
+    }
+
+    private short getShort(long pos) {
+        return window(pos).getShort((int) (pos % WINDOW_SIZE));
+    }
+
+    private long getLong(long pos) {
+        return window(pos).getLong((int) (pos % WINDOW_SIZE));
+    }
+
+    private String getString(long pos, int length) {
+        byte[] bytes = new byte[length];
+        window(pos).get((int) (pos % WINDOW_SIZE), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] nameBytes(String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_BYTES) {
+            throw new IOException("Name longer than " + MAX_NAME_BYTES + " bytes: " + name.substring(0, 40) + "...");
+        }
+        return bytes;
+    }
+
+    private static byte[] descriptionBytes(String description) throws IOException {
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_DESCRIPTION_BYTES) {
+            throw new IOException("Description longer than " + MAX_DESCRIPTION_BYTES + " bytes: " + description.substring(0, 40) + "...");
+        }
+        return bytes;
+    }
+
+    private static class CountingOutput extends BufferedOutputStream {
+        long count;
+
+        CountingOutput(OutputStream out) {
+            super(out, 1 << 16);
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            super.write(b);
+            count++;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            count += len;
+        }
+    }
+}
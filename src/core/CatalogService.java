@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * The product catalog of the marketplace: which version is current, how it changes, and the
+ * search indexes built from it.
+ *
+ * Every change (opening a catalog file, importing a feed, listing a new product) and every index
+ * build runs on one writer thread, and each is published as a new catalog version. Readers call
+ * current() and work with that version without locking; the indexes are LazyIndexes, so a reader
+ * gets the last index built for the lineage of its version while the next one is built in the
+ * background, and never one built from another lineage.
+ *
+ * Thread-safe. Nothing here knows about Swing, so a benchmark or a server drives it as it is.
+ */
+final class CatalogService {
+    static final String[] CATEGORIES = {"Electronics", "Clothing", "Home & Garden", "Sports", "Toys", "Motors", "Collectibles", "Deals"};
+    // New popularity counts are ranked into the suggestion trie at most this often, so a steady stream
+    // of adds to carts costs one trie rebuild per interval instead of one per add and suggest()
+    private static final long RERANK_INTERVAL_MILLIS = 5000;
+
+    private final Money.Currency currency;
+    private final VersionedCatalog catalogs;
+    // Catalog writes (imports, new listings, index builds) run here, one at a time
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Times each normalized product name was added to a cart; ranks type-ahead suggestions
+    private final ConcurrentHashMap<String, Integer> popularity = new ConcurrentHashMap<>();
+    // Whether popularity has counts the trie was not built with, and when the trie was last invalidated
+    private final AtomicBoolean popularityChanged = new AtomicBoolean();
+    private final AtomicLong lastRerank = new AtomicLong();
+    private final LazyIndex<PrefixTrie> suggestionTrie;
+    private final LazyIndex<FuzzyIndex> fuzzyIndex;
+    private final LazyIndex<TextIndex> textIndex;
+    private final LazyIndex<FacetIndex> facetIndex;
+
+    CatalogService(Money.Currency currency) {
+        this.currency = currency;
+        this.catalogs = new VersionedCatalog(currency);
+        this.suggestionTrie = new LazyIndex<>(catalog -> PrefixTrie.build(catalog, popularity), writer);
+        this.fuzzyIndex = new LazyIndex<>(FuzzyIndex::build, writer);
+        this.textIndex = new LazyIndex<>(TextIndex::build, writer);
+        this.facetIndex = new LazyIndex<>(FacetIndex::build, writer);
+    }
+
+    Money.Currency currency() {
+        return currency;
+    }
+
+    VersionedCatalog.Version current() {
+        return catalogs.current();
+    }
+
+    /**
+     * Publishes a memory-mapped catalog file. It can be read at once; its name and price indexes
+     * are built on the writer thread, and searches scan the file until they are ready.
+     */
+    void open(Path path) throws IOException {
+        CatalogFile file = CatalogFile.open(path);
+        catalogs.publish(file, null, null);
+        writer.execute(() -> catalogs.attachIndexes(file, TrigramIndex.build(file), PriceIndex.build(file)));
+        buildIndexes();
+    }
+
+    /** Publishes the sample products. */
+    void openSample() {
+        CatalogStore store = new CatalogStore(currency);
+        addSample(store, "Electronics", "Smartphone", "6.5 inch display, 128 GB storage, dual camera", "₹14999");
+        addSample(store, "Electronics", "Headphones", "Wireless over-ear headphones with noise cancelling", "₹2999");
+
+        addSample(store, "Clothing", "T-Shirt", "Cotton crew neck t-shirt", "₹499");
+        addSample(store, "Clothing", "Jacket", "Water resistant winter jacket with hood", "₹1999");
+
+        addSample(store, "Home & Garden", "Coffee Mug", "Ceramic mug, 350 ml, dishwasher safe", "₹299");
+        addSample(store, "Home & Garden", "Garden Tools", "Trowel, fork and pruning shears set", "₹899");
+
+        addSample(store, "Sports", "Football", "Size 5 match football", "₹999");
+        addSample(store, "Sports", "Tennis Racket", "Lightweight graphite racket with cover", "₹1599");
+        catalogs.publish(store);
+        buildIndexes();
+    }
+
+    private void addSample(CatalogStore store, String category, String name, String description, String price) {
+        store.add(category, name, description, Money.parse(price, currency));
+    }
+
+    /**
+     * Imports a product feed on the writer thread and publishes the result as one new version. The
+     * future fails with the IOException if the feed cannot be read; nothing is published then.
+     */
+    Future<FeedImporter.Report> importFeed(Path feed) {
+        return writer.submit(() -> {
+            CatalogStore store = new CatalogStore(currency);
+            FeedImporter.Report report = new FeedImporter(new HashSet<>(Arrays.asList(CATEGORIES)), currency).importInto(feed, store);
+            catalogs.publish(store);
+            buildIndexes();
+            return report;
+        });
+    }
+
+    boolean isWritable() {
+        return catalogs.isWritable();
+    }
+
+    /**
+     * Lists a new product on the writer thread; the future completes with the version that has it.
+     * Checks the listing on the calling thread and throws IllegalArgumentException if it is invalid.
+     */
+    Future<VersionedCatalog.Version> sell(String category, String name, String description, Money price) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("A product name is required");
+        }
+        if (!Arrays.asList(CATEGORIES).contains(category)) {
+            throw new IllegalArgumentException("Unknown category: " + category);
+        }
+        if (price.currency() != currency || !price.isPositive()) {
+            throw new IllegalArgumentException("The price must be a positive amount in " + currency + ", got " + price);
+        }
+        return writer.submit(() -> {
+            VersionedCatalog.Version version = catalogs.add(category, name.trim(), description == null ? "" : description.trim(), price);
+            buildIndexes();
+            return version;
+        });
+    }
+
+    /**
+     * Counts a product added to a cart, for ranking suggestions. The trie is re-ranked in the
+     * background at most once every RERANK_INTERVAL_MILLIS, so suggestions can trail the counts by
+     * that long.
+     */
+    void recordAddToCart(String name) {
+        popularity.merge(SearchKeys.normalize(name), 1, Integer::sum);
+        popularityChanged.set(true);
+        rerankIfDue();
+    }
+
+    /** Up to limit product names starting with prefix, most popular first; empty until the trie is built. */
+    List<String> suggest(String prefix, int limit) {
+        rerankIfDue();
+        PrefixTrie trie = suggestionTrie.get(catalogs);
+        return trie == null ? List.of() : trie.suggest(prefix, limit);
+    }
+
+    /**
+     * A facet index covering every product of version: the latest one built for its lineage, extended
+     * with the products added since, or, before the first build for the lineage has finished, one
+     * built here. Either is kept for the next query against the same version.
+     */
+    FacetIndex facets(VersionedCatalog.Version version) {
+        FacetIndex facets = facetIndex.get(catalogs, version);
+        if (facets == null) {
+            return facetIndex.offer(FacetIndex.build(version.catalog), version);
+        }
+        FacetIndex extended = facets.extendedTo(version.catalog);
+        return extended == facets ? facets : facetIndex.offer(extended, version);
+    }
+
+    /** The latest text index usable with version (see LazyIndex.get()), or null. */
+    TextIndex text(VersionedCatalog.Version version) {
+        return textIndex.get(catalogs, version);
+    }
+
+    /** The latest typo-tolerant name index usable with version (see LazyIndex.get()), or null. */
+    FuzzyIndex fuzzy(VersionedCatalog.Version version) {
+        return fuzzyIndex.get(catalogs, version);
+    }
+
+    /** Whether every index a search reads was built from exactly this version. */
+    boolean indexesCurrent(VersionedCatalog.Version version) {
+        return facetIndex.isCurrent(version) && textIndex.isCurrent(version) && fuzzyIndex.isCurrent(version);
+    }
+
+    // Invalidates the suggestion trie if counts have changed and the interval has passed since the last
+    // time; also called from suggest(), so the last adds before a quiet spell are ranked too. The flag is
+    // cleared before the invalidation, and the rebuild reads the counts after it, so no add is missed.
+    private void rerankIfDue() {
+        if (!popularityChanged.get()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastRerank.get();
+        if (now - last >= RERANK_INTERVAL_MILLIS && lastRerank.compareAndSet(last, now)) {
+            popularityChanged.set(false);
+            suggestionTrie.invalidate();
+        }
+    }
+
+    // Queues the builds for the version just published. Every index is asked for, also the ones a
+    // search reads only now and then, so that indexesCurrent() becomes true again after each change.
+    private void buildIndexes() {
+        suggestionTrie.get(catalogs);
+        fuzzyIndex.get(catalogs);
+        textIndex.get(catalogs);
+        facetIndex.get(catalogs);
+    }
+}
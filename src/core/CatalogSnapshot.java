@@ -0,0 +1,109 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * Immutable version of a CatalogStore.
+ *
+ * A snapshot shares the column arrays of the store it was taken from and only reads the first size
+ * slots of them, which the store never writes again. Any number of threads can read a snapshot
+ * without locking while the store keeps appending the next version.
+ */
+final class CatalogSnapshot implements Catalog {
+    private final Money.Currency currency;
+    private final int size;
+    private final long[] prices;
+    private final int[] categories;
+    private final int[] nameOffsets;
+    private final byte[] nameArena;
+    private final int[] descriptionOffsets;
+    private final byte[] descriptionArena;
+    private final HashMap<String, Integer> categoryCodes;
+    private final String[] categoryNames;
+    private final int[][] categoryRows;
+    private final int[] categoryRowCounts;
+
+    CatalogSnapshot(Money.Currency currency, int size, long[] prices, int[] categories, int[] nameOffsets,
+                    byte[] nameArena, int[] descriptionOffsets, byte[] descriptionArena,
+                    HashMap<String, Integer> categoryCodes, String[] categoryNames,
+                    int[][] categoryRows, int[] categoryRowCounts) {
+        this.currency = currency;
+        this.size = size;
+        this.prices = prices;
+        this.categories = categories;
+        this.nameOffsets = nameOffsets;
+        this.nameArena = nameArena;
+        this.descriptionOffsets = descriptionOffsets;
+        this.descriptionArena = descriptionArena;
+        this.categoryCodes = categoryCodes;
+        this.categoryNames = categoryNames;
+        this.categoryRows = categoryRows;
+        this.categoryRowCounts = categoryRowCounts;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String name(int id) {
+        checkId(id);
+        int start = nameOffsets[id];
+        return new String(nameArena, start, nameOffsets[id + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String description(int id) {
+        checkId(id);
+        int start = descriptionOffsets[id];
+        return new String(descriptionArena, start, descriptionOffsets[id + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Money price(int id) {
+        return Money.of(priceMinor(id), currency);
+    }
+
+    @Override
+    public long priceMinor(int id) {
+        checkId(id);
+        return prices[id];
+    }
+
+    @Override
+    public String category(int id) {
+        checkId(id);
+        return categoryNames[categories[id]];
+    }
+
+    @Override
+    public Money.Currency currency() {
+        return currency;
+    }
+
+    @Override
+    public int categoryCount() {
+        return categoryNames.length;
+    }
+
+    @Override
+    public String categoryName(int code) {
+        return categoryNames[code];
+    }
+
+    @Override
+    public int[] productsIn(String category) {
+        Integer code = categoryCodes.get(category);
+        if (code == null) {
+            return new int[0];
+        }
+        return Arrays.copyOf(categoryRows[code], categoryRowCounts[code]);
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Product id " + id + " out of range 0.." + size);
+        }
+    }
+}
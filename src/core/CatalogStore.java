@@ -0,0 +1,130 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * Column-oriented product catalog used by CatalogService. This is the single-writer side; readers
+ * use the immutable CatalogSnapshot returned by snapshot().
+ *
+ * Every product is identified by an int id (its row number). Instead of one object per product the
+ * store keeps one primitive array per attribute:
+ *
+ * * price column:    long[]  price in minor units (paise) of the store's currency, one slot per product
+ * * category column: int[]   dictionary code of the product's category
+ * * name arena:      byte[]  UTF-8 bytes of all names back to back, sliced by an int[] offset table
+ * * description arena: the same layout for the free-text descriptions (empty when not given)
+ *
+ * Each category also keeps the ascending list of its product ids, so browsing a category walks
+ * the columns front to back instead of chasing pointers across the heap.
+ */
+class CatalogStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Money.Currency currency;
+    private int size;
+    private long[] prices = new long[INITIAL_CAPACITY];
+    private int[] categories = new int[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+    private byte[] nameArena = new byte[INITIAL_CAPACITY * 16];
+    private int[] descriptionOffsets = new int[INITIAL_CAPACITY + 1];
+    private byte[] descriptionArena = new byte[INITIAL_CAPACITY * 16];
+
+    private final HashMap<String, Integer> categoryCodes = new HashMap<>();
+    private String[] categoryNames = new String[8];
+    private int[][] categoryRows = new int[8][];
+    private int[] categoryRowCounts = new int[8];
+    private int categoryCount;
+
+    CatalogStore(Money.Currency currency) {
+        this.currency = currency;
+    }
+
+    int add(String category, String name, Money price) {
+        return add(category, name, "", price);
+    }
+
+    int add(String category, String name, String description, Money price) {
+        if (price.currency() != currency) {
+            throw new IllegalArgumentException("Catalog is priced in " + currency + ", got " + price);
+        }
+        int id = size;
+        if (id == prices.length) {
+            int capacity = id * 2;
+            prices = Arrays.copyOf(prices, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+            descriptionOffsets = Arrays.copyOf(descriptionOffsets, capacity + 1);
+        }
+
+        nameArena = append(nameArena, nameOffsets, id, name);
+        descriptionArena = append(descriptionArena, descriptionOffsets, id, description);
+
+        int code = categoryCode(category);
+        prices[id] = price.minor();
+        categories[id] = code;
+        appendRow(code, id);
+
+        size++;
+        return id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Money.Currency currency() {
+        return currency;
+    }
+
+    /**
+     * Returns an immutable view of the products added so far. The store only ever appends, and
+     * grows a column by copying it into a new array, so the snapshot can keep referencing the
+     * current arrays: later writes land in slots or arrays the snapshot never reads.
+     */
+    CatalogSnapshot snapshot() {
+        HashMap<String, Integer> codes = new HashMap<>(categoryCodes);
+        return new CatalogSnapshot(currency, size, prices, categories, nameOffsets, nameArena,
+                descriptionOffsets, descriptionArena, codes,
+                Arrays.copyOf(categoryNames, categoryCount), Arrays.copyOf(categoryRows, categoryCount),
+                Arrays.copyOf(categoryRowCounts, categoryCount));
+    }
+
+    // Stores text as the id-th slice of an arena, returning the (possibly grown) arena
+    private static byte[] append(byte[] arena, int[] offsets, int id, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int start = offsets[id];
+        if (start + bytes.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, start + bytes.length));
+        }
+        System.arraycopy(bytes, 0, arena, start, bytes.length);
+        offsets[id + 1] = start + bytes.length;
+        return arena;
+    }
+
+    private int categoryCode(String category) {
+        Integer code = categoryCodes.get(category);
+        if (code != null) {
+            return code;
+        }
+        if (categoryCount == categoryNames.length) {
+            categoryNames = Arrays.copyOf(categoryNames, categoryCount * 2);
+            categoryRows = Arrays.copyOf(categoryRows, categoryCount * 2);
+            categoryRowCounts = Arrays.copyOf(categoryRowCounts, categoryCount * 2);
+        }
+        categoryNames[categoryCount] = category;
+        categoryRows[categoryCount] = new int[INITIAL_CAPACITY];
+        categoryCodes.put(category, categoryCount);
+        return categoryCount++;
+    }
+
+    private void appendRow(int code, int id) {
+        int[] rows = categoryRows[code];
+        int count = categoryRowCounts[code];
+        if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count * 2);
+            categoryRows[code] = rows;
+        }
+        rows[count] = id;
+        categoryRowCounts[code] = count + 1;
+    }
+}
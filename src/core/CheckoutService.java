@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Turns a cart into an order.
+ *
+ * The cart stays locked from reading its lines until it is cleared, so an item added by another
+ * thread during checkout is either in the order or left in the cart, never lost. If the order
+ * cannot be placed (the log cannot be written) the cart is left as it was.
+ */
+final class CheckoutService {
+    private final OrderService orders;
+
+    CheckoutService(OrderService orders) {
+        this.orders = orders;
+    }
+
+    Order checkout(Cart cart) throws IOException {
+        return checkout(cart, Map.of(), "");
+    }
+
+    /**
+     * Places an order for everything in the cart plus the extra charges, and empties the cart.
+     * Throws IllegalArgumentException if the cart is empty, the total is not positive or a charge
+     * is in another currency.
+     */
+    Order checkout(Cart cart, Map<String, Money> charges, String instructions) throws IOException {
+        for (Money charge : charges.values()) {
+            if (charge.currency() != cart.currency()) {
+                throw new IllegalArgumentException("Cart is in " + cart.currency() + ", got a charge in " + charge.currency());
+            }
+        }
+        synchronized (cart) {
+            if (cart.isEmpty()) {
+                throw new IllegalArgumentException("The cart is empty");
+            }
+            if (!cart.total().isPositive()) {
+                throw new IllegalArgumentException("Cannot place an order with a total of " + cart.total());
+            }
+            List<Order.Line> lines = new ArrayList<>(cart.size());
+            for (Cart.Line line : cart.lines()) {
+                lines.add(new Order.Line(line.name, line.unitPrice, line.quantity()));
+            }
+            Order order = orders.place(lines, charges, instructions);
+            cart.clear();
+            return order;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/*
+ * Bitmap indexes for faceted browsing: for every value of every facet (a category, a price band,
+ * or any other attribute of a product) the set of product ids having that value.
+ *
+ * Values selected within one facet are OR-ed and the facets are AND-ed, and the count shown next to
+ * each facet value is the cardinality of its bitmap intersected with the current matches, so
+ * "Electronics under ₹3000 matching 'phone'" costs a few word-level ANDs and ORs instead of a pass
+ * over the catalog per condition.
+ */
+final class FacetIndex {
+    static final String CATEGORY = "Category";
+    static final String PRICE = "Price";
+
+    /** Price band lower bounds in rupees; a band runs up to the next bound. */
+    static final long[] PRICE_BANDS = {0, 500, 1000, 3000, 10000};
+
+    private final int size;
+    private final Bitmap all;
+    // facet -> value -> products, values in the order they were first seen (price bands low to high)
+    private final LinkedHashMap<String, LinkedHashMap<String, Bitmap>> facets = new LinkedHashMap<>();
+
+    private FacetIndex(int size) {
+        this.size = size;
+        this.all = Bitmap.range(size);
+    }
+
+    static FacetIndex build(Catalog catalog) {
+        FacetIndex index = new FacetIndex(catalog.size());
+        LinkedHashMap<String, Bitmap> categories = new LinkedHashMap<>();
+        for (int code = 0; code < catalog.categoryCount(); code++) {
+            String category = catalog.categoryName(code);
+            categories.put(category, Bitmap.of(catalog.productsIn(category)));
+        }
+        index.facets.put(CATEGORY, categories);
+
+        LinkedHashMap<String, Bitmap> bands = new LinkedHashMap<>();
+        for (int band = 0; band < PRICE_BANDS.length; band++) {
+            bands.put(priceBandLabel(band, catalog.currency()), new Bitmap());
+        }
+        index.facets.put(PRICE, bands);
+        List<Bitmap> bandBitmaps = new ArrayList<>(bands.values());
+        for (int id = 0; id < catalog.size(); id++) {
+            bandBitmaps.get(priceBand(catalog.priceMinor(id))).add(id);
+        }
+        return index;
+    }
+
+    /**
+     * This index plus the products the catalog (of the same lineage) has beyond size(), in their
+     * categories and price bands; this index itself when there are none. It is left unchanged, since
+     * other threads may be reading it. Attribute facets keep only the products they were built with.
+     */
+    FacetIndex extendedTo(Catalog catalog) {
+        if (catalog.size() <= size) {
+            return this;
+        }
+        FacetIndex index = new FacetIndex(catalog.size());
+        for (Map.Entry<String, LinkedHashMap<String, Bitmap>> facet : facets.entrySet()) {
+            LinkedHashMap<String, Bitmap> values = new LinkedHashMap<>();
+            facet.getValue().forEach((value, products) -> values.put(value, products.copy()));
+            index.facets.put(facet.getKey(), values);
+        }
+        LinkedHashMap<String, Bitmap> categories = index.facets.get(CATEGORY);
+        List<Bitmap> bandBitmaps = new ArrayList<>(index.facets.get(PRICE).values());
+        for (int id = size; id < catalog.size(); id++) {
+            categories.computeIfAbsent(catalog.category(id), c -> new Bitmap()).add(id);
+            bandBitmaps.get(priceBand(catalog.priceMinor(id))).add(id);
+        }
+        return index;
+    }
+
+    /** Adds an attribute facet, such as a brand or colour, whose value for each product is given by valueOf (null for none). */
+    void addFacet(String facet, IntFunction<String> valueOf) {
+        LinkedHashMap<String, Bitmap> values = new LinkedHashMap<>();
+        for (int id = 0; id < size; id++) {
+            String value = valueOf.apply(id);
+            if (value != null) {
+                values.computeIfAbsent(value, v -> new Bitmap()).add(id);
+            }
+        }
+        facets.put(facet, values);
+    }
+
+    /** Number of products indexed; ids at or above it were added to the catalog afterwards. */
+    int size() {
+        return size;
+    }
+
+    Bitmap all() {
+        return all;
+    }
+
+    List<String> facetNames() {
+        return new ArrayList<>(facets.keySet());
+    }
+
+    List<String> values(String facet) {
+        return new ArrayList<>(facets.getOrDefault(facet, new LinkedHashMap<>()).keySet());
+    }
+
+    /** Products with the given value of a facet, matched ignoring case and accents; empty if there is none. */
+    Bitmap products(String facet, String value) {
+        LinkedHashMap<String, Bitmap> values = facets.getOrDefault(facet, new LinkedHashMap<>());
+        Bitmap products = values.get(value);
+        if (products != null) {
+            return products;
+        }
+        String key = SearchKeys.normalize(value);
+        for (Map.Entry<String, Bitmap> entry : values.entrySet()) {
+            if (SearchKeys.normalize(entry.getKey()).equals(key)) {
+                return entry.getValue();
+            }
+        }
+        return new Bitmap();
+    }
+
+    /**
+     * Products that have, for every facet in selected, at least one of the values chosen for it. A
+     * facet with no chosen values does not filter.
+     */
+    Bitmap filter(Map<String, Set<String>> selected) {
+        Bitmap result = all;
+        for (Map.Entry<String, Set<String>> entry : selected.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            LinkedHashMap<String, Bitmap> values = facets.getOrDefault(entry.getKey(), new LinkedHashMap<>());
+            Bitmap any = new Bitmap();
+            for (String value : entry.getValue()) {
+                Bitmap products = values.get(value);
+                if (products != null) {
+                    any = any.or(products);
+                }
+            }
+            result = result.and(any);
+        }
+        return result;
+    }
+
+    /**
+     * Counts, for each value of a facet, how many of the matches have that value and pass the
+     * selections made in every other facet.
+     */
+    LinkedHashMap<String, Integer> counts(String facet, Bitmap matches, Map<String, Set<String>> selected) {
+        LinkedHashMap<String, Set<String>> others = new LinkedHashMap<>(selected);
+        others.remove(facet);
+        Bitmap base = matches.and(filter(others));
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, Bitmap> value : facets.getOrDefault(facet, new LinkedHashMap<>()).entrySet()) {
+            counts.put(value.getKey(), base.andCardinality(value.getValue()));
+        }
+        return counts;
+    }
+
+    static int priceBand(long priceMinor) {
+        int band = 0;
+        while (band + 1 < PRICE_BANDS.length && priceMinor >= PRICE_BANDS[band + 1] * 100) {
+            band++;
+        }
+        return band;
+    }
+
+    /**
+     * The prices, in minor units, from the lowest to the highest of the given price band labels, as
+     * {min, max}; {0, -1}, an empty span, when none of them is a band.
+     */
+    static long[] priceSpan(Set<String> labels, Money.Currency currency) {
+        int lowest = -1, highest = -1;
+        for (int band = 0; band < PRICE_BANDS.length; band++) {
+            if (labels.contains(priceBandLabel(band, currency))) {
+                if (lowest < 0) lowest = band;
+                highest = band;
+            }
+        }
+        if (lowest < 0) {
+            return new long[] {0, -1};
+        }
+        return new long[] {
+                lowest == 0 ? Long.MIN_VALUE : PRICE_BANDS[lowest] * 100,
+                highest + 1 == PRICE_BANDS.length ? Long.MAX_VALUE : PRICE_BANDS[highest + 1] * 100 - 1};
+    }
+
+    static String priceBandLabel(int band, Money.Currency currency) {
+        if (band == 0) {
+            return "Under " + Money.of(PRICE_BANDS[1] * 100, currency).format();
+        }
+        String from = Money.of(PRICE_BANDS[band] * 100, currency).format();
+        if (band + 1 == PRICE_BANDS.length) {
+            return from + " and above";
+        }
+        return from + " – " + Money.of(PRICE_BANDS[band + 1] * 100 - 1, currency).format();
+    }
+}
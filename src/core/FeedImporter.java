@@ -0,0 +1,389 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * Streaming bulk importer for product feeds.
+ *
+ * The feed is read line by line into fixed-size chunks. Each chunk is parsed and validated on a
+ * fork-join pool while the reader moves on, with at most maxInFlight chunks queued at any time, so
+ * memory use is bounded by the chunk size and never by the size of the file. Parsed chunks are
+ * appended to the target CatalogStore in file order.
+ *
+ * Supported formats, chosen by file extension:
+ *
+ * * .csv           header row naming the category, name and price columns and optionally a
+ *                  description column (any order), then one product per line; fields may be
+ *                  double-quoted
+ * * .jsonl/.ndjson one flat JSON object per line with "category", "name" and "price" members and
+ *                  an optional "description"
+ *
+ * Usage as a converter: java FeedImporter <feed> <catalog.bin>
+ */
+class FeedImporter {
+    static final int DEFAULT_CHUNK_LINES = 8192;
+
+    private static final int MAX_ERRORS_KEPT = 20;
+
+    private final Set<String> knownCategories;
+    private final Money.Currency currency;
+    private final int chunkLines;
+    private final int maxInFlight;
+    private final ForkJoinPool pool;
+
+    /** knownCategories may be null to accept any category. */
+    FeedImporter(Set<String> knownCategories, Money.Currency currency, int chunkLines, int maxInFlight, ForkJoinPool pool) {
+        this.knownCategories = knownCategories;
+        this.currency = currency;
+        this.chunkLines = chunkLines;
+        this.maxInFlight = maxInFlight;
+        this.pool = pool;
+    }
+
+    FeedImporter(Set<String> knownCategories, Money.Currency currency) {
+        this(knownCategories, currency, DEFAULT_CHUNK_LINES, ForkJoinPool.commonPool().getParallelism() * 2,
+                ForkJoinPool.commonPool());
+    }
+
+    static class Report {
+        long rows;
+        long rejected;
+        long elapsedNanos;
+        long peakHeapBytes;
+        final List<String> errors = new ArrayList<>();
+
+        double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %,d rows (%,d rejected) in %.2f s, %,.0f rows/s, peak heap %,d MB",
+                    rows, rejected, elapsedNanos / 1e9, rowsPerSecond(), peakHeapBytes >> 20);
+        }
+    }
+
+    Report importInto(Path feed, CatalogStore target) throws IOException {
+        String fileName = feed.getFileName().toString().toLowerCase();
+        boolean jsonLines = fileName.endsWith(".jsonl") || fileName.endsWith(".ndjson");
+        Report report = new Report();
+        long start = System.nanoTime();
+        Runtime runtime = Runtime.getRuntime();
+
+        try (BufferedReader reader = Files.newBufferedReader(feed, StandardCharsets.UTF_8)) {
+            int[] columns = null;
+            long lineNumber = 0;
+            if (!jsonLines) {
+                String header = reader.readLine();
+                if (header == null) {
+                    throw new IOException("Empty feed: " + feed);
+                }
+                lineNumber++;
+                columns = csvColumns(header);
+            }
+
+            ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            String[] lines = new String[chunkLines];
+            int count = 0;
+            long chunkStart = lineNumber + 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                lines[count++] = line;
+                if (count == chunkLines) {
+                    submit(inFlight, lines, count, chunkStart, columns, target, report);
+                    lines = new String[chunkLines];
+                    count = 0;
+                    chunkStart = lineNumber + 1;
+                    report.peakHeapBytes = Math.max(report.peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+                }
+            }
+            if (count > 0) {
+                submit(inFlight, lines, count, chunkStart, columns, target, report);
+            }
+            while (!inFlight.isEmpty()) {
+                append(inFlight.poll(), target, report);
+            }
+        }
+
+        report.peakHeapBytes = Math.max(report.peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void submit(ArrayDeque<Future<Chunk>> inFlight, String[] lines, int count, long firstLine,
+                        int[] columns, CatalogStore target, Report report) throws IOException {
+        while (inFlight.size() >= maxInFlight) {
+            append(inFlight.poll(), target, report);
+        }
+        inFlight.add(pool.submit(() -> parse(lines, count, firstLine, columns)));
+    }
+
+    private void append(Future<Chunk> pending, CatalogStore target, Report report) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not parse feed", e.getCause());
+        }
+        for (int i = 0; i < chunk.count; i++) {
+            target.add(chunk.categories[i], chunk.names[i], chunk.descriptions[i], Money.of(chunk.prices[i], currency));
+        }
+        report.rows += chunk.count;
+        report.rejected += chunk.rejected;
+        for (String error : chunk.errors) {
+            if (report.errors.size() < MAX_ERRORS_KEPT) {
+                report.errors.add(error);
+            }
+        }
+    }
+
+    private Chunk parse(String[] lines, int count, long firstLine, int[] columns) {
+        Chunk chunk = new Chunk(count);
+        for (int i = 0; i < count; i++) {
+            String line = lines[i];
+            if (line.isBlank()) {
+                continue;
+            }
+            String category, name, price, description;
+            if (columns == null) {
+                HashMap<String, String> fields = parseJsonObject(line);
+                if (fields == null) {
+                    chunk.reject(firstLine + i, "not a flat JSON object");
+                    continue;
+                }
+                category = fields.get("category");
+                name = fields.get("name");
+                price = fields.get("price");
+                description = fields.get("description");
+            } else {
+                String[] fields = parseCsvLine(line);
+                category = field(fields, columns[0]);
+                name = field(fields, columns[1]);
+                price = field(fields, columns[2]);
+                description = columns[3] < 0 ? null : field(fields, columns[3]);
+            }
+            String error = validate(chunk, category, name, price, description);
+            if (error != null) {
+                chunk.reject(firstLine + i, error);
+            }
+        }
+        return chunk;
+    }
+
+    private String validate(Chunk chunk, String category, String name, String price, String description) {
+        if (category == null || name == null || price == null) {
+            return "missing category, name or price";
+        }
+        category = category.trim();
+        name = name.trim();
+        if (name.isEmpty()) {
+            return "empty name";
+        }
+        if (knownCategories != null && !knownCategories.contains(category)) {
+            return "unknown category \"" + category + "\"";
+        }
+        Money money;
+        try {
+            money = Money.parse(price, currency);
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+        if (money.currency() != currency) {
+            return "price " + price + " is not in " + currency;
+        }
+        if (!money.isPositive()) {
+            return "price must be positive: " + price;
+        }
+        chunk.add(category, name, description == null ? "" : description.trim(), money.minor());
+        return null;
+    }
+
+    private static class Chunk {
+        final String[] categories;
+        final String[] names;
+        final String[] descriptions;
+        final long[] prices;
+        int count;
+        int rejected;
+        final List<String> errors = new ArrayList<>();
+
+        Chunk(int capacity) {
+            categories = new String[capacity];
+            names = new String[capacity];
+            descriptions = new String[capacity];
+            prices = new long[capacity];
+        }
+
+        void add(String category, String name, String description, long price) {
+            categories[count] = category;
+            names[count] = name;
+            descriptions[count] = description;
+            prices[count] = price;
+            count++;
+        }
+
+        void reject(long line, String error) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS_KEPT) {
+                errors.add("line " + line + ": " + error);
+            }
+        }
+    }
+
+    private static int[] csvColumns(String header) throws IOException {
+        String[] names = parseCsvLine(header);
+        int[] columns = {-1, -1, -1, -1};
+        for (int i = 0; i < names.length; i++) {
+            switch (names[i].trim().toLowerCase()) {
+                case "category": columns[0] = i; break;
+                case "name": columns[1] = i; break;
+                case "price": columns[2] = i; break;
+                case "description": columns[3] = i; break;
+            }
+        }
+        if (columns[0] < 0 || columns[1] < 0 || columns[2] < 0) {
+            throw new IOException("CSV header must name category, name and price columns: " + header);
+        }
+        return columns;
+    }
+
+    private static String field(String[] fields, int column) {
+        return column < fields.length ? fields[column] : null;
+    }
+
+    static String[] parseCsvLine(String line) {
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /** Parses one flat JSON object of string and number members; returns null if the line is malformed. */
+    static HashMap<String, String> parseJsonObject(String line) {
+        HashMap<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpaces(line, 0)};
+        if (pos[0] >= line.length() || line.charAt(pos[0]) != '{') return null;
+        pos[0] = skipSpaces(line, pos[0] + 1);
+        if (pos[0] < line.length() && line.charAt(pos[0]) == '}') return fields;
+        while (pos[0] < line.length()) {
+            String key = jsonString(line, pos);
+            if (key == null) return null;
+            pos[0] = skipSpaces(line, pos[0]);
+            if (pos[0] >= line.length() || line.charAt(pos[0]) != ':') return null;
+            pos[0] = skipSpaces(line, pos[0] + 1);
+            String value;
+            if (pos[0] < line.length() && line.charAt(pos[0]) == '"') {
+                value = jsonString(line, pos);
+                if (value == null) return null;
+            } else {
+                int end = pos[0];
+                while (end < line.length() && ",} \t".indexOf(line.charAt(end)) < 0) end++;
+                value = line.substring(pos[0], end);
+                pos[0] = end;
+            }
+            fields.put(key, value);
+            pos[0] = skipSpaces(line, pos[0]);
+            if (pos[0] >= line.length()) return null;
+            char c = line.charAt(pos[0]);
+            if (c == '}') return fields;
+            if (c != ',') return null;
+            pos[0] = skipSpaces(line, pos[0] + 1);
+        }
+        return null;
+    }
+
+    private static String jsonString(String line, int[] pos) {
+        int i = pos[0];
+        if (i >= line.length() || line.charAt(i) != '"') return null;
+        StringBuilder sb = new StringBuilder();
+        for (i++; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                pos[0] = i + 1;
+                return sb.toString();
+            }
+            if (c == '\\' && i + 1 < line.length()) {
+                char e = line.charAt(++i);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (i + 4 >= line.length()) return null;
+                        int code = 0;
+                        for (int k = i + 1; k <= i + 4; k++) {
+                            int digit = Character.digit(line.charAt(k), 16);
+                            if (digit < 0) return null;
+                            code = code * 16 + digit;
+                        }
+                        sb.append((char) code);
+                        i += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return null;
+    }
+
+    private static int skipSpaces(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) i++;
+        return i;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java FeedImporter <feed.csv|feed.jsonl> <catalog.bin>");
+            System.exit(2);
+        }
+        CatalogStore store = new CatalogStore(Money.Currency.INR);
+        Report report = new FeedImporter(null, Money.Currency.INR).importInto(Paths.get(args[0]), store);
+        System.out.println(report);
+        for (String error : report.errors) {
+            System.out.println("  " + error);
+        }
+        CatalogSnapshot catalog = store.snapshot();
+        CatalogFile.write(catalog, Paths.get(args[1]));
+        System.out.println("Wrote " + catalog.size() + " products in " + catalog.categoryCount() + " categories to " + args[1]);
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+/*
+ * Typo-tolerant search over the words of product names.
+ *
+ * The distinct normalized words (see SearchKeys) of all names form a dictionary, and the dictionary is arranged as a
+ * BK-tree under Levenshtein distance. A lookup for "hedphones" only visits the subtrees whose edge
+ * distance lies within the allowed number of edits of the query word, so it touches a small part
+ * of the dictionary and never reads a product name. Each dictionary word keeps the ascending ids of
+ * the products that contain it.
+ *
+ * A query matches a product when every query word is within the allowed distance of some word of
+ * its name; results are ranked by the total number of edits, fewest first.
+ */
+final class FuzzyIndex {
+    private final String[] terms;
+    private final int[][] postings;
+
+    // BK-tree: node i holds terms[i]; children form a linked list tagged with their edge distance
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] edge;
+
+    private FuzzyIndex(String[] terms, int[][] postings) {
+        this.terms = terms;
+        this.postings = postings;
+        firstChild = new int[terms.length];
+        nextSibling = new int[terms.length];
+        edge = new int[terms.length];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        for (int i = 1; i < terms.length; i++) {
+            insert(i);
+        }
+    }
+
+    static FuzzyIndex build(Catalog catalog) {
+        return build(catalog::name, catalog.size());
+    }
+
+    /** Builds an index over count names; the name at position id is reported as product id. */
+    static FuzzyIndex build(IntFunction<String> names, int count) {
+        HashMap<String, Integer> termIds = new HashMap<>();
+        ArrayList<String> terms = new ArrayList<>();
+        ArrayList<int[]> lists = new ArrayList<>();
+        int[] counts = new int[16];
+        for (int id = 0; id < count; id++) {
+            for (String word : SearchKeys.words(names.apply(id))) {
+                Integer term = termIds.get(word);
+                if (term == null) {
+                    term = terms.size();
+                    termIds.put(word, term);
+                    terms.add(word);
+                    lists.add(new int[2]);
+                    if (term == counts.length) {
+                        counts = Arrays.copyOf(counts, term * 2);
+                    }
+                }
+                int[] ids = lists.get(term);
+                int n = counts[term];
+                if (n > 0 && ids[n - 1] == id) {
+                    continue;
+                }
+                if (n == ids.length) {
+                    ids = Arrays.copyOf(ids, n * 2);
+                    lists.set(term, ids);
+                }
+                ids[n] = id;
+                counts[term] = n + 1;
+            }
+        }
+        int[][] postings = new int[terms.size()][];
+        for (int t = 0; t < postings.length; t++) {
+            postings[t] = Arrays.copyOf(lists.get(t), counts[t]);
+        }
+        return new FuzzyIndex(terms.toArray(new String[0]), postings);
+    }
+
+    /** Edits allowed for a query word: none for very short words, one for short ones, two otherwise. */
+    static int maxDistance(String word) {
+        if (word.length() < 3) return 0;
+        if (word.length() < 6) return 1;
+        return 2;
+    }
+
+    /**
+     * Returns the ids of products below catalogSize matching every word of the query within its
+     * allowed distance, fewest total edits first and then by id.
+     */
+    int[] search(String query, int catalogSize) {
+        String[] queryWords = SearchKeys.words(query);
+        if (queryWords.length == 0 || terms.length == 0) {
+            return new int[0];
+        }
+
+        // ids ascending, each with its total edits so far
+        int[] ids = null;
+        int[] edits = null;
+        for (String word : queryWords) {
+            long[] matches = lookup(word, catalogSize);
+            if (ids == null) {
+                ids = new int[matches.length];
+                edits = new int[matches.length];
+                int n = 0;
+                for (long match : matches) {
+                    int id = (int) (match >>> 8);
+                    if (n > 0 && ids[n - 1] == id) continue; // sorted so the smallest distance came first
+                    ids[n] = id;
+                    edits[n++] = (int) (match & 0xFF);
+                }
+                ids = Arrays.copyOf(ids, n);
+                edits = Arrays.copyOf(edits, n);
+            } else {
+                int kept = 0;
+                int m = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    while (m < matches.length && (int) (matches[m] >>> 8) < ids[i]) m++;
+                    if (m < matches.length && (int) (matches[m] >>> 8) == ids[i]) {
+                        ids[kept] = ids[i];
+                        edits[kept++] = edits[i] + (int) (matches[m] & 0xFF);
+                    }
+                }
+                ids = Arrays.copyOf(ids, kept);
+                edits = Arrays.copyOf(edits, kept);
+            }
+            if (ids.length == 0) {
+                return ids;
+            }
+        }
+
+        long[] ranked = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ranked[i] = ((long) edits[i] << 32) | ids[i];
+        }
+        Arrays.sort(ranked);
+        int[] results = new int[ranked.length];
+        for (int i = 0; i < ranked.length; i++) {
+            results[i] = (int) ranked[i];
+        }
+        return results;
+    }
+
+    // Products below catalogSize containing a word within the allowed distance, as (id << 8 | distance)
+    // sorted by id and then distance
+    private long[] lookup(String word, int catalogSize) {
+        int max = maxDistance(word);
+        long[] matches = new long[16];
+        int found = 0;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int d = distance(word, terms[node], max + maxSpread(node));
+            if (d <= max) {
+                for (int id : postings[node]) {
+                    if (id >= catalogSize) break;
+                    if (found == matches.length) matches = Arrays.copyOf(matches, found * 2);
+                    matches[found++] = ((long) id << 8) | d;
+                }
+            }
+            for (int c = firstChild[node]; c != -1; c = nextSibling[c]) {
+                if (Math.abs(edge[c] - d) <= max) {
+                    if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                    stack[top++] = c;
+                }
+            }
+        }
+        matches = Arrays.copyOf(matches, found);
+        Arrays.sort(matches);
+        return matches;
+    }
+
+    /** Number of distinct words, for diagnostics. */
+    int termCount() {
+        return terms.length;
+    }
+
+    private void insert(int term) {
+        int node = 0;
+        while (true) {
+            int d = distance(terms[term], terms[node], Math.max(terms[term].length(), terms[node].length()));
+            int child = firstChild[node];
+            while (child != -1 && edge[child] != d) {
+                child = nextSibling[child];
+            }
+            if (child == -1) {
+                edge[term] = d;
+                nextSibling[term] = firstChild[node];
+                firstChild[node] = term;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    // Largest edge below a node; the exact distance is only needed up to max + this to prune children
+    private int maxSpread(int node) {
+        int spread = 0;
+        for (int c = firstChild[node]; c != -1; c = nextSibling[c]) {
+            spread = Math.max(spread, edge[c]);
+        }
+        return spread;
+    }
+
+    /**
+     * Levenshtein distance between a and b, or limit + 1 as soon as it is known to exceed limit.
+     * Only the diagonal band of width 2 * limit + 1 is filled in.
+     */
+    static int distance(String a, String b, int limit) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > limit) {
+            return limit + 1;
+        }
+        int band = Math.min(limit, Math.max(n, m));
+        int[] previous = new int[m + 1];
+        int[] row = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - band);
+            int to = Math.min(m, i + band);
+            row[0] = i;
+            if (from > 1) row[from - 1] = Integer.MAX_VALUE / 2;
+            int rowMin = from == 1 ? i : Integer.MAX_VALUE;
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], row[j - 1]) + 1);
+                row[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < m) row[to + 1] = Integer.MAX_VALUE / 2;
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] t = previous;
+            previous = row;
+            row = t;
+        }
+        return Math.min(previous[m], limit + 1);
+    }
+}
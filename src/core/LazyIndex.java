@@ -0,0 +1,112 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/*
+ * An index that is rebuilt in the background whenever the catalog version changes.
+ *
+ * get() never waits for a build: it returns the most recent index built for the lineage of the
+ * version asked about (ids still mean the same products, only the newest additions may be missing)
+ * and, if the index is behind the current version, schedules one rebuild on the given executor. It
+ * returns null when there is no such index: before the first build for that lineage has finished,
+ * or when the index was built from another lineage or from a later version than the one asked
+ * about, whose ids the caller's catalog may not have. invalidate() marks the index out of date for
+ * an input the catalog version does not cover, such as the popularity counts a suggestion trie
+ * ranks by.
+ *
+ * An index a caller builds itself (because get() had none, or to bring a stale one up to date) can
+ * be handed back with offer(), so the next get() for that version returns it instead of the caller
+ * building it again.
+ */
+class LazyIndex<T> {
+    private static final class Built<T> {
+        final T index;
+        final long version;
+        final long lineage;
+        final long generation;
+
+        Built(T index, long version, long lineage, long generation) {
+            this.index = index;
+            this.version = version;
+            this.lineage = lineage;
+            this.generation = generation;
+        }
+
+        // Whether this index is newer than other and should replace it
+        boolean supersedes(Built<?> other) {
+            return other == null || version > other.version || (version == other.version && generation > other.generation);
+        }
+    }
+
+    private final Function<Catalog, T> builder;
+    private final Executor executor;
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<Built<T>> built = new AtomicReference<>();
+
+    LazyIndex(Function<Catalog, T> builder, Executor executor) {
+        this.builder = builder;
+        this.executor = executor;
+    }
+
+    /** The index for the current version, as get(catalogs, catalogs.current()). */
+    T get(VersionedCatalog catalogs) {
+        return get(catalogs, catalogs.current());
+    }
+
+    /** The latest index usable with version (see above), or null; schedules a rebuild if it is behind. */
+    T get(VersionedCatalog catalogs, VersionedCatalog.Version version) {
+        VersionedCatalog.Version current = catalogs.current();
+        Built<T> last = built.get();
+        boolean outdated = last == null || last.version != current.number || last.generation != generation.get();
+        if (outdated && building.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    long inputs = generation.get();
+                    VersionedCatalog.Version latest = catalogs.current();
+                    install(new Built<>(builder.apply(latest.catalog), latest.number, latest.lineage, inputs));
+                } finally {
+                    building.set(false);
+                }
+            });
+        }
+        return last != null && last.lineage == version.lineage && last.version <= version.number ? last.index : null;
+    }
+
+    /**
+     * Keeps index, built by the caller from exactly version, for later get() calls unless a newer one
+     * is already there; returns index either way.
+     */
+    T offer(T index, VersionedCatalog.Version version) {
+        install(new Built<>(index, version.number, version.lineage, generation.get()));
+        return index;
+    }
+
+    /**
+     * Marks the index out of date although the catalog has not changed; the next get() schedules a
+     * rebuild and keeps returning the current index until it is done. Many calls before that rebuild
+     * starts cost one rebuild.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /** Whether the index get() returns was built from exactly this version. */
+    boolean isCurrent(VersionedCatalog.Version version) {
+        Built<T> last = built.get();
+        return last != null && last.version == version.number;
+    }
+
+    // A build that finishes after a newer one was offered is dropped
+    private void install(Built<T> next) {
+        Built<T> last;
+        do {
+            last = built.get();
+            if (!next.supersedes(last)) {
+                return;
+            }
+        } while (!built.compareAndSet(last, next));
+    }
+}
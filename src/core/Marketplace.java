@@ -0,0 +1,31 @@
+import java.nio.file.Path;
+
+/*
+ * The marketplace engine: the catalog, search, cart, checkout and order services wired together.
+ *
+ * This is the whole of marketplace-core's surface. It has no Swing or AWT dependency, so the
+ * desktop apps, a server or a benchmark create one and call it from any thread:
+ *
+ *   Marketplace market = new Marketplace(Money.Currency.INR, null);
+ *   market.catalog.openSample();
+ *   SearchService.Result found = market.search.search("phone", Map.of(), SearchService.SORT_RELEVANCE);
+ *   Cart cart = market.carts.cart("session-1");
+ *   market.carts.add(cart, found.version, found.rowAt(0), 1);
+ *   Order order = market.checkout.checkout(cart);
+ */
+final class Marketplace {
+    final CatalogService catalog;
+    final SearchService search;
+    final CartService carts;
+    final OrderService orders;
+    final CheckoutService checkout;
+
+    /** orderLog may be null to keep orders in memory only. */
+    Marketplace(Money.Currency currency, Path orderLog) {
+        this.catalog = new CatalogService(currency);
+        this.search = new SearchService(catalog);
+        this.carts = new CartService(catalog);
+        this.orders = new OrderService(orderLog);
+        this.checkout = new CheckoutService(orders);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Immutable fixed-point amount of money.
+ *
+ * The amount is held as a long count of minor units (paise, cents) together with its currency, so
+ * totals are exact integer arithmetic with no double rounding. Prices are parsed once when a
+ * product is loaded, and the display string is built the first time it is needed and then reused.
+ */
+final class Money implements Comparable<Money> {
+
+    enum Currency {
+        INR("₹", false),
+        USD("$", true);
+
+        final String symbol;
+        final boolean showZeroFraction;
+
+        Currency(String symbol, boolean showZeroFraction) {
+            this.symbol = symbol;
+            this.showZeroFraction = showZeroFraction;
+        }
+    }
+
+    private static final long MAX_UNITS = Long.MAX_VALUE / 100 - 1;
+
+    private final long minor;
+    private final Currency currency;
+    private String formatted;
+
+    private Money(long minor, Currency currency) {
+        this.minor = minor;
+        this.currency = currency;
+    }
+
+    static Money of(long minor, Currency currency) {
+        return new Money(minor, currency);
+    }
+
+    static Money zero(Currency currency) {
+        return new Money(0, currency);
+    }
+
+    /** Parses "₹14999", "$59.99", "Rs 1,299.5" or a bare "49.99"; bare amounts use the given currency. */
+    static Money parse(String text, Currency defaultCurrency) {
+        Currency currency = defaultCurrency;
+        int i = 0;
+        int length = text.length();
+        while (i < length && text.charAt(i) == ' ') i++;
+
+        boolean negative = false;
+        if (i < length && text.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (text.startsWith("₹", i)) {
+            currency = Currency.INR;
+            i += 1;
+        } else if (text.startsWith("Rs", i)) {
+            currency = Currency.INR;
+            i += 2;
+        } else if (text.startsWith("$", i)) {
+            currency = Currency.USD;
+            i += 1;
+        }
+
+        long units = 0;
+        long fraction = 0;
+        int fractionDigits = -1;
+        int digits = 0;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (fractionDigits < 0) {
+                    units = units * 10 + (c - '0');
+                    if (units > MAX_UNITS) {
+                        throw new NumberFormatException("Price out of range: " + text);
+                    }
+                } else if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (c - '0');
+                    fractionDigits++;
+                } else {
+                    throw new NumberFormatException("Too many decimal places: " + text);
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c != ',' && c != ' ') {
+                throw new NumberFormatException("Not a price: " + text);
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not a price: " + text);
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long minor = units * 100 + fraction;
+        return new Money(negative ? -minor : minor, currency);
+    }
+
+    long minor() {
+        return minor;
+    }
+
+    Currency currency() {
+        return currency;
+    }
+
+    boolean isPositive() {
+        return minor > 0;
+    }
+
+    Money plus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.addExact(minor, other.minor), currency);
+    }
+
+    Money minus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.subtractExact(minor, other.minor), currency);
+    }
+
+    Money times(int quantity) {
+        return new Money(Math.multiplyExact(minor, quantity), currency);
+    }
+
+    /** Returns the display form, e.g. "₹14999" or "$59.99". Built once per instance. */
+    String format() {
+        String text = formatted;
+        if (text == null) {
+            long abs = Math.abs(minor);
+            long cents = abs % 100;
+            StringBuilder sb = new StringBuilder(16);
+            if (minor < 0) sb.append('-');
+            sb.append(currency.symbol).append(abs / 100);
+            if (cents != 0 || currency.showZeroFraction) {
+                sb.append('.');
+                if (cents < 10) sb.append('0');
+                sb.append(cents);
+            }
+            text = sb.toString();
+            formatted = text;
+        }
+        return text;
+    }
+
+    private void checkCurrency(Money other) {
+        if (other.currency != currency) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return minor == other.minor && currency == other.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minor) * 31 + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
@@ -0,0 +1,80 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A placed order: what was in the cart when it was checked out, any extra charges (gift wrap,
+ * shipping) and the buyer's instructions. Immutable; the total is computed once.
+ */
+final class Order {
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** One product of the order, copied from a cart line. */
+    static final class Line {
+        final String name;
+        final Money unitPrice;
+        final int quantity;
+        final Money total;
+
+        Line(String name, Money unitPrice, int quantity) {
+            this.name = name;
+            this.unitPrice = unitPrice;
+            this.quantity = quantity;
+            this.total = unitPrice.times(quantity);
+        }
+    }
+
+    final long id;
+    final LocalDateTime placedAt;
+    final List<Line> lines;
+    // Label to amount, in the order they were added
+    final Map<String, Money> charges;
+    final String instructions;
+    final Money itemTotal;
+    final Money total;
+
+    Order(long id, LocalDateTime placedAt, List<Line> lines, Map<String, Money> charges, String instructions) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("An order needs at least one line");
+        }
+        this.id = id;
+        this.placedAt = placedAt;
+        this.lines = List.copyOf(lines);
+        this.charges = Collections.unmodifiableMap(new LinkedHashMap<>(charges));
+        this.instructions = instructions == null ? "" : instructions;
+        Money items = Money.zero(lines.get(0).unitPrice.currency());
+        for (Line line : lines) {
+            items = items.plus(line.total);
+        }
+        Money sum = items;
+        for (Money charge : charges.values()) {
+            sum = sum.plus(charge);
+        }
+        this.itemTotal = items;
+        this.total = sum;
+    }
+
+    Money.Currency currency() {
+        return total.currency();
+    }
+
+    /** The order as the text block appended to the order log. */
+    String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("Order: ").append(id).append('\n');
+        text.append("Order Date: ").append(DATE_FORMAT.format(placedAt)).append('\n');
+        for (Line line : lines) {
+            text.append("Item: ").append(line.name).append('\n');
+            text.append("Quantity: ").append(line.quantity).append('\n');
+            text.append("Total: ").append(line.total).append('\n');
+        }
+        charges.forEach((label, amount) -> text.append(label).append(": ").append(amount).append('\n'));
+        text.append("Order Total: ").append(total).append('\n');
+        text.append("Special Instructions: ").append(instructions).append('\n');
+        text.append("---------------------------------------------\n\n");
+        return text.toString();
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Places orders and keeps them: every order gets the next id, is appended to the order log (a
+ * plain text file, one block per order, see Order.toText()) and can be looked up by id afterwards.
+ *
+ * Thread-safe. Ids come from an atomic counter and lookups from a concurrent map; only the append
+ * to the log is serialized, on one writer that stays open and is flushed after every order, so an
+ * order is on disk when place() returns.
+ *
+ * This is an in-memory demo store: every order placed stays in the map, unbounded, for the life of
+ * the process, and nothing is read back from the log on startup, so ids start again at 1 and earlier
+ * orders cannot be found after a restart. The log is a record for people, not a database; a
+ * deployment that takes real orders keeps them in one instead.
+ */
+final class OrderService implements Closeable {
+    private final Path log;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ConcurrentHashMap<Long, Order> orders = new ConcurrentHashMap<>();
+    private BufferedWriter writer;
+
+    /** log may be null to keep orders in memory only. */
+    OrderService(Path log) {
+        this.log = log;
+    }
+
+    /** Places an order; if it cannot be written to the log it is not placed and the IOException is thrown. */
+    Order place(List<Order.Line> lines, Map<String, Money> charges, String instructions) throws IOException {
+        Order order = new Order(nextId.getAndIncrement(), LocalDateTime.now(), lines, charges, instructions);
+        if (log != null) {
+            append(order.toText());
+        }
+        orders.put(order.id, order);
+        return order;
+    }
+
+    /** The order with this id, or null. */
+    Order find(long id) {
+        return orders.get(id);
+    }
+
+    /** The orders placed so far, by id. */
+    List<Order> orders() {
+        List<Order> all = new ArrayList<>(orders.values());
+        all.sort((a, b) -> Long.compare(a.id, b.id));
+        return all;
+    }
+
+    int count() {
+        return orders.size();
+    }
+
+    private synchronized void append(String text) throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(log, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        writer.write(text);
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/*
+ * Runs a search over product ids as fork-join tasks, one per fixed-size shard of the id range.
+ *
+ * The id range is split in halves until each piece is at most SHARD_SIZE ids, every shard is
+ * searched on its own with its own scratch state, and the partial results are merged pairwise on
+ * the way back up (for ranked searches, each merge keeps only the best k). Catalogs of up to
+ * SEQUENTIAL_LIMIT products, or a null pool, search the whole range on the calling thread, where
+ * the cost of forking would outweigh the work.
+ */
+final class ParallelSearch {
+    static final int SHARD_SIZE = 1 << 16;
+    static final int SEQUENTIAL_LIMIT = 2 * SHARD_SIZE;
+
+    /** Searches the ids from lo (inclusive) to hi (exclusive). */
+    interface Shard<R> {
+        R search(int lo, int hi);
+    }
+
+    private ParallelSearch() {
+    }
+
+    static <R> R run(ForkJoinPool pool, int size, Shard<R> shard, BinaryOperator<R> merge) {
+        if (pool == null || size <= SEQUENTIAL_LIMIT) {
+            return shard.search(0, size);
+        }
+        return pool.invoke(new Task<>(0, size, shard, merge));
+    }
+
+    private static final class Task<R> extends RecursiveTask<R> {
+        private final int lo, hi;
+        private final Shard<R> shard;
+        private final BinaryOperator<R> merge;
+
+        Task(int lo, int hi, Shard<R> shard, BinaryOperator<R> merge) {
+            this.lo = lo;
+            this.hi = hi;
+            this.shard = shard;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (hi - lo <= SHARD_SIZE) {
+                return shard.search(lo, hi);
+            }
+            // Split on a shard boundary so shards line up with Bitmap chunks
+            int mid = lo + ((hi - lo) / 2 + SHARD_SIZE - 1) / SHARD_SIZE * SHARD_SIZE;
+            Task<R> left = new Task<>(lo, mid, shard, merge);
+            left.fork();
+            R right = new Task<>(mid, hi, shard, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+}
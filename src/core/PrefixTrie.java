@@ -0,0 +1,301 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Immutable, array-encoded radix trie of product names for type-ahead suggestions.
+ *
+ * Each distinct name is inserted once from the start of every word, so "smar" and "phon" both reach
+ * "Smartphone Case". Nodes are stored in parallel int arrays with the children of a node packed next
+ * to each other in label order, and every node keeps the ids of its best suggestions ranked by
+ * popularity, so a lookup walks at most the length of the prefix and then copies a short list.
+ *
+ * Keys are not copied: a key is a packed (entry, offset) reference into one char arena holding the
+ * normalized names (see SearchKeys).
+ */
+final class PrefixTrie {
+    static final int TOP_K = 8;
+
+    private static final int MAX_OFFSET = 0xFFFF;
+
+    private final String[] display;
+    private final int[] score;
+    private final char[] arena;
+    private final int[] entryStart;
+
+    private int nodeCount;
+    private long[] nodeKey = new long[64];
+    private int[] nodeFrom = new int[64];
+    private int[] nodeTo = new int[64];
+    private int[] firstChild = new int[64];
+    private int[] childCount = new int[64];
+    private int[] topStart = new int[64];
+    private int[] topCount = new int[64];
+    private int[] tops = new int[256];
+    private int topsSize;
+
+    private PrefixTrie(String[] display, int[] score, char[] arena, int[] entryStart) {
+        this.display = display;
+        this.score = score;
+        this.arena = arena;
+        this.entryStart = entryStart;
+    }
+
+    /**
+     * Builds a trie over the names of a catalog. popularity gives a score per normalized name (for
+     * example how often it was added to a cart) and may be empty; ties go to the shorter name.
+     */
+    static PrefixTrie build(Catalog catalog, Map<String, Integer> popularity) {
+        HashMap<String, Integer> entries = new HashMap<>();
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> keys = new ArrayList<>();
+        for (int id = 0; id < catalog.size(); id++) {
+            String name = catalog.name(id);
+            String key = SearchKeys.normalize(name);
+            if (entries.putIfAbsent(key, names.size()) == null) {
+                names.add(name);
+                keys.add(key);
+            }
+        }
+
+        int count = names.size();
+        int[] entryStart = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            entryStart[i + 1] = entryStart[i] + keys.get(i).length();
+        }
+        char[] arena = new char[entryStart[count]];
+        int[] score = new int[count];
+        int refCount = 0;
+        for (int i = 0; i < count; i++) {
+            String key = keys.get(i);
+            key.getChars(0, key.length(), arena, entryStart[i]);
+            score[i] = popularity.getOrDefault(key, 0);
+            refCount += wordStarts(key);
+        }
+
+        long[] refs = new long[refCount];
+        int r = 0;
+        for (int i = 0; i < count; i++) {
+            String key = keys.get(i);
+            for (int offset = 0; offset < key.length() && offset <= MAX_OFFSET; offset++) {
+                if (isWordStart(key, offset)) {
+                    refs[r++] = ((long) i << 16) | offset;
+                }
+            }
+        }
+        refs = Arrays.copyOf(refs, r);
+
+        PrefixTrie trie = new PrefixTrie(names.toArray(new String[0]), score, arena, entryStart);
+        trie.sort(refs, 0, refs.length, 0);
+        if (refs.length > 0) {
+            int root = trie.newNodes(1);
+            trie.buildNode(root, refs, 0, refs.length, 0);
+        }
+        return trie;
+    }
+
+    /** Returns up to limit names starting with the prefix (at a word boundary), best first. */
+    List<String> suggest(String prefix, int limit) {
+        String query = SearchKeys.normalize(prefix);
+        ArrayList<String> result = new ArrayList<>();
+        if (nodeCount == 0) {
+            return result;
+        }
+        int node = 0;
+        int pos = 0;
+        while (true) {
+            int from = nodeFrom[node];
+            int to = nodeTo[node];
+            for (int d = from; d < to && pos < query.length(); d++, pos++) {
+                if (charAt(nodeKey[node], d) != query.charAt(pos)) {
+                    return result;
+                }
+            }
+            if (pos == query.length()) {
+                break;
+            }
+            node = findChild(node, query.charAt(pos));
+            if (node < 0) {
+                return result;
+            }
+        }
+        int n = Math.min(limit, topCount[node]);
+        for (int i = 0; i < n; i++) {
+            result.add(display[tops[topStart[node] + i]]);
+        }
+        return result;
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    private int findChild(int node, char c) {
+        int lo = firstChild[node];
+        int hi = lo + childCount[node] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midChar = charAt(nodeKey[mid], nodeFrom[mid]);
+            if (midChar < c) lo = mid + 1;
+            else if (midChar > c) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // Node covers refs[lo, hi), all sharing their first depth characters
+    private void buildNode(int node, long[] refs, int lo, int hi, int depth) {
+        int end = depth;
+        long first = refs[lo];
+        long last = refs[hi - 1];
+        while (charAt(first, end) >= 0 && charAt(first, end) == charAt(last, end)) {
+            end++;
+        }
+        nodeKey[node] = first;
+        nodeFrom[node] = depth;
+        nodeTo[node] = end;
+
+        // Keys that end exactly here sort first
+        int terminalEnd = lo;
+        while (terminalEnd < hi && charAt(refs[terminalEnd], end) < 0) {
+            terminalEnd++;
+        }
+
+        int groups = 0;
+        for (int i = terminalEnd; i < hi; ) {
+            int c = charAt(refs[i], end);
+            while (i < hi && charAt(refs[i], end) == c) i++;
+            groups++;
+        }
+        int children = newNodes(groups);
+        firstChild[node] = children;
+        childCount[node] = groups;
+        int child = children;
+        for (int i = terminalEnd; i < hi; ) {
+            int c = charAt(refs[i], end);
+            int start = i;
+            while (i < hi && charAt(refs[i], end) == c) i++;
+            buildNode(child++, refs, start, i, end);
+        }
+
+        collectTop(node, refs, lo, terminalEnd, children, groups);
+    }
+
+    private void collectTop(int node, long[] refs, int lo, int terminalEnd, int children, int groups) {
+        // Each key is terminal at exactly one node, so ranking terminals here costs O(n log n) overall
+        Integer[] terminals = new Integer[terminalEnd - lo];
+        for (int i = lo; i < terminalEnd; i++) {
+            terminals[i - lo] = (int) (refs[i] >>> 16);
+        }
+        Arrays.sort(terminals, this::compareEntries);
+
+        int[] candidates = new int[Math.min(TOP_K, terminals.length) + groups * TOP_K];
+        int n = 0;
+        for (int i = 0; i < terminals.length && i < TOP_K; i++) {
+            n = addCandidate(candidates, n, terminals[i]);
+        }
+        for (int c = children; c < children + groups; c++) {
+            for (int i = 0; i < topCount[c]; i++) {
+                n = addCandidate(candidates, n, tops[topStart[c] + i]);
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = candidates[i];
+        Arrays.sort(order, this::compareEntries);
+
+        int k = Math.min(TOP_K, n);
+        if (topsSize + k > tops.length) {
+            tops = Arrays.copyOf(tops, Math.max(tops.length * 2, topsSize + k));
+        }
+        topStart[node] = topsSize;
+        topCount[node] = k;
+        for (int i = 0; i < k; i++) {
+            tops[topsSize++] = order[i];
+        }
+    }
+
+    // Most popular first, then shorter names
+    private int compareEntries(int a, int b) {
+        if (score[a] != score[b]) {
+            return Integer.compare(score[b], score[a]);
+        }
+        return Integer.compare(entryLength(a), entryLength(b));
+    }
+
+    private static int addCandidate(int[] candidates, int n, int entry) {
+        for (int i = 0; i < n; i++) {
+            if (candidates[i] == entry) return n;
+        }
+        candidates[n] = entry;
+        return n + 1;
+    }
+
+    private int newNodes(int count) {
+        int first = nodeCount;
+        nodeCount += count;
+        if (nodeCount > nodeKey.length) {
+            int capacity = Math.max(nodeKey.length * 2, nodeCount);
+            nodeKey = Arrays.copyOf(nodeKey, capacity);
+            nodeFrom = Arrays.copyOf(nodeFrom, capacity);
+            nodeTo = Arrays.copyOf(nodeTo, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            topStart = Arrays.copyOf(topStart, capacity);
+            topCount = Arrays.copyOf(topCount, capacity);
+        }
+        return first;
+    }
+
+    private int entryLength(int entry) {
+        return entryStart[entry + 1] - entryStart[entry];
+    }
+
+    // Character d of the key, or -1 past its end
+    private int charAt(long ref, int d) {
+        int entry = (int) (ref >>> 16);
+        int pos = entryStart[entry] + (int) (ref & 0xFFFF) + d;
+        return pos < entryStart[entry + 1] ? arena[pos] : -1;
+    }
+
+    // Multikey quicksort of key references, comparing from character depth onwards
+    private void sort(long[] refs, int lo, int hi, int depth) {
+        while (hi - lo > 1) {
+            int pivot = charAt(refs[lo + (hi - lo) / 2], depth);
+            int lt = lo, gt = hi - 1, i = lo;
+            while (i <= gt) {
+                int c = charAt(refs[i], depth);
+                if (c < pivot) swap(refs, lt++, i++);
+                else if (c > pivot) swap(refs, i, gt--);
+                else i++;
+            }
+            sort(refs, lo, lt, depth);
+            sort(refs, gt + 1, hi, depth);
+            if (pivot < 0) {
+                return;
+            }
+            lo = lt;
+            hi = gt + 1;
+            depth++;
+        }
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private static int wordStarts(String key) {
+        int count = 0;
+        for (int i = 0; i < key.length() && i <= MAX_OFFSET; i++) {
+            if (isWordStart(key, i)) count++;
+        }
+        return count;
+    }
+
+    private static boolean isWordStart(String key, int i) {
+        return Character.isLetterOrDigit(key.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(key.charAt(i - 1)));
+    }
+}
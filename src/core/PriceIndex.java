@@ -0,0 +1,289 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntPredicate;
+
+/*
+ * Per-category price index for range queries and price-sorted listings.
+ *
+ * Each category keeps its product ids permuted into price order, next to a parallel long[] of the
+ * prices, so a range query is two binary searches followed by a walk over exactly the k results.
+ * New products go into a small sorted delta run instead of the large run; a query merges the two
+ * runs as it walks, and the delta is folded into the main run once it reaches MAX_DELTA entries, so
+ * an add costs O(MAX_DELTA) most of the time.
+ *
+ * A PriceIndex never changes: add() returns a new index that shares every untouched run with the
+ * old one, so each catalog version can carry its own index and readers need no locks.
+ */
+final class PriceIndex {
+    static final int MAX_DELTA = 1024;
+
+    private final HashMap<String, Run> runs;
+
+    private PriceIndex(HashMap<String, Run> runs) {
+        this.runs = runs;
+    }
+
+    static PriceIndex build(Catalog catalog) {
+        HashMap<String, Run> runs = new HashMap<>();
+        for (int code = 0; code < catalog.categoryCount(); code++) {
+            String category = catalog.categoryName(code);
+            int[] ids = catalog.productsIn(category);
+            long[] prices = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                prices[i] = catalog.priceMinor(ids[i]);
+            }
+            sort(prices, ids);
+            runs.put(category, new Run(prices, ids, new long[0], new int[0]));
+        }
+        return new PriceIndex(runs);
+    }
+
+    /** Returns an index that also contains the given product. */
+    PriceIndex add(int id, String category, long priceMinor) {
+        HashMap<String, Run> next = new HashMap<>(runs);
+        Run run = runs.getOrDefault(category, Run.EMPTY);
+        next.put(category, run.add(id, priceMinor));
+        return new PriceIndex(next);
+    }
+
+    /**
+     * Returns up to limit products of a category priced from minMinor to maxMinor inclusive, cheapest
+     * first (most expensive first when descending); equal prices are ordered by id (reversed when
+     * descending).
+     */
+    int[] range(String category, long minMinor, long maxMinor, int limit, boolean descending) {
+        Run run = runs.get(category);
+        if (run == null || limit <= 0 || minMinor > maxMinor) {
+            return new int[0];
+        }
+        return run.range(minMinor, maxMinor, limit, descending, null);
+    }
+
+    /**
+     * As range(), keeping only the products accept passes: the walk stops at the limit-th one kept,
+     * so it costs two binary searches plus one accept call per product it passes over.
+     */
+    int[] range(String category, long minMinor, long maxMinor, int limit, boolean descending, IntPredicate accept) {
+        Run run = runs.get(category);
+        if (run == null || limit <= 0 || minMinor > maxMinor) {
+            return new int[0];
+        }
+        return run.range(minMinor, maxMinor, limit, descending, accept);
+    }
+
+    /** Number of products of every category priced from minMinor to maxMinor inclusive. */
+    int count(long minMinor, long maxMinor) {
+        int total = 0;
+        if (minMinor <= maxMinor) {
+            for (Run run : runs.values()) {
+                total += run.count(minMinor, maxMinor);
+            }
+        }
+        return total;
+    }
+
+    /** Ids of the products of every category priced from minMinor to maxMinor inclusive, in no particular order. */
+    int[] ids(long minMinor, long maxMinor) {
+        int[] ids = new int[count(minMinor, maxMinor)];
+        int n = 0;
+        if (minMinor <= maxMinor) {
+            for (Run run : runs.values()) {
+                int[] found = run.range(minMinor, maxMinor, Integer.MAX_VALUE, false, null);
+                System.arraycopy(found, 0, ids, n, found.length);
+                n += found.length;
+            }
+        }
+        return ids;
+    }
+
+    int[] cheapest(String category, int n) {
+        return range(category, Long.MIN_VALUE, Long.MAX_VALUE, n, false);
+    }
+
+    int[] mostExpensive(String category, int n) {
+        return range(category, Long.MIN_VALUE, Long.MAX_VALUE, n, true);
+    }
+
+    private static final class Run {
+        static final Run EMPTY = new Run(new long[0], new int[0], new long[0], new int[0]);
+
+        final long[] prices;
+        final int[] ids;
+        final long[] deltaPrices;
+        final int[] deltaIds;
+
+        Run(long[] prices, int[] ids, long[] deltaPrices, int[] deltaIds) {
+            this.prices = prices;
+            this.ids = ids;
+            this.deltaPrices = deltaPrices;
+            this.deltaIds = deltaIds;
+        }
+
+        Run add(int id, long price) {
+            int n = deltaIds.length;
+            int pos = lowerBound(deltaPrices, deltaIds, n, price, id);
+            long[] newPrices = new long[n + 1];
+            int[] newIds = new int[n + 1];
+            System.arraycopy(deltaPrices, 0, newPrices, 0, pos);
+            System.arraycopy(deltaIds, 0, newIds, 0, pos);
+            newPrices[pos] = price;
+            newIds[pos] = id;
+            System.arraycopy(deltaPrices, pos, newPrices, pos + 1, n - pos);
+            System.arraycopy(deltaIds, pos, newIds, pos + 1, n - pos);
+            if (n + 1 < MAX_DELTA) {
+                return new Run(prices, ids, newPrices, newIds);
+            }
+            Run full = new Run(prices, ids, newPrices, newIds);
+            long[] mergedPrices = new long[ids.length + n + 1];
+            int[] mergedIds = new int[ids.length + n + 1];
+            Cursor cursor = new Cursor(full, 0, ids.length, 0, n + 1, false);
+            for (int i = 0; i < mergedIds.length; i++) {
+                mergedIds[i] = cursor.nextId();
+                mergedPrices[i] = cursor.lastPrice;
+            }
+            return new Run(mergedPrices, mergedIds, new long[0], new int[0]);
+        }
+
+        int count(long min, long max) {
+            return upperBound(prices, ids.length, max) - lowerBound(prices, ids, ids.length, min, Integer.MIN_VALUE)
+                    + upperBound(deltaPrices, deltaIds.length, max) - lowerBound(deltaPrices, deltaIds, deltaIds.length, min, Integer.MIN_VALUE);
+        }
+
+        // accept may be null to keep every product in the range
+        int[] range(long min, long max, int limit, boolean descending, IntPredicate accept) {
+            int mainFrom = lowerBound(prices, ids, ids.length, min, Integer.MIN_VALUE);
+            int mainTo = upperBound(prices, ids.length, max);
+            int deltaFrom = lowerBound(deltaPrices, deltaIds, deltaIds.length, min, Integer.MIN_VALUE);
+            int deltaTo = upperBound(deltaPrices, deltaIds.length, max);
+            int total = (mainTo - mainFrom) + (deltaTo - deltaFrom);
+            int[] result = new int[Math.min(limit, total)];
+            Cursor cursor = descending
+                    ? new Cursor(this, mainTo - 1, mainFrom - 1, deltaTo - 1, deltaFrom - 1, true)
+                    : new Cursor(this, mainFrom, mainTo, deltaFrom, deltaTo, false);
+            if (accept == null) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = cursor.nextId();
+                }
+                return result;
+            }
+            int kept = 0;
+            for (int i = 0; i < total && kept < result.length; i++) {
+                int id = cursor.nextId();
+                if (accept.test(id)) {
+                    result[kept++] = id;
+                }
+            }
+            return kept == result.length ? result : Arrays.copyOf(result, kept);
+        }
+    }
+
+    // Walks positions [main, mainEnd) of the main run and [delta, deltaEnd) of the delta run together
+    // in price order (the ranges run downwards when descending)
+    private static final class Cursor {
+        final Run run;
+        final int mainEnd, deltaEnd;
+        final boolean descending;
+        int main, delta;
+        long lastPrice;
+
+        Cursor(Run run, int main, int mainEnd, int delta, int deltaEnd, boolean descending) {
+            this.run = run;
+            this.main = main;
+            this.mainEnd = mainEnd;
+            this.delta = delta;
+            this.deltaEnd = deltaEnd;
+            this.descending = descending;
+        }
+
+        int nextId() {
+            boolean takeMain;
+            if (delta == deltaEnd) {
+                takeMain = true;
+            } else if (main == mainEnd) {
+                takeMain = false;
+            } else {
+                int order = compare(run.prices[main], run.ids[main], run.deltaPrices[delta], run.deltaIds[delta]);
+                takeMain = descending ? order > 0 : order < 0;
+            }
+            int step = descending ? -1 : 1;
+            if (takeMain) {
+                lastPrice = run.prices[main];
+                int id = run.ids[main];
+                main += step;
+                return id;
+            }
+            lastPrice = run.deltaPrices[delta];
+            int id = run.deltaIds[delta];
+            delta += step;
+            return id;
+        }
+    }
+
+    private static int compare(long priceA, int idA, long priceB, int idB) {
+        int byPrice = Long.compare(priceA, priceB);
+        return byPrice != 0 ? byPrice : Integer.compare(idA, idB);
+    }
+
+    // First position whose (price, id) is not below (price, id)
+    private static int lowerBound(long[] prices, int[] ids, int n, long price, int id) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(prices[mid], ids[mid], price, id) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // First position whose price is above price
+    private static int upperBound(long[] prices, int n, long price) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] <= price) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Sorts both arrays by (price, id), keeping them parallel. A bottom-up merge sort on the primitive
+    // arrays, so nothing is boxed and no comparator is called.
+    static void sort(long[] prices, int[] ids) {
+        int n = ids.length;
+        long[] fromPrices = prices, toPrices = new long[n];
+        int[] fromIds = ids, toIds = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    if (compare(fromPrices[j], fromIds[j], fromPrices[i], fromIds[i]) < 0) {
+                        toPrices[k] = fromPrices[j];
+                        toIds[k++] = fromIds[j++];
+                    } else {
+                        toPrices[k] = fromPrices[i];
+                        toIds[k++] = fromIds[i++];
+                    }
+                }
+                for (; i < mid; i++, k++) {
+                    toPrices[k] = fromPrices[i];
+                    toIds[k] = fromIds[i];
+                }
+                for (; j < hi; j++, k++) {
+                    toPrices[k] = fromPrices[j];
+                    toIds[k] = fromIds[j];
+                }
+            }
+            long[] swapPrices = fromPrices;
+            fromPrices = toPrices;
+            toPrices = swapPrices;
+            int[] swapIds = fromIds;
+            fromIds = toIds;
+            toIds = swapIds;
+        }
+        if (fromIds != ids) {
+            System.arraycopy(fromPrices, 0, prices, 0, n);
+            System.arraycopy(fromIds, 0, ids, 0, n);
+        }
+    }
+}
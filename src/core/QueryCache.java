@@ -0,0 +1,113 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/*
+ * Bounded least-recently-used cache of query results.
+ *
+ * Entries are kept in access order in a LinkedHashMap; once there are more than maxEntries of them,
+ * or their estimated sizes add up to more than maxBytes, the least recently used are evicted. Every
+ * entry belongs to one catalog version: the first lookup or store for a newer version drops the
+ * whole cache, so a result is never served for a catalog it was not computed from.
+ *
+ * All methods are synchronized; a hit is a hash lookup and a relink in the access list.
+ */
+class QueryCache<V> {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long version = Long.MIN_VALUE;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private static final class Entry<V> {
+        final V value;
+        final long bytes;
+
+        Entry(V value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    /** weigher estimates the heap bytes a value keeps alive. */
+    QueryCache(int maxEntries, long maxBytes, ToLongFunction<V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+    }
+
+    /** Reduces the query to its search key and collapses runs of whitespace, so equivalent queries share an entry. */
+    static String normalize(String query) {
+        return SearchKeys.normalize(query.trim().replaceAll("\\s+", " "));
+    }
+
+    /** Returns the value cached for key under catalogVersion, or null. */
+    synchronized V get(String key, long catalogVersion) {
+        if (catalogVersion < version) {
+            misses++;
+            return null;
+        }
+        moveTo(catalogVersion);
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    synchronized void put(String key, long catalogVersion, V value) {
+        if (catalogVersion < version) {
+            return; // computed from a catalog that has since been replaced
+        }
+        moveTo(catalogVersion);
+        long size = weigher.applyAsLong(value) + 2L * key.length() + 64;
+        if (size > maxBytes) {
+            return;
+        }
+        Entry<V> previous = entries.put(key, new Entry<>(value, size));
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += size;
+        Iterator<Map.Entry<String, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("%d entries, %d KB; %d hits / %d lookups (%.0f%%); %d evicted, %d invalidated",
+                entries.size(), bytes / 1024, hits, lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups,
+                evictions, invalidations);
+    }
+
+    private void moveTo(long catalogVersion) {
+        if (catalogVersion != version) {
+            invalidations += entries.size();
+            entries.clear();
+            bytes = 0;
+            version = catalogVersion;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Parser for the search box query language.
+ *
+ *   phone tablet                    both words (AND is implied between terms)
+ *   phone OR tablet                 either word
+ *   -refurbished, NOT refurbished   products without the word
+ *   (phone OR tablet) AND case      parentheses group
+ *   "noise cancelling"              names containing the exact text
+ *   name:steel                      names containing the text
+ *   category:Electronics            one category, ignoring case; quote values with spaces
+ *   price<5000, price>=100          price bounds, in the catalog's currency
+ *   price:100..500, price:..500     inclusive price range
+ *
+ * Only these three field names start a condition; any other word with a colon, such as "Note:", is
+ * an ordinary word.
+ *
+ * AND binds tighter than OR, and a minus or NOT applies to the term or group after it. Operators
+ * are upper-case so that "and" or "or" typed in a product name is still just a word. parse() turns
+ * the text into a tree of nodes, which QueryPlan runs against the in-memory indexes (and the MongoDB
+ * client translates into a filter document); a malformed query throws IllegalArgumentException
+ * naming the position of the problem.
+ *
+ * The toString() of a node is a canonical form of the query, suitable as a cache key.
+ */
+final class QueryParser {
+    static final String CATEGORY = "category";
+    static final String NAME = "name";
+    static final String PRICE = "price";
+
+    abstract static class Node {
+    }
+
+    /** A word of the title or description. */
+    static final class Term extends Node {
+        final String word;
+
+        Term(String word) {
+            this.word = word;
+        }
+
+        @Override
+        public String toString() {
+            return SearchKeys.normalize(word);
+        }
+    }
+
+    /** category:value (the whole category, ignoring case) or name:value (a substring of the name). */
+    static final class Match extends Node {
+        final String field;
+        final String value;
+
+        Match(String field, String value) {
+            this.field = field;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return field + ":\"" + SearchKeys.normalize(value) + "\"";
+        }
+    }
+
+    /** A price from minMinor to maxMinor inclusive, in minor units. */
+    static final class PriceRange extends Node {
+        final long minMinor;
+        final long maxMinor;
+
+        PriceRange(long minMinor, long maxMinor) {
+            this.minMinor = minMinor;
+            this.maxMinor = maxMinor;
+        }
+
+        @Override
+        public String toString() {
+            return PRICE + ":" + (minMinor == Long.MIN_VALUE ? "" : minMinor) + ".." + (maxMinor == Long.MAX_VALUE ? "" : maxMinor);
+        }
+    }
+
+    static final class And extends Node {
+        final List<Node> children;
+
+        And(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " AND ");
+        }
+    }
+
+    static final class Or extends Node {
+        final List<Node> children;
+
+        Or(List<Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " OR ");
+        }
+    }
+
+    static final class Not extends Node {
+        final Node child;
+
+        Not(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + child;
+        }
+    }
+
+    private enum Kind { WORD, PHRASE, FIELD, AND, OR, NOT, OPEN, CLOSE, END }
+
+    private static final class Token {
+        final Kind kind;
+        final String text;
+        final int position;
+        // For FIELD tokens: the field name, the operator (":", "=", "<", "<=", ">" or ">=") and the value
+        String field;
+        String operator;
+
+        Token(Kind kind, String text, int position) {
+            this.kind = kind;
+            this.text = text;
+            this.position = position;
+        }
+    }
+
+    private final Money.Currency currency;
+    private final List<Token> tokens;
+    private int next;
+
+    private QueryParser(String query, Money.Currency currency) {
+        this.currency = currency;
+        this.tokens = tokenize(query);
+    }
+
+    /**
+     * Whether the query uses any of the syntax above. Plain words are left to the ordinary search,
+     * which also falls back to substring and typo-tolerant matching.
+     */
+    static boolean isStructured(String query) {
+        try {
+            for (Token token : tokenize(query)) {
+                if (token.kind != Kind.WORD && token.kind != Kind.END) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true; // let parse() report it
+        }
+    }
+
+    /** Parses a query; bare prices are read in the given currency. */
+    static Node parse(String query, Money.Currency currency) {
+        QueryParser parser = new QueryParser(query, currency);
+        if (parser.peek().kind == Kind.END) {
+            throw new IllegalArgumentException("Nothing to search for");
+        }
+        Node node = parser.parseOr();
+        Token extra = parser.peek();
+        if (extra.kind != Kind.END) {
+            throw new IllegalArgumentException("Unexpected '" + extra.text + "' at position " + (extra.position + 1));
+        }
+        return node;
+    }
+
+    private Node parseOr() {
+        List<Node> children = new ArrayList<>();
+        children.add(parseAnd());
+        while (peek().kind == Kind.OR) {
+            next++;
+            children.add(parseAnd());
+        }
+        return children.size() == 1 ? children.get(0) : new Or(flatten(children, Or.class));
+    }
+
+    private Node parseAnd() {
+        List<Node> children = new ArrayList<>();
+        children.add(parseUnary());
+        while (true) {
+            Kind kind = peek().kind;
+            if (kind == Kind.AND) {
+                next++;
+            } else if (kind == Kind.OR || kind == Kind.CLOSE || kind == Kind.END) {
+                break;
+            }
+            children.add(parseUnary());
+        }
+        return children.size() == 1 ? children.get(0) : new And(flatten(children, And.class));
+    }
+
+    private Node parseUnary() {
+        if (peek().kind == Kind.NOT) {
+            next++;
+            Node child = parseUnary();
+            return child instanceof Not ? ((Not) child).child : new Not(child);
+        }
+        return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+        Token token = peek();
+        next++;
+        switch (token.kind) {
+            case OPEN: {
+                Node node = parseOr();
+                Token close = peek();
+                if (close.kind != Kind.CLOSE) {
+                    throw new IllegalArgumentException("Expected ')' at position " + (close.position + 1));
+                }
+                next++;
+                return node;
+            }
+            case WORD:
+                return new Term(token.text);
+            case PHRASE:
+                return new Match(NAME, token.text);
+            case FIELD:
+                return field(token);
+            case END:
+                throw new IllegalArgumentException("Query ends where a term was expected");
+            default:
+                throw new IllegalArgumentException("Unexpected '" + token.text + "' at position " + (token.position + 1));
+        }
+    }
+
+    private Node field(Token token) {
+        String value = token.text;
+        if (!List.of(":", "=", "<", "<=", ">", ">=").contains(token.operator)) {
+            throw new IllegalArgumentException("Unknown operator " + token.operator + " at position " + (token.position + 1));
+        }
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Missing value after " + token.field + token.operator + " at position " + (token.position + 1));
+        }
+        switch (token.field) {
+            case CATEGORY:
+            case NAME:
+                if (!token.operator.equals(":") && !token.operator.equals("=")) {
+                    throw new IllegalArgumentException(token.field + " cannot be compared with " + token.operator);
+                }
+                return new Match(token.field, value);
+            default:
+                // tokenize() only makes FIELD tokens of the known fields, so this is price
+                return priceRange(token.operator, value);
+        }
+    }
+
+    private PriceRange priceRange(String operator, String value) {
+        switch (operator) {
+            case "<":
+                return new PriceRange(Long.MIN_VALUE, price(value) - 1);
+            case "<=":
+                return new PriceRange(Long.MIN_VALUE, price(value));
+            case ">":
+                return new PriceRange(price(value) + 1, Long.MAX_VALUE);
+            case ">=":
+                return new PriceRange(price(value), Long.MAX_VALUE);
+            default:
+                int dots = value.indexOf("..");
+                if (dots < 0) {
+                    long exact = price(value);
+                    return new PriceRange(exact, exact);
+                }
+                String from = value.substring(0, dots);
+                String to = value.substring(dots + 2);
+                return new PriceRange(from.isEmpty() ? Long.MIN_VALUE : price(from), to.isEmpty() ? Long.MAX_VALUE : price(to));
+        }
+    }
+
+    private long price(String text) {
+        Money money;
+        try {
+            money = Money.parse(text, currency);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (money.currency() != currency) {
+            throw new IllegalArgumentException("Prices are in " + currency + ", got " + text);
+        }
+        return money.minor();
+    }
+
+    private Token peek() {
+        return tokens.get(next);
+    }
+
+    private static List<Node> flatten(List<Node> children, Class<? extends Node> type) {
+        List<Node> flat = new ArrayList<>();
+        for (Node child : children) {
+            if (type.isInstance(child)) {
+                flat.addAll(child instanceof And ? ((And) child).children : ((Or) child).children);
+            } else {
+                flat.add(child);
+            }
+        }
+        return flat;
+    }
+
+    private static String join(List<Node> children, String operator) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < children.size(); i++) {
+            if (i > 0) text.append(operator);
+            text.append(children.get(i));
+        }
+        return text.append(')').toString();
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int pos = 0;
+        int length = query.length();
+        while (pos < length) {
+            char c = query.charAt(pos);
+            int start = pos;
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? Kind.OPEN : Kind.CLOSE, String.valueOf(c), start));
+                pos++;
+            } else if (c == '"') {
+                int end = closingQuote(query, pos);
+                if (!query.substring(pos + 1, end).isBlank()) {
+                    tokens.add(new Token(Kind.PHRASE, query.substring(pos + 1, end), start));
+                }
+                pos = end + 1;
+            } else if (c == '-' && pos + 1 < length && !Character.isWhitespace(query.charAt(pos + 1))) {
+                tokens.add(new Token(Kind.NOT, "-", start));
+                pos++;
+            } else {
+                while (pos < length && !Character.isWhitespace(query.charAt(pos)) && "()\"".indexOf(query.charAt(pos)) < 0) {
+                    pos++;
+                }
+                String word = query.substring(start, pos);
+                int split = fieldEnd(word);
+                if (split > 0) {
+                    int valueStart = split;
+                    while (valueStart < word.length() && "<>=:".indexOf(word.charAt(valueStart)) >= 0) {
+                        valueStart++;
+                    }
+                    String value = word.substring(valueStart);
+                    if (value.isEmpty() && pos < length && query.charAt(pos) == '"') {
+                        int end = closingQuote(query, pos);
+                        value = query.substring(pos + 1, end);
+                        pos = end + 1;
+                    }
+                    Token token = new Token(Kind.FIELD, value, start);
+                    token.field = word.substring(0, split).toLowerCase(Locale.ROOT);
+                    token.operator = word.substring(split, valueStart);
+                    tokens.add(token);
+                } else if (word.equals("AND") || word.equals("OR") || word.equals("NOT")) {
+                    tokens.add(new Token(Kind.valueOf(word), word, start));
+                } else if (word.chars().anyMatch(Character::isLetterOrDigit)) {
+                    tokens.add(new Token(Kind.WORD, word, start));
+                }
+            }
+        }
+        tokens.add(new Token(Kind.END, "", length));
+        return tokens;
+    }
+
+    // Length of the field name when word starts with category, name or price (any case) followed by
+    // :, =, < or >; else 0, so "Coffee:" or "Note:" stays an ordinary word
+    private static int fieldEnd(String word) {
+        int i = 0;
+        while (i < word.length() && Character.isLetter(word.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == word.length() || "<>=:".indexOf(word.charAt(i)) < 0) {
+            return 0;
+        }
+        String field = word.substring(0, i).toLowerCase(Locale.ROOT);
+        return field.equals(CATEGORY) || field.equals(NAME) || field.equals(PRICE) ? i : 0;
+    }
+
+    private static int closingQuote(String query, int open) {
+        int end = query.indexOf('"', open + 1);
+        if (end < 0) {
+            throw new IllegalArgumentException("Unclosed quote at position " + (open + 1));
+        }
+        return end;
+    }
+}
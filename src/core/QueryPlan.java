@@ -0,0 +1,333 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Execution plan for a parsed query (see QueryParser), run against the indexes of one catalog version.
+ *
+ * Every leaf of the query becomes a step with an estimated number of results, read off the indexes
+ * without running it: the rarest word's posting list for a word, the bitmap cardinality for a
+ * category, a count of the price index for a price range and the shortest trigram posting list for
+ * a name substring. An AND runs its steps from the smallest estimate up and stops as soon as the
+ * intersection is empty. Once the candidates left are fewer than a step's estimate, a price or name
+ * step checks just those candidates (one price read or one key comparison each) instead of producing
+ * its whole result, and negated steps are subtracted last. explain() shows the order chosen.
+ *
+ * Without an index for this version yet (a file catalog straight after loading), words fall back to
+ * name substrings and price ranges to reading the price column.
+ */
+final class QueryPlan {
+    private final Step root;
+    private final Set<String> rankingWords;
+
+    private QueryPlan(Step root, Set<String> rankingWords) {
+        this.root = root;
+        this.rankingWords = rankingWords;
+    }
+
+    /** text may be null when the full-text index has not been built yet. */
+    static QueryPlan compile(QueryParser.Node query, VersionedCatalog.Version version, FacetIndex facets,
+                             TextIndex text, ForkJoinPool pool) {
+        Compiler compiler = new Compiler(version, facets, text, pool);
+        Step root = compiler.compile(query, false);
+        return new QueryPlan(root, compiler.rankingWords);
+    }
+
+    /** The products matching the query. */
+    Bitmap execute() {
+        return root.run();
+    }
+
+    /** The words the query asks for (not the negated ones), to rank the matches by; empty if there are none. */
+    String rankingQuery() {
+        return String.join(" ", rankingWords);
+    }
+
+    /** The steps in the order they run, each with its estimated result size. */
+    String explain() {
+        return root.explain();
+    }
+
+    private abstract static class Step {
+        final int estimate;
+
+        Step(int estimate) {
+            this.estimate = estimate;
+        }
+
+        abstract Bitmap run();
+
+        /** The candidates that pass this step. */
+        Bitmap filter(Bitmap candidates) {
+            return candidates.and(run());
+        }
+
+        abstract String describe();
+
+        String explain() {
+            return describe() + " ~" + estimate;
+        }
+    }
+
+    private static final class Compiler {
+        final VersionedCatalog.Version version;
+        final Catalog catalog;
+        final FacetIndex facets;
+        final TextIndex text;
+        final ForkJoinPool pool;
+        final int size;
+        final Set<String> rankingWords = new LinkedHashSet<>();
+
+        Compiler(VersionedCatalog.Version version, FacetIndex facets, TextIndex text, ForkJoinPool pool) {
+            this.version = version;
+            this.catalog = version.catalog;
+            this.facets = facets;
+            this.text = text;
+            this.pool = pool;
+            this.size = catalog.size();
+        }
+
+        Step compile(QueryParser.Node node, boolean negated) {
+            if (node instanceof QueryParser.Term) {
+                String word = ((QueryParser.Term) node).word;
+                if (!negated) {
+                    rankingWords.add(SearchKeys.normalize(word));
+                }
+                return text != null ? wordStep(word) : nameStep(word);
+            }
+            if (node instanceof QueryParser.Match) {
+                QueryParser.Match match = (QueryParser.Match) node;
+                return match.field.equals(QueryParser.CATEGORY) ? categoryStep(match.value) : nameStep(match.value);
+            }
+            if (node instanceof QueryParser.PriceRange) {
+                QueryParser.PriceRange range = (QueryParser.PriceRange) node;
+                return priceStep(range.minMinor, range.maxMinor);
+            }
+            if (node instanceof QueryParser.Not) {
+                return notStep(compile(((QueryParser.Not) node).child, !negated));
+            }
+            if (node instanceof QueryParser.And) {
+                List<Step> positive = new ArrayList<>();
+                List<Step> negative = new ArrayList<>();
+                for (QueryParser.Node child : ((QueryParser.And) node).children) {
+                    if (child instanceof QueryParser.Not) {
+                        negative.add(compile(((QueryParser.Not) child).child, !negated));
+                    } else {
+                        positive.add(compile(child, negated));
+                    }
+                }
+                return andStep(positive, negative);
+            }
+            List<Step> alternatives = new ArrayList<>();
+            for (QueryParser.Node child : ((QueryParser.Or) node).children) {
+                alternatives.add(compile(child, negated));
+            }
+            return orStep(alternatives);
+        }
+
+        Step wordStep(String word) {
+            return new Step(text.documentFrequency(word)) {
+                @Override
+                Bitmap run() {
+                    return text.matchesAll(word, size);
+                }
+
+                @Override
+                String describe() {
+                    return "word " + SearchKeys.normalize(word);
+                }
+            };
+        }
+
+        Step categoryStep(String category) {
+            Bitmap products = facets.products(FacetIndex.CATEGORY, category);
+            return new Step(products.cardinality()) {
+                @Override
+                Bitmap run() {
+                    return products;
+                }
+
+                @Override
+                String describe() {
+                    return "category " + category;
+                }
+            };
+        }
+
+        Step nameStep(String substring) {
+            TrigramIndex names = version.names;
+            String needle = SearchKeys.normalize(substring);
+            return new Step(names != null ? names.estimate(needle, size) : size) {
+                @Override
+                Bitmap run() {
+                    return Bitmap.of(version.searchNames(needle, pool));
+                }
+
+                @Override
+                Bitmap filter(Bitmap candidates) {
+                    if (candidates.cardinality() >= estimate) {
+                        return super.filter(candidates);
+                    }
+                    int[] ids = candidates.toArray();
+                    int kept = 0;
+                    for (int id : ids) {
+                        boolean contains = names != null
+                                ? names.nameContains(id, needle)
+                                : SearchKeys.normalize(catalog.name(id)).contains(needle);
+                        if (contains) ids[kept++] = id;
+                    }
+                    return Bitmap.of(Arrays.copyOf(ids, kept));
+                }
+
+                @Override
+                String describe() {
+                    return "name contains " + needle;
+                }
+            };
+        }
+
+        Step priceStep(long minMinor, long maxMinor) {
+            PriceIndex prices = version.prices;
+            return new Step(prices != null ? prices.count(minMinor, maxMinor) : size) {
+                @Override
+                Bitmap run() {
+                    if (prices != null) {
+                        return Bitmap.of(prices.ids(minMinor, maxMinor));
+                    }
+                    Bitmap result = new Bitmap();
+                    for (int id = 0; id < size; id++) {
+                        long price = catalog.priceMinor(id);
+                        if (price >= minMinor && price <= maxMinor) result.add(id);
+                    }
+                    return result;
+                }
+
+                @Override
+                Bitmap filter(Bitmap candidates) {
+                    if (candidates.cardinality() >= estimate) {
+                        return super.filter(candidates);
+                    }
+                    Bitmap result = new Bitmap();
+                    for (int id : candidates.toArray()) {
+                        long price = catalog.priceMinor(id);
+                        if (price >= minMinor && price <= maxMinor) result.add(id);
+                    }
+                    return result;
+                }
+
+                @Override
+                String describe() {
+                    return "price " + (minMinor == Long.MIN_VALUE ? "" : Money.of(minMinor, catalog.currency()).format())
+                            + ".." + (maxMinor == Long.MAX_VALUE ? "" : Money.of(maxMinor, catalog.currency()).format());
+                }
+            };
+        }
+
+        Step notStep(Step child) {
+            return new Step(size - child.estimate) {
+                @Override
+                Bitmap run() {
+                    return facets.all().andNot(child.run());
+                }
+
+                @Override
+                Bitmap filter(Bitmap candidates) {
+                    return candidates.andNot(child.filter(candidates));
+                }
+
+                @Override
+                String describe() {
+                    return "NOT " + child.explain();
+                }
+
+                @Override
+                String explain() {
+                    return describe();
+                }
+            };
+        }
+
+        Step andStep(List<Step> positive, List<Step> negative) {
+            positive.sort(Comparator.comparingInt(step -> step.estimate));
+            int estimate = positive.isEmpty() ? size : positive.get(0).estimate;
+            for (Step step : negative) {
+                estimate = Math.min(estimate, size - step.estimate);
+            }
+            return new Step(Math.max(0, estimate)) {
+                @Override
+                Bitmap run() {
+                    return filter(null);
+                }
+
+                @Override
+                Bitmap filter(Bitmap candidates) {
+                    Bitmap result = candidates;
+                    for (Step step : positive) {
+                        result = result == null ? step.run() : step.filter(result);
+                        if (result.isEmpty()) {
+                            return result;
+                        }
+                    }
+                    if (result == null) {
+                        result = facets.all();
+                    }
+                    for (Step step : negative) {
+                        result = result.andNot(step.filter(result));
+                    }
+                    return result;
+                }
+
+                @Override
+                String describe() {
+                    StringBuilder plan = new StringBuilder("AND(");
+                    for (Step step : positive) {
+                        plan.append(plan.length() > 4 ? ", " : "").append(step.explain());
+                    }
+                    for (Step step : negative) {
+                        plan.append(plan.length() > 4 ? ", " : "").append("NOT ").append(step.explain());
+                    }
+                    return plan.append(')').toString();
+                }
+            };
+        }
+
+        Step orStep(List<Step> alternatives) {
+            long total = 0;
+            for (Step step : alternatives) {
+                total += step.estimate;
+            }
+            return new Step((int) Math.min(size, total)) {
+                @Override
+                Bitmap run() {
+                    Bitmap result = new Bitmap();
+                    for (Step step : alternatives) {
+                        result = result.or(step.run());
+                    }
+                    return result;
+                }
+
+                @Override
+                Bitmap filter(Bitmap candidates) {
+                    Bitmap result = new Bitmap();
+                    for (Step step : alternatives) {
+                        result = result.or(step.filter(candidates));
+                    }
+                    return result;
+                }
+
+                @Override
+                String describe() {
+                    StringBuilder plan = new StringBuilder("OR(");
+                    for (Step step : alternatives) {
+                        plan.append(plan.length() > 3 ? ", " : "").append(step.explain());
+                    }
+                    return plan.append(')').toString();
+                }
+            };
+        }
+    }
+}
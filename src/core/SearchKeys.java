@@ -0,0 +1,132 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Normalized search keys of product names, packed end to end in one char arena.
+ *
+ * A key is the name decomposed to NFKD (full-width letters and ligatures become their plain forms,
+ * accented letters become a base letter plus combining marks), with the combining marks removed and
+ * every character case-folded, so "Café", "CAFE" and "ｃａｆｅ" all have the key "cafe". Queries go
+ * through the same normalize(), and contains() compares a query with a key in place, so matching a
+ * product allocates nothing.
+ *
+ * One writer appends keys in id order while any number of threads read, with the same publication
+ * order as TrigramIndex.PostingList: characters and end offsets are stored, and grown arrays
+ * published, before the larger size.
+ */
+final class SearchKeys {
+    private volatile char[] chars = new char[256];
+    private volatile int[] ends = new int[16];
+    private volatile int size;
+
+    /** The search key of a name or query. ASCII text only needs lower-casing and skips the Normalizer. */
+    static String normalize(String text) {
+        int i = 0;
+        while (i < text.length() && text.charAt(i) < 0x80) {
+            i++;
+        }
+        if (i == text.length()) {
+            return toLowerAscii(text);
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder key = new StringBuilder(decomposed.length());
+        for (int j = 0; j < decomposed.length(); ) {
+            int cp = decomposed.codePointAt(j);
+            j += Character.charCount(cp);
+            int type = Character.getType(cp);
+            if (type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                    || type == Character.ENCLOSING_MARK) {
+                continue;
+            }
+            key.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp)));
+        }
+        return key.toString();
+    }
+
+    /** The words of a name, description or query: normalized, split at every non-letter, non-digit. */
+    static String[] words(String text) {
+        String lower = SearchKeys.normalize(text);
+        ArrayList<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean part = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (part && start < 0) {
+                start = i;
+            } else if (!part && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /** Appends the key of the next product id; key must already be normalized. Single writer only. */
+    void append(String key) {
+        int n = size;
+        int[] currentEnds = ends;
+        char[] currentChars = chars;
+        int start = n == 0 ? 0 : currentEnds[n - 1];
+        if (start + key.length() > currentChars.length) {
+            currentChars = Arrays.copyOf(currentChars, Math.max(currentChars.length * 2, start + key.length()));
+            chars = currentChars;
+        }
+        key.getChars(0, key.length(), currentChars, start);
+        if (n == currentEnds.length) {
+            currentEnds = Arrays.copyOf(currentEnds, n * 2);
+            ends = currentEnds;
+        }
+        currentEnds[n] = start + key.length();
+        size = n + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Whether the key of product id contains needle, a normalized query. The id must be below size(). */
+    boolean contains(int id, String needle) {
+        int[] currentEnds = ends;
+        char[] currentChars = chars;
+        int start = id == 0 ? 0 : currentEnds[id - 1];
+        int last = currentEnds[id] - needle.length();
+        if (needle.isEmpty()) {
+            return true;
+        }
+        char first = needle.charAt(0);
+        for (int from = start; from <= last; from++) {
+            if (currentChars[from] != first) {
+                continue;
+            }
+            int k = 1;
+            while (k < needle.length() && currentChars[from + k] == needle.charAt(k)) {
+                k++;
+            }
+            if (k == needle.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Approximate heap bytes used by the arena. */
+    long sizeInBytes() {
+        return 2L * chars.length + 4L * ends.length;
+    }
+
+    private static String toLowerAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                char[] lower = text.toCharArray();
+                for (int j = i; j < lower.length; j++) {
+                    if (lower[j] >= 'A' && lower[j] <= 'Z') {
+                        lower[j] += 'a' - 'A';
+                    }
+                }
+                return new String(lower);
+            }
+        }
+        return text;
+    }
+}
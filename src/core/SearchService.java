@@ -0,0 +1,263 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Category listings and product search over the current catalog version.
+ *
+ * Browsing and searching are one query: the products matching the search text (every product when
+ * browsing) intersected with the selected facet values, in relevance or price order. A query is
+ * prepared first, which parses it and fixes the catalog version and cache key, and then run;
+ * callers that keep pages of results (the Swing screens) can look the key up before paying for
+ * the run. Results of queries answered from up-to-date indexes are kept in a QueryCache.
+ *
+ * Thread-safe: any number of threads may search at once. Large rankings are split across the
+ * fork-join pool.
+ */
+final class SearchService {
+    static final int SEARCH_LIMIT = 50;
+    static final String[] SORT_ORDERS = {"Best match", "Price: low to high", "Price: high to low"};
+    static final int SORT_RELEVANCE = 0, SORT_PRICE_ASCENDING = 1, SORT_PRICE_DESCENDING = 2;
+
+    private final CatalogService catalog;
+    // Large searches are scored in shards of product ids across all cores
+    private final ForkJoinPool searchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // Recent listings and searches for the current catalog version, at most 256 or 16 MB of them
+    private final QueryCache<Result> queryCache = new QueryCache<>(256, 16L << 20, Result::bytes);
+
+    SearchService(CatalogService catalog) {
+        this.catalog = catalog;
+    }
+
+    /** A parsed query against one catalog version. */
+    static final class Query {
+        // The search text as typed, or null when browsing
+        final String text;
+        // The tree of a structured query, or null for plain text
+        final QueryParser.Node parsed;
+        final Map<String, Set<String>> selected;
+        final int sortOrder;
+        final VersionedCatalog.Version version;
+        final String key;
+
+        private Query(String text, QueryParser.Node parsed, Map<String, Set<String>> selected, int sortOrder,
+                      VersionedCatalog.Version version, String key) {
+            this.text = text;
+            this.parsed = parsed;
+            this.selected = selected;
+            this.sortOrder = sortOrder;
+            this.version = version;
+            this.key = key;
+        }
+
+        /** Whether this is the plain listing of one category. */
+        boolean isCategoryListing() {
+            return text == null && sortOrder == SORT_RELEVANCE && selected.size() == 1
+                    && selected.getOrDefault(FacetIndex.CATEGORY, Set.of()).size() == 1;
+        }
+    }
+
+    static final class Result {
+        final VersionedCatalog.Version version;
+        // The facet index the filters were applied with; its counts describe this result
+        final FacetIndex facets;
+        // Product ids of the rows in display order, or null when rowSet lists them in id order
+        final int[] rows;
+        final Bitmap rowSet;
+        final int rowCount;
+        // Products matching the query and the filters; more than rowCount when a search was capped
+        final int hitCount;
+        final Bitmap matches;
+        final String heading;
+        // The steps of a structured query in the order they ran, or null
+        final String plan;
+        // Whether every index used was current, so the result stays right for this version
+        final boolean reusable;
+
+        Result(VersionedCatalog.Version version, FacetIndex facets, int[] rows, Bitmap rowSet, int hitCount,
+               Bitmap matches, String heading, String plan, boolean reusable) {
+            this.version = version;
+            this.facets = facets;
+            this.rows = rows;
+            this.rowSet = rowSet;
+            this.rowCount = rows != null ? rows.length : rowSet.cardinality();
+            this.hitCount = hitCount;
+            this.matches = matches;
+            this.heading = heading;
+            this.plan = plan;
+            this.reusable = reusable;
+        }
+
+        int rowAt(int row) {
+            return rows != null ? rows[row] : rowSet.select(row);
+        }
+
+        long bytes() {
+            return (rows != null ? 4L * rows.length : rowSet.sizeInBytes()) + matches.sizeInBytes() + 2L * (heading.length() + (plan == null ? 0 : plan.length())) + 64;
+        }
+    }
+
+    /**
+     * Parses text (null when browsing) against the current catalog version. Throws
+     * IllegalArgumentException for a structured query that does not parse.
+     */
+    Query prepare(String text, Map<String, Set<String>> selected, int sortOrder) {
+        if (sortOrder < SORT_RELEVANCE || sortOrder > SORT_PRICE_DESCENDING) {
+            throw new IllegalArgumentException("Unknown sort order: " + sortOrder);
+        }
+        VersionedCatalog.Version version = catalog.current();
+        QueryParser.Node parsed = null;
+        if (text != null && QueryParser.isStructured(text)) {
+            parsed = QueryParser.parse(text, version.catalog.currency());
+        }
+        // Structured queries are keyed by their canonical form, marked so a plain search never collides
+        String key = cacheKey(parsed != null ? "\u0001" + parsed : text, selected, sortOrder);
+        return new Query(text, parsed, selected, sortOrder, version, key);
+    }
+
+    Result run(Query query) {
+        Result result = queryCache.get(query.key, query.version.number);
+        if (result == null) {
+            result = execute(query);
+            if (result.reusable) {
+                queryCache.put(query.key, query.version.number, result);
+            }
+        }
+        return result;
+    }
+
+    Result search(String text, Map<String, Set<String>> selected, int sortOrder) {
+        return run(prepare(text, selected, sortOrder));
+    }
+
+    /** Hit and miss counts of the query cache. */
+    String cacheStats() {
+        return queryCache.toString();
+    }
+
+    // Computes the rows of a listing or search: the text matches (every product when browsing, the
+    // result of the plan for a structured query) intersected with the selected facet values, in the
+    // requested order
+    private Result execute(Query query) {
+        VersionedCatalog.Version version = query.version;
+        Catalog products = version.catalog;
+        FacetIndex facets = catalog.facets(version);
+        // Results that used a stale or missing index would change once the index catches up
+        boolean reusable = catalog.indexesCurrent(version);
+        Map<String, Set<String>> selected = query.selected;
+        int sortOrder = query.sortOrder;
+        Bitmap filter = facets.filter(selected);
+
+        Bitmap matches;
+        int[] rows = null;
+        // Rows listed in id order stay a bitmap, which tables read through select()
+        Bitmap listed = null;
+        String heading;
+        String plan = null;
+        if (query.parsed != null) {
+            // Ranked by the words asked for when there are any; products matched only through other
+            // conditions follow in catalog order
+            TextIndex text = catalog.text(version);
+            QueryPlan compiled = QueryPlan.compile(query.parsed, version, facets, text, searchPool);
+            plan = compiled.explain();
+            matches = compiled.execute();
+            Bitmap hits = matches.and(filter);
+            String ranking = compiled.rankingQuery();
+            if (sortOrder == SORT_RELEVANCE && text != null && !ranking.isEmpty()) {
+                int[] ranked = text.search(ranking, SEARCH_LIMIT, products.size(), hits, searchPool);
+                rows = topUp(ranked, hits, SEARCH_LIMIT);
+            } else {
+                listed = hits;
+            }
+            heading = "Results for " + query.text;
+        } else if (query.text == null) {
+            matches = facets.all();
+            listed = filter == matches ? matches : matches.and(filter);
+            Set<String> categories = selected.getOrDefault(FacetIndex.CATEGORY, Set.of());
+            heading = categories.size() == 1 ? "Products in " + categories.iterator().next() : "All Products";
+        } else {
+            // Whole words ranked over titles and descriptions, then substrings of names, then typos
+            heading = "Search Results for \"" + query.text + "\"";
+            TextIndex text = catalog.text(version);
+            matches = text != null ? text.matches(query.text, products.size()) : new Bitmap();
+            if (!matches.isEmpty()) {
+                rows = sortOrder == SORT_RELEVANCE
+                        ? text.search(query.text, SEARCH_LIMIT, products.size(), filter, searchPool)
+                        : matches.and(filter).toArray();
+            } else {
+                int[] found = version.searchNames(query.text, searchPool);
+                if (found.length == 0) {
+                    // Nothing contains the query as typed; try again allowing a typo or two per word
+                    FuzzyIndex fuzzy = catalog.fuzzy(version);
+                    if (fuzzy != null) {
+                        found = fuzzy.search(query.text, products.size());
+                        heading = "Showing results for \"" + query.text + "\" (closest matches)";
+                    }
+                }
+                matches = Bitmap.of(found);
+                rows = Arrays.stream(found).filter(filter::contains).toArray();
+            }
+        }
+        int hitCount = listed != null ? listed.cardinality() : matches.and(filter).cardinality();
+        if (sortOrder != SORT_RELEVANCE) {
+            // Searches are capped like ranked ones; a listing keeps every row
+            boolean descending = sortOrder == SORT_PRICE_DESCENDING;
+            int limit = query.text == null ? Integer.MAX_VALUE : SEARCH_LIMIT;
+            Set<String> categories = query.text == null ? selected.getOrDefault(FacetIndex.CATEGORY, Set.of()) : Set.of();
+            if (version.prices != null && categories.size() == 1) {
+                // A listing of one category is read off the price index in price order, within the
+                // selected price bands, without sorting or copying the category first
+                Set<String> bands = selected.getOrDefault(FacetIndex.PRICE, Set.of());
+                long[] span = bands.isEmpty() ? new long[] {Long.MIN_VALUE, Long.MAX_VALUE}
+                        : FacetIndex.priceSpan(bands, products.currency());
+                rows = version.prices.range(categories.iterator().next(), span[0], span[1], limit, descending, filter::contains);
+            } else {
+                rows = sortByPrice(products, rows != null ? rows : listed.toArray(), descending, limit);
+            }
+            listed = null;
+        }
+        return new Result(version, facets, rows, listed, hitCount, matches, heading, plan, reusable);
+    }
+
+    // Fills ranked up to limit rows with the other hits, in id order
+    private static int[] topUp(int[] ranked, Bitmap hits, int limit) {
+        if (ranked.length >= limit) {
+            return ranked;
+        }
+        Bitmap rest = hits.andNot(Bitmap.of(ranked));
+        int[] others = rest.toArray();
+        int[] rows = Arrays.copyOf(ranked, Math.min(limit, ranked.length + others.length));
+        System.arraycopy(others, 0, rows, ranked.length, rows.length - ranked.length);
+        return rows;
+    }
+
+    // Normalized query, then the ticked facet values in a fixed order, then the sort order
+    private static String cacheKey(String query, Map<String, Set<String>> selected, int sortOrder) {
+        StringBuilder key = new StringBuilder(query == null ? "" : QueryCache.normalize(query));
+        new TreeMap<>(selected).forEach((facet, values) -> {
+            if (!values.isEmpty()) {
+                key.append('\u0000').append(facet).append('=').append(new TreeSet<>(values));
+            }
+        });
+        return key.append('\u0000').append(sortOrder).toString();
+    }
+
+    // The first limit rows in price order, ties by id (both reversed when descending), by sorting
+    // (price, id) pairs of primitives
+    private static int[] sortByPrice(Catalog products, int[] rows, boolean descending, int limit) {
+        long[] prices = new long[rows.length];
+        int[] ids = rows.clone();
+        for (int i = 0; i < ids.length; i++) {
+            prices[i] = products.priceMinor(ids[i]);
+        }
+        PriceIndex.sort(prices, ids);
+        int[] sorted = new int[Math.min(limit, ids.length)];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = descending ? ids[ids.length - 1 - i] : ids[i];
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,324 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+/*
+ * Relevance-ranked full-text index over product titles and descriptions.
+ *
+ * Each word maps to the ascending ids of the products that use it, together with how often it
+ * occurs in the title and in the description. A query is scored with BM25F: per product, the term
+ * frequencies of both fields are normalized by field length, weighted by the field boost (a word in
+ * the title counts for more than the same word in the description), saturated with k1 and
+ * multiplied by the word's inverse document frequency.
+ *
+ * Scores are accumulated one query word at a time, and the best results are picked with a bounded
+ * min-heap of size limit, so returning the top 50 of a million hits never sorts all of them. Large
+ * catalogs can be scored in parallel, one shard of ids per fork-join task (see ParallelSearch).
+ */
+final class TextIndex {
+    static final float TITLE_BOOST = 3.0f;
+    static final float DESCRIPTION_BOOST = 1.0f;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MAX_FREQUENCY = 0xFFFF;
+
+    private final HashMap<String, Integer> termIds;
+    private final int[][] postings;
+    // Per posting: title frequency in the high 16 bits, description frequency in the low 16 bits
+    private final int[][] frequencies;
+    private final int[] titleLengths;
+    private final int[] descriptionLengths;
+    private final float averageTitleLength;
+    private final float averageDescriptionLength;
+
+    private TextIndex(HashMap<String, Integer> termIds, int[][] postings, int[][] frequencies,
+                      int[] titleLengths, int[] descriptionLengths) {
+        this.termIds = termIds;
+        this.postings = postings;
+        this.frequencies = frequencies;
+        this.titleLengths = titleLengths;
+        this.descriptionLengths = descriptionLengths;
+        averageTitleLength = average(titleLengths);
+        averageDescriptionLength = average(descriptionLengths);
+    }
+
+    static TextIndex build(Catalog catalog) {
+        return build(catalog.size(), catalog::name, catalog::description);
+    }
+
+    /** Builds an index over count documents; document id has the given title and description. */
+    static TextIndex build(int count, IntFunction<String> titles, IntFunction<String> descriptions) {
+        HashMap<String, Integer> termIds = new HashMap<>();
+        ArrayList<int[]> idLists = new ArrayList<>();
+        ArrayList<int[]> frequencyLists = new ArrayList<>();
+        int[] listSizes = new int[64];
+        int[] titleLengths = new int[count];
+        int[] descriptionLengths = new int[count];
+
+        // Frequencies of the current document, indexed by term id; touched lists the terms to reset
+        int[] titleCounts = new int[64];
+        int[] descriptionCounts = new int[64];
+        int[] touched = new int[64];
+
+        for (int id = 0; id < count; id++) {
+            int touchedCount = 0;
+            for (int field = 0; field < 2; field++) {
+                String[] words = SearchKeys.words(field == 0 ? titles.apply(id) : descriptions.apply(id));
+                if (field == 0) titleLengths[id] = words.length;
+                else descriptionLengths[id] = words.length;
+                for (String word : words) {
+                    Integer term = termIds.get(word);
+                    if (term == null) {
+                        term = termIds.size();
+                        termIds.put(word, term);
+                        idLists.add(new int[2]);
+                        frequencyLists.add(new int[2]);
+                        if (term == listSizes.length) {
+                            listSizes = Arrays.copyOf(listSizes, term * 2);
+                            titleCounts = Arrays.copyOf(titleCounts, term * 2);
+                            descriptionCounts = Arrays.copyOf(descriptionCounts, term * 2);
+                        }
+                    }
+                    if (titleCounts[term] == 0 && descriptionCounts[term] == 0) {
+                        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = term;
+                    }
+                    if (field == 0) titleCounts[term]++;
+                    else descriptionCounts[term]++;
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                int term = touched[i];
+                int n = listSizes[term];
+                int[] ids = idLists.get(term);
+                int[] freqs = frequencyLists.get(term);
+                if (n == ids.length) {
+                    ids = Arrays.copyOf(ids, n * 2);
+                    freqs = Arrays.copyOf(freqs, n * 2);
+                    idLists.set(term, ids);
+                    frequencyLists.set(term, freqs);
+                }
+                ids[n] = id;
+                freqs[n] = (Math.min(titleCounts[term], MAX_FREQUENCY) << 16) | Math.min(descriptionCounts[term], MAX_FREQUENCY);
+                listSizes[term] = n + 1;
+                titleCounts[term] = 0;
+                descriptionCounts[term] = 0;
+            }
+        }
+
+        int terms = termIds.size();
+        int[][] postings = new int[terms][];
+        int[][] frequencies = new int[terms][];
+        for (int t = 0; t < terms; t++) {
+            postings[t] = Arrays.copyOf(idLists.get(t), listSizes[t]);
+            frequencies[t] = Arrays.copyOf(frequencyLists.get(t), listSizes[t]);
+        }
+        return new TextIndex(termIds, postings, frequencies, titleLengths, descriptionLengths);
+    }
+
+    /**
+     * Returns the ids of at most limit products below catalogSize that contain any word of the
+     * query, best match first; equal scores go to the lower id.
+     */
+    int[] search(String query, int limit, int catalogSize) {
+        return search(query, limit, catalogSize, null);
+    }
+
+    /** Like search(query, limit, catalogSize), counting only products in filter (null for all). */
+    int[] search(String query, int limit, int catalogSize, Bitmap filter) {
+        return search(query, limit, catalogSize, filter, null);
+    }
+
+    /**
+     * Like search(query, limit, catalogSize, filter), scoring fixed-size shards of the id range in
+     * parallel on pool and merging their top limit results; a null pool or a small catalog scores
+     * on the calling thread.
+     */
+    int[] search(String query, int limit, int catalogSize, Bitmap filter, ForkJoinPool pool) {
+        int documents = Math.min(catalogSize, titleLengths.length);
+        int[] terms = new int[0];
+        for (String word : new LinkedHashSet<>(Arrays.asList(SearchKeys.words(query)))) {
+            Integer term = termIds.get(word);
+            if (term != null) {
+                terms = Arrays.copyOf(terms, terms.length + 1);
+                terms[terms.length - 1] = term;
+            }
+        }
+        if (terms.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        int[] queryTerms = terms;
+        TopK best = ParallelSearch.run(pool, documents,
+                (lo, hi) -> scoreShard(queryTerms, lo, hi, filter, limit),
+                (a, b) -> a.merge(b, limit));
+        return best.ids;
+    }
+
+    // Scores the products with ids from lo to hi - 1 and keeps the best limit of them
+    private TopK scoreShard(int[] terms, int lo, int hi, Bitmap filter, int limit) {
+        float[] scores = new float[hi - lo];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+
+        for (int term : terms) {
+            int[] ids = postings[term];
+            int[] freqs = frequencies[term];
+            float idf = (float) Math.log(1 + (titleLengths.length - ids.length + 0.5) / (ids.length + 0.5));
+            int start = Arrays.binarySearch(ids, lo);
+            for (int i = start >= 0 ? start : -start - 1; i < ids.length && ids[i] < hi; i++) {
+                int id = ids[i];
+                if (filter != null && !filter.contains(id)) {
+                    continue;
+                }
+                float tf = TITLE_BOOST * (freqs[i] >>> 16) / (1 - B + B * titleLengths[id] / averageTitleLength)
+                        + DESCRIPTION_BOOST * (freqs[i] & 0xFFFF) / (1 - B + B * descriptionLengths[id] / averageDescriptionLength);
+                int slot = id - lo;
+                if (scores[slot] == 0) {
+                    if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                    touched[touchedCount++] = slot;
+                }
+                scores[slot] += idf * tf / (K1 + tf);
+            }
+        }
+
+        // Min-heap of the best limit slots seen so far; the root is the weakest of them
+        int[] heap = new int[Math.min(limit, touchedCount)];
+        int heapSize = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (heapSize < heap.length) {
+                heap[heapSize++] = slot;
+                siftUp(heap, heapSize - 1, scores);
+            } else if (better(slot, heap[0], scores)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+        TopK top = new TopK(heapSize);
+        for (int i = heapSize - 1; i >= 0; i--) {
+            top.ids[i] = lo + heap[0];
+            top.scores[i] = scores[heap[0]];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, scores);
+        }
+        return top;
+    }
+
+    // Best results of a shard, best first
+    private static final class TopK {
+        final int[] ids;
+        final float[] scores;
+
+        TopK(int size) {
+            ids = new int[size];
+            scores = new float[size];
+        }
+
+        TopK merge(TopK other, int limit) {
+            TopK merged = new TopK(Math.min(limit, ids.length + other.ids.length));
+            int i = 0, j = 0;
+            for (int n = 0; n < merged.ids.length; n++) {
+                boolean takeThis = j == other.ids.length || (i < ids.length
+                        && (scores[i] > other.scores[j] || (scores[i] == other.scores[j] && ids[i] < other.ids[j])));
+                if (takeThis) {
+                    merged.ids[n] = ids[i];
+                    merged.scores[n] = scores[i++];
+                } else {
+                    merged.ids[n] = other.ids[j];
+                    merged.scores[n] = other.scores[j++];
+                }
+            }
+            return merged;
+        }
+    }
+
+    /** All products below catalogSize containing any word of the query, unranked. */
+    Bitmap matches(String query, int catalogSize) {
+        Bitmap result = new Bitmap();
+        for (String word : new LinkedHashSet<>(Arrays.asList(SearchKeys.words(query)))) {
+            Integer term = termIds.get(word);
+            if (term == null) {
+                continue;
+            }
+            int[] ids = postings[term];
+            int end = 0;
+            while (end < ids.length && ids[end] < catalogSize) end++;
+            result = result.or(Bitmap.of(Arrays.copyOf(ids, end)));
+        }
+        return result;
+    }
+
+    /** All products below catalogSize containing every word of the query. */
+    Bitmap matchesAll(String query, int catalogSize) {
+        Bitmap result = null;
+        for (String word : new LinkedHashSet<>(Arrays.asList(SearchKeys.words(query)))) {
+            Integer term = termIds.get(word);
+            if (term == null) {
+                return new Bitmap();
+            }
+            int[] ids = postings[term];
+            int end = 0;
+            while (end < ids.length && ids[end] < catalogSize) end++;
+            Bitmap products = Bitmap.of(Arrays.copyOf(ids, end));
+            result = result == null ? products : result.and(products);
+        }
+        return result == null ? new Bitmap() : result;
+    }
+
+    /** How many products contain every word of the query, at most; the rarest word's count. */
+    int documentFrequency(String query) {
+        int frequency = Integer.MAX_VALUE;
+        for (String word : SearchKeys.words(query)) {
+            Integer term = termIds.get(word);
+            frequency = Math.min(frequency, term == null ? 0 : postings[term].length);
+        }
+        return frequency == Integer.MAX_VALUE ? 0 : frequency;
+    }
+
+    /** Number of distinct words, for diagnostics. */
+    int termCount() {
+        return postings.length;
+    }
+
+    private static boolean better(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int i, float[] scores) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!better(heap[parent], heap[i], scores)) break;
+            int t = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = t;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int i = 0;
+        while (true) {
+            int weakest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && better(heap[weakest], heap[left], scores)) weakest = left;
+            if (right < size && better(heap[weakest], heap[right], scores)) weakest = right;
+            if (weakest == i) return;
+            int t = heap[weakest];
+            heap[weakest] = heap[i];
+            heap[i] = t;
+            i = weakest;
+        }
+    }
+
+    private static float average(int[] lengths) {
+        long total = 0;
+        for (int length : lengths) total += length;
+        return lengths.length == 0 || total == 0 ? 1 : (float) total / lengths.length;
+    }
+}
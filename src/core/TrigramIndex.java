@@ -0,0 +1,204 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+
+/*
+ * Trigram inverted index over product names, used for substring search.
+ *
+ * Every run of three characters in a name's search key (see SearchKeys) maps to the ascending list
+ * of product ids whose key contains it. A query of three or more characters intersects the postings
+ * of its own trigrams, starting with the shortest list, and then confirms each candidate with a real
+ * substring check against the precomputed keys, so the answer is exactly what a `contains` scan over
+ * the whole catalog would return and no product name is lower-cased per query.
+ *
+ * One writer thread adds products in id order while any number of threads search. Readers pass the
+ * size of the catalog version they are reading, and ids added after that version are ignored.
+ */
+class TrigramIndex {
+    private final ConcurrentHashMap<Long, PostingList> postings = new ConcurrentHashMap<>();
+    private final SearchKeys keys = new SearchKeys();
+
+    static TrigramIndex build(Catalog catalog) {
+        TrigramIndex index = new TrigramIndex();
+        for (int id = 0; id < catalog.size(); id++) {
+            index.add(id, catalog.name(id));
+        }
+        return index;
+    }
+
+    /** Indexes a product. Ids must be added in increasing order by a single writer. */
+    void add(int id, String name) {
+        String key = SearchKeys.normalize(name);
+        keys.append(key);
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            postings.computeIfAbsent(trigram(key, i), k -> new PostingList()).add(id);
+        }
+    }
+
+    /**
+     * Returns the ids, in ascending order, of products in the given catalog version whose search key
+     * contains the query's. Queries too short to have a trigram are answered by a scan of the keys,
+     * sharded across pool when it is not null.
+     */
+    int[] search(Catalog catalog, String query, ForkJoinPool pool) {
+        String needle = SearchKeys.normalize(query);
+        int limit = catalog.size();
+        if (needle.length() < 3) {
+            return scan(limit, id -> keys.contains(id, needle), pool);
+        }
+
+        int trigramCount = needle.length() - 2;
+        PostingList[] lists = new PostingList[trigramCount];
+        for (int i = 0; i < trigramCount; i++) {
+            PostingList list = postings.get(trigram(needle, i));
+            if (list == null) {
+                return new int[0];
+            }
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+        int[] candidates = lists[0].toArray(limit);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = lists[i].retainAll(candidates, count);
+        }
+
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int id = candidates[i];
+            if (keys.contains(id, needle)) {
+                candidates[found++] = id;
+            }
+        }
+        return Arrays.copyOf(candidates, found);
+    }
+
+    /**
+     * An upper bound on the number of products whose name contains the query: the length of the
+     * shortest posting list among its trigrams, or catalogSize when it is too short to have one.
+     */
+    int estimate(String query, int catalogSize) {
+        String needle = SearchKeys.normalize(query);
+        if (needle.length() < 3) {
+            return catalogSize;
+        }
+        int estimate = catalogSize;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            PostingList list = postings.get(trigram(needle, i));
+            estimate = Math.min(estimate, list == null ? 0 : list.size());
+        }
+        return estimate;
+    }
+
+    /** Whether the name of product id contains needle, a query already passed through SearchKeys.normalize. */
+    boolean nameContains(int id, String needle) {
+        return keys.contains(id, needle);
+    }
+
+    /** Heap bytes held by the search keys, for diagnostics. */
+    long keyBytes() {
+        return keys.sizeInBytes();
+    }
+
+    /** Number of distinct trigrams, for diagnostics. */
+    int trigramCount() {
+        return postings.size();
+    }
+
+    /**
+     * Checks every name without an index, normalizing each one; used only until the index of a newly
+     * loaded catalog has been built. Shards are scanned in parallel on pool when it is not null.
+     */
+    static int[] scan(Catalog catalog, String query, ForkJoinPool pool) {
+        String needle = SearchKeys.normalize(query);
+        return scan(catalog.size(), id -> SearchKeys.normalize(catalog.name(id)).contains(needle), pool);
+    }
+
+    private static int[] scan(int size, IntPredicate matches, ForkJoinPool pool) {
+        return ParallelSearch.run(pool, size, (lo, hi) -> {
+            int[] results = new int[16];
+            int found = 0;
+            for (int id = lo; id < hi; id++) {
+                if (matches.test(id)) {
+                    if (found == results.length) {
+                        results = Arrays.copyOf(results, found * 2);
+                    }
+                    results[found++] = id;
+                }
+            }
+            return Arrays.copyOf(results, found);
+        }, (left, right) -> {
+            int[] merged = Arrays.copyOf(left, left.length + right.length);
+            System.arraycopy(right, 0, merged, left.length, right.length);
+            return merged;
+        });
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /*
+     * Append-only sorted int list with one writer and lock-free readers. The writer stores the new id
+     * before publishing the larger size through the volatile field, and a grown array is published
+     * before the size, so a reader that sees size n also sees the first n ids.
+     */
+    static final class PostingList {
+        private volatile int[] ids = new int[4];
+        private volatile int size;
+
+        void add(int id) {
+            int n = size;
+            int[] current = ids;
+            if (n > 0 && current[n - 1] == id) {
+                return;
+            }
+            if (n == current.length) {
+                current = Arrays.copyOf(current, n * 2);
+                ids = current;
+            }
+            current[n] = id;
+            size = n + 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Copies the ids below limit. */
+        int[] toArray(int limit) {
+            int n = size;
+            int[] current = ids;
+            int end = upperBound(current, n, limit);
+            return Arrays.copyOf(current, end);
+        }
+
+        /** Keeps, in place, the first count candidates that also appear in this list; returns the new count. */
+        int retainAll(int[] candidates, int count) {
+            int n = size;
+            int[] current = ids;
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < count; i++) {
+                int pos = Arrays.binarySearch(current, from, n, candidates[i]);
+                if (pos >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+                if (from >= n) {
+                    break;
+                }
+            }
+            return kept;
+        }
+
+        private static int upperBound(int[] ids, int n, int limit) {
+            int pos = Arrays.binarySearch(ids, 0, n, limit);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Holds the catalog version that readers currently see, together with its search and price indexes.
+ *
+ * Writers build the next catalog on their own thread (a CatalogStore snapshot or a freshly opened
+ * CatalogFile) and publish it in one atomic step. Readers call current() once per operation and
+ * use that Version throughout, so a table or a search never mixes two catalog versions and never
+ * takes a lock. Writers are serialized on this object.
+ */
+class VersionedCatalog {
+
+    static final class Version {
+        final Catalog catalog;
+        final TrigramIndex names;
+        // Null until built for catalogs published without one
+        final PriceIndex prices;
+        final long number;
+        // Number of the version that started this line of appends; ids mean the same product
+        // in every version of one lineage
+        final long lineage;
+
+        Version(Catalog catalog, TrigramIndex names, PriceIndex prices, long number, long lineage) {
+            this.catalog = catalog;
+            this.names = names;
+            this.prices = prices;
+            this.number = number;
+            this.lineage = lineage;
+        }
+
+        /**
+         * Substring search over product names; uses the trigram index once it has been built and
+         * scans shards of the catalog on pool (when not null) until then.
+         */
+        int[] searchNames(String query, ForkJoinPool pool) {
+            if (names != null) {
+                return names.search(catalog, query, pool);
+            }
+            return TrigramIndex.scan(catalog, query, pool);
+        }
+    }
+
+    private final AtomicReference<Version> current;
+    // Writable lineage behind the current version, or null when it came from a read-only source
+    private CatalogStore store;
+
+    VersionedCatalog(Money.Currency currency) {
+        CatalogSnapshot empty = new CatalogStore(currency).snapshot();
+        current = new AtomicReference<>(new Version(empty, null, PriceIndex.build(empty), 0, 0));
+    }
+
+    Version current() {
+        return current.get();
+    }
+
+    Catalog catalog() {
+        return current.get().catalog;
+    }
+
+    /** Publishes a read-only catalog such as a CatalogFile. The indexes can follow in a later call. */
+    synchronized Version publish(Catalog next, TrigramIndex names, PriceIndex prices) {
+        store = null;
+        long number = current.get().number + 1;
+        return publish(new Version(next, names, prices, number, number));
+    }
+
+    /** Makes a complete store the current version, building its indexes on the calling thread. */
+    synchronized Version publish(CatalogStore next) {
+        CatalogSnapshot snapshot = next.snapshot();
+        TrigramIndex names = TrigramIndex.build(snapshot);
+        PriceIndex prices = PriceIndex.build(snapshot);
+        store = next;
+        long number = current.get().number + 1;
+        return publish(new Version(snapshot, names, prices, number, number));
+    }
+
+    /** Attaches indexes built in the background, if their catalog is still the current one. */
+    synchronized void attachIndexes(Catalog catalog, TrigramIndex names, PriceIndex prices) {
+        Version previous = current.get();
+        if (previous.catalog == catalog) {
+            publish(new Version(catalog, names, prices, previous.number + 1, previous.lineage));
+        }
+    }
+
+    /**
+     * Adds one product to the current store and publishes the result, updating the name index in
+     * place and deriving the next price index from the previous one.
+     */
+    synchronized Version add(String category, String name, String description, Money price) {
+        if (store == null) {
+            throw new IllegalStateException("The current catalog is read-only");
+        }
+        Version previous = current.get();
+        int id = store.add(category, name, description, price);
+        if (previous.names != null) {
+            previous.names.add(id, name);
+        }
+        PriceIndex prices = previous.prices == null ? null : previous.prices.add(id, category, price.minor());
+        return publish(new Version(store.snapshot(), previous.names, prices, previous.number + 1, previous.lineage));
+    }
+
+    synchronized boolean isWritable() {
+        return store != null;
+    }
+
+    private Version publish(Version version) {
+        current.set(version);
+        return version;
+    }
+}
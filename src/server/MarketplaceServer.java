@@ -0,0 +1,652 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/*
+ * HTTP/JSON API over the marketplace engine (src/core), for running the marketplace as a service
+ * behind a storefront instead of as a desktop window. It opens the same catalog MarketplaceApp does
+ * (-Dmarketplace.catalog, -Dmarketplace.feed, else the sample products) and keeps carts by id.
+ *
+ *   GET    /api/categories                       categories with product counts
+ *   GET    /api/products?q=&category=&price=&sort=&offset=&limit=
+ *                                                listing or search, streamed; category and price
+ *                                                (a price band label) may repeat; sort is
+ *                                                relevance, price_asc or price_desc; "total" is
+ *                                                every match, "rows" how many can be paged
+ *                                                through: a listing has them all, a search only
+ *                                                its best SearchService.SEARCH_LIMIT (50)
+ *   GET    /api/products/{id}                    one product with its description
+ *   GET    /api/carts/{cart}                     the cart's lines and total
+ *   POST   /api/carts/{cart}/items               {"productId": 3, "quantity": 2}
+ *   PUT    /api/carts/{cart}/items/{productId}   {"quantity": 5}; 0 removes the product
+ *   DELETE /api/carts/{cart}/items/{productId}   removes the product; 200 also if it was not there
+ *   DELETE /api/carts/{cart}
+ *   POST   /api/carts/{cart}/checkout            {"instructions": "..."} (optional); 201 with the order
+ *   GET    /api/orders/{id}
+ *   GET    /api/status                           requests in flight, rejected, carts, orders
+ *
+ * Only adding an item opens a cart: reading a cart that is not open shows it empty, and changing
+ * a product that is not in it is 404. Carts idle for two hours are forgotten (see CartService).
+ *
+ * Every exchange runs on its own virtual thread when the JVM has them (Java 21 and later; found by
+ * reflection so the server still builds and runs on 17, where a fixed pool of maxInFlight daemon
+ * platform threads takes their place). An idle keep-alive connection holds no thread at all, only a
+ * key in the server's selector, so tens of thousands of open connections cost file descriptors and
+ * not stacks.
+ *
+ * Backpressure: at most maxInFlight requests are worked on at once. On virtual threads a request
+ * that gets no permit within queueMillis is answered 503 with Retry-After. On platform threads at
+ * most maxInFlight more requests wait in the pool's queue; any beyond that are handed to a single
+ * shedding thread that answers 503 without creating a thread per request. Either way a burst is
+ * shed at the door instead of piling up threads and heap behind a saturated search pool.
+ *
+ * Listings are written while they are read, with chunked transfer encoding and a flush every
+ * STREAM_FLUSH_ROWS products: a listing of 200,000 products is never held as one string, and the
+ * client gets its first rows at once.
+ *
+ * Properties: marketplace.port (8080), marketplace.maxInFlight (10000 on virtual threads, 256 on
+ * platform threads), marketplace.queueMillis (500), marketplace.backlog (4096) and
+ * marketplace.orders (a file to append orders to; kept in memory only when not set).
+ */
+public class MarketplaceServer {
+    static final int STREAM_FLUSH_ROWS = 256;
+    static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final Logger LOG = Logger.getLogger(MarketplaceServer.class.getName());
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final Pattern CART_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    // Set while the shedding thread (or the dispatcher, when even its queue is full) runs an exchange
+    private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<>();
+
+    private final Marketplace market;
+    private final HttpServer http;
+    private final ExecutorService handlers;
+    // Answers 503 for requests the platform pool has no room for; null on virtual threads
+    private final ExecutorService shedder;
+    private final boolean virtualThreads;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final long queueMillis;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** An error answered with its own status code instead of 400 or 500. */
+    private static final class ApiException extends RuntimeException {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    MarketplaceServer(Marketplace market, InetSocketAddress address, int backlog, int maxInFlight, long queueMillis) throws IOException {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive, got " + maxInFlight);
+        }
+        this.market = market;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.queueMillis = queueMillis;
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        if (virtual != null) {
+            this.handlers = virtual;
+            this.shedder = null;
+        } else {
+            // One thread for rejections, with a queue as long as the backlog; past that the dispatcher
+            // itself answers, which slows accepting new connections instead of growing anything
+            this.shedder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, backlog)),
+                    daemonThreads("http-shed"), (task, pool) -> task.run());
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(maxInFlight), daemonThreads("http-request"),
+                    (task, full) -> shedder.execute(() -> {
+                        SHEDDING.set(Boolean.TRUE);
+                        try {
+                            task.run();
+                        } finally {
+                            SHEDDING.remove();
+                        }
+                    }));
+            pool.allowCoreThreadTimeOut(true);
+            this.handlers = pool;
+        }
+        this.http = HttpServer.create(address, backlog);
+        http.createContext("/api/", this::handle);
+        http.setExecutor(handlers);
+    }
+
+    /** Executors.newVirtualThreadPerTaskExecutor() on Java 21 and later, else null. */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    void start() {
+        http.start();
+    }
+
+    void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        handlers.shutdown();
+        if (shedder != null) {
+            shedder.shutdown();
+        }
+    }
+
+    int port() {
+        return http.getAddress().getPort();
+    }
+
+    boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            boolean admitted;
+            try {
+                admitted = SHEDDING.get() == null && permits.tryAcquire(queueMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!admitted) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "Too many requests in flight, retry later");
+                return;
+            }
+            try {
+                route(exchange);
+            } catch (ApiException e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.log(Level.SEVERE, exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed", e);
+                sendError(exchange, 500, "Internal error");
+            } finally {
+                permits.release();
+            }
+        } catch (IOException e) {
+            // The client went away; nothing left to tell it
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        String resource = path[0];
+        if (resource.equals("categories") && path.length == 1) {
+            requireMethod(method, "GET");
+            sendJson(exchange, 200, categories());
+        } else if (resource.equals("products") && path.length == 1) {
+            requireMethod(method, "GET");
+            streamProducts(exchange, queryParams(exchange));
+        } else if (resource.equals("products") && path.length == 2) {
+            requireMethod(method, "GET");
+            sendJson(exchange, 200, product(number(path[1], "product id")));
+        } else if (resource.equals("carts") && path.length >= 2) {
+            routeCart(exchange, method, path);
+        } else if (resource.equals("orders") && path.length == 2) {
+            requireMethod(method, "GET");
+            Order order = market.orders.find(number(path[1], "order id"));
+            if (order == null) {
+                throw new ApiException(404, "No order " + path[1]);
+            }
+            sendJson(exchange, 200, order(order));
+        } else if (resource.equals("status") && path.length == 1) {
+            requireMethod(method, "GET");
+            sendJson(exchange, 200, status());
+        } else {
+            throw new ApiException(404, "No such resource: " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private void routeCart(HttpExchange exchange, String method, String[] path) throws IOException {
+        String id = path[1];
+        if (!CART_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("A cart id is 1 to 64 letters, digits, '-' or '_'");
+        }
+        if (path.length == 2) {
+            if (method.equals("DELETE")) {
+                market.carts.close(id);
+                send(exchange, 204, null);
+                return;
+            }
+            requireMethod(method, "GET");
+            sendJson(exchange, 200, cart(id, openOrEmpty(id)));
+            return;
+        }
+        if (path[2].equals("items") && path.length == 3) {
+            requireMethod(method, "POST");
+            Map<String, String> body = jsonBody(exchange);
+            int product = (int) number(required(body, "productId"), "productId");
+            int quantity = body.containsKey("quantity") ? (int) number(body.get("quantity"), "quantity") : 1;
+            Cart cart;
+            try {
+                cart = market.carts.add(id, product, quantity);
+            } catch (IllegalStateException e) {
+                throw new ApiException(503, e.getMessage());
+            }
+            sendJson(exchange, 200, cart(id, cart));
+        } else if (path[2].equals("items") && path.length == 4) {
+            int product = (int) number(path[3], "productId");
+            boolean delete = method.equals("DELETE");
+            int quantity = 0;
+            if (!delete) {
+                requireMethod(method, "PUT");
+                quantity = (int) number(required(jsonBody(exchange), "quantity"), "quantity");
+            }
+            // A DELETE of a product that is not there is done already, so a retried DELETE succeeds
+            Cart cart = market.carts.find(id);
+            if (cart == null) {
+                if (!delete) {
+                    throw new ApiException(404, "No cart " + id);
+                }
+                cart = openOrEmpty(id);
+            } else {
+                synchronized (cart) {
+                    int line = cart.indexOf(product);
+                    if (line >= 0) {
+                        cart.setQuantity(line, quantity);
+                    } else if (!delete) {
+                        throw new ApiException(404, "Cart " + id + " has no product " + product);
+                    }
+                }
+            }
+            sendJson(exchange, 200, cart(id, cart));
+        } else if (path[2].equals("checkout") && path.length == 3) {
+            requireMethod(method, "POST");
+            Map<String, String> body = jsonBody(exchange);
+            Cart cart = openOrEmpty(id);
+            Order order;
+            try {
+                order = market.checkout.checkout(cart, Map.of(), body.getOrDefault("instructions", ""));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(409, e.getMessage());
+            }
+            sendJson(exchange, 201, order(order));
+        } else {
+            throw new ApiException(404, "No such resource: " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    // Reading a cart that is not open must not open one, or every GET with a new id would keep a cart
+    private Cart openOrEmpty(String id) {
+        Cart cart = market.carts.find(id);
+        return cart != null ? cart : new Cart(market.catalog.currency());
+    }
+
+    // Writes the listing while it reads it: the header fields, the facet counts, then the products
+    // in pages of STREAM_FLUSH_ROWS, each sent as soon as it is written
+    private void streamProducts(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        String q = first(params, "q");
+        LinkedHashMap<String, Set<String>> selected = new LinkedHashMap<>();
+        if (params.containsKey("category")) {
+            selected.put(FacetIndex.CATEGORY, new LinkedHashSet<>(params.get("category")));
+        }
+        if (params.containsKey("price")) {
+            selected.put(FacetIndex.PRICE, new LinkedHashSet<>(params.get("price")));
+        }
+        int offset = (int) number(params.containsKey("offset") ? first(params, "offset") : "0", "offset");
+        long limit = params.containsKey("limit") ? number(first(params, "limit"), "limit") : Integer.MAX_VALUE;
+        SearchService.Result result = market.search.search(q == null || q.isBlank() ? null : q.trim(), selected, sortOrder(first(params, "sort")));
+        Catalog catalog = result.version.catalog;
+        int end = (int) Math.min(result.rowCount, offset + limit);
+
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        // Length 0 means chunked: the size is not known until the last product is written
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024)) {
+            out.write("{\"version\":");
+            out.write(Long.toString(result.version.number));
+            out.write(",\"heading\":");
+            string(out, result.heading);
+            out.write(",\"total\":");
+            out.write(Integer.toString(result.hitCount));
+            out.write(",\"rows\":");
+            out.write(Integer.toString(result.rowCount));
+            out.write(",\"offset\":");
+            out.write(Integer.toString(offset));
+            out.write(",\"facets\":{");
+            boolean firstFacet = true;
+            for (String facet : result.facets.facetNames()) {
+                if (!firstFacet) out.write(',');
+                firstFacet = false;
+                string(out, facet);
+                out.write(":{");
+                boolean firstValue = true;
+                for (Map.Entry<String, Integer> count : result.facets.counts(facet, result.matches, selected).entrySet()) {
+                    if (!firstValue) out.write(',');
+                    firstValue = false;
+                    string(out, count.getKey());
+                    out.write(':');
+                    out.write(Integer.toString(count.getValue()));
+                }
+                out.write('}');
+            }
+            out.write("},\"products\":[");
+            // A listing in id order is a bitmap; walk it rather than select() each row from the top
+            Bitmap.Cursor ids = result.rows == null && offset < end ? result.rowSet.cursor(offset) : null;
+            for (int row = offset; row < end; row++) {
+                if (row > offset) out.write(',');
+                productSummary(out, catalog, ids != null ? ids.next() : result.rows[row]);
+                if ((row - offset + 1) % STREAM_FLUSH_ROWS == 0) {
+                    out.flush();
+                }
+            }
+            out.write("]}");
+        }
+    }
+
+    private String categories() throws IOException {
+        SearchService.Result all = market.search.search(null, Map.of(), SearchService.SORT_RELEVANCE);
+        StringBuilder json = new StringBuilder("{\"categories\":[");
+        boolean first = true;
+        for (Map.Entry<String, Integer> count : all.facets.counts(FacetIndex.CATEGORY, all.matches, Map.of()).entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"name\":");
+            string(json, count.getKey());
+            json.append(",\"products\":").append(count.getValue()).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String product(long id) throws IOException {
+        Catalog catalog = market.catalog.current().catalog;
+        if (id >= catalog.size()) {
+            throw new ApiException(404, "No product " + id);
+        }
+        StringBuilder json = new StringBuilder();
+        productSummary(json, catalog, (int) id);
+        json.setLength(json.length() - 1);
+        json.append(",\"description\":");
+        string(json, catalog.description((int) id));
+        return json.append('}').toString();
+    }
+
+    private static void productSummary(Appendable out, Catalog catalog, int id) throws IOException {
+        out.append("{\"id\":").append(Integer.toString(id)).append(",\"name\":");
+        string(out, catalog.name(id));
+        out.append(",\"category\":");
+        string(out, catalog.category(id));
+        out.append(",\"price\":");
+        money(out, catalog.price(id));
+        out.append('}');
+    }
+
+    // The lines are read under the cart's lock, so the total always matches them
+    private static String cart(String id, Cart cart) throws IOException {
+        StringBuilder json = new StringBuilder("{\"id\":");
+        string(json, id);
+        json.append(",\"lines\":[");
+        synchronized (cart) {
+            List<Cart.Line> lines = cart.lines();
+            for (int i = 0; i < lines.size(); i++) {
+                Cart.Line line = lines.get(i);
+                if (i > 0) json.append(',');
+                json.append("{\"productId\":").append(line.productId).append(",\"name\":");
+                string(json, line.name);
+                json.append(",\"unitPrice\":");
+                money(json, line.unitPrice);
+                json.append(",\"quantity\":").append(line.quantity()).append(",\"total\":");
+                money(json, line.total());
+                json.append('}');
+            }
+            json.append("],\"itemCount\":").append(cart.itemCount()).append(",\"total\":");
+            money(json, cart.total());
+        }
+        return json.append('}').toString();
+    }
+
+    private static String order(Order order) throws IOException {
+        StringBuilder json = new StringBuilder("{\"id\":").append(order.id).append(",\"placedAt\":");
+        string(json, Order.DATE_FORMAT.format(order.placedAt));
+        json.append(",\"lines\":[");
+        for (int i = 0; i < order.lines.size(); i++) {
+            Order.Line line = order.lines.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"name\":");
+            string(json, line.name);
+            json.append(",\"unitPrice\":");
+            money(json, line.unitPrice);
+            json.append(",\"quantity\":").append(line.quantity).append(",\"total\":");
+            money(json, line.total);
+            json.append('}');
+        }
+        json.append("],\"charges\":{");
+        boolean first = true;
+        for (Map.Entry<String, Money> charge : order.charges.entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            string(json, charge.getKey());
+            json.append(':');
+            money(json, charge.getValue());
+        }
+        json.append("},\"instructions\":");
+        string(json, order.instructions);
+        json.append(",\"itemTotal\":");
+        money(json, order.itemTotal);
+        json.append(",\"total\":");
+        money(json, order.total);
+        return json.append('}').toString();
+    }
+
+    private String status() {
+        VersionedCatalog.Version version = market.catalog.current();
+        return "{\"threads\":\"" + (virtualThreads ? "virtual" : "platform") + "\""
+                + ",\"inFlight\":" + (maxInFlight - permits.availablePermits())
+                + ",\"maxInFlight\":" + maxInFlight
+                + ",\"rejected\":" + rejected.get()
+                + ",\"catalogVersion\":" + version.number
+                + ",\"products\":" + version.catalog.size()
+                + ",\"openCarts\":" + market.carts.openCarts()
+                + ",\"orders\":" + market.orders.count() + "}";
+    }
+
+    // Amounts go out in minor units, which a client can add up exactly, and as display text
+    private static void money(Appendable out, Money money) throws IOException {
+        out.append("{\"minor\":").append(Long.toString(money.minor()))
+                .append(",\"currency\":\"").append(money.currency().name()).append("\",\"display\":");
+        string(out, money.format());
+        out.append('}');
+    }
+
+    private static void string(Appendable out, String text) throws IOException {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        send(exchange, status, json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // Headers are gone already (a stream broke off); closing the exchange ends the response
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"error\":");
+        string(json, message == null ? "" : message);
+        sendJson(exchange, status, json.append('}').toString());
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed)) {
+            throw new ApiException(405, method + " is not allowed here, use " + allowed);
+        }
+    }
+
+    // A flat JSON object (see FeedImporter.parseJsonObject); an empty body is an empty object
+    private static Map<String, String> jsonBody(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "The request body is larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8).trim();
+        if (text.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> fields = FeedImporter.parseJsonObject(text);
+        if (fields == null) {
+            throw new IllegalArgumentException("The request body is not a flat JSON object");
+        }
+        return fields;
+    }
+
+    private static Map<String, List<String>> queryParams(HttpExchange exchange) {
+        Map<String, List<String>> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static String first(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    private static String required(Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing \"" + name + "\"");
+        }
+        return value;
+    }
+
+    private static long number(String text, String what) {
+        try {
+            long value = Long.parseLong(text.trim());
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(what + " is out of range: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(what + " must be a whole number, got " + text);
+        }
+    }
+
+    private static int sortOrder(String sort) {
+        if (sort == null || sort.equals("relevance")) return SearchService.SORT_RELEVANCE;
+        if (sort.equals("price_asc")) return SearchService.SORT_PRICE_ASCENDING;
+        if (sort.equals("price_desc")) return SearchService.SORT_PRICE_DESCENDING;
+        throw new IllegalArgumentException("sort must be relevance, price_asc or price_desc, got " + sort);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String orders = System.getProperty("marketplace.orders");
+        Marketplace market = new Marketplace(Money.Currency.INR, orders == null ? null : Paths.get(orders));
+        String catalogPath = System.getProperty("marketplace.catalog");
+        if (catalogPath != null) {
+            market.catalog.open(Paths.get(catalogPath));
+        } else {
+            market.catalog.openSample();
+        }
+        String feed = System.getProperty("marketplace.feed");
+        if (feed != null) {
+            Path path = Paths.get(feed);
+            try {
+                LOG.info(market.catalog.importFeed(path).get().toString());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException("Could not import " + path, e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        boolean virtual = virtualThreadExecutor() != null;
+        int port = Integer.getInteger("marketplace.port", 8080);
+        int maxInFlight = Integer.getInteger("marketplace.maxInFlight", virtual ? 10_000 : 256);
+        long queueMillis = Long.getLong("marketplace.queueMillis", 500);
+        int backlog = Integer.getInteger("marketplace.backlog", 4096);
+        MarketplaceServer server = new MarketplaceServer(market, new InetSocketAddress(port), backlog, maxInFlight, queueMillis);
+        server.start();
+        LOG.info("Marketplace API on http://localhost:" + server.port() + "/api/ ("
+                + (server.usesVirtualThreads() ? "virtual" : "platform") + " threads, at most " + maxInFlight + " requests in flight)");
+    }
+}
@@ -0,0 +1,86 @@
+import javax.swing.table.AbstractTableModel;
+
+/*
+ * Table model over a Cart, driven by the cart's change events.
+ *
+ * Rows are the cart's lines, read when they are painted. Each change to the cart fires only the
+ * rows it touched (fireTableRowsInserted, Updated or Deleted), so the table repaints one row when a
+ * product is added, however many lines the cart has, and never re-reads the cart as a whole.
+ *
+ * The quantity column can be edited; a quantity of zero removes the line.
+ *
+ * Shared by the Swing apps: each compiles src/swing together with src/core and its own directory.
+ */
+final class CartTableModel extends AbstractTableModel implements Cart.Listener {
+    static final String[] COLUMNS = {"Product", "Quantity", "Price"};
+    static final int PRODUCT = 0;
+    static final int QUANTITY = 1;
+    static final int PRICE = 2;
+
+    private final Cart cart;
+
+    CartTableModel(Cart cart) {
+        this.cart = cart;
+        cart.addListener(this);
+    }
+
+    @Override
+    public int getRowCount() {
+        return cart.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == QUANTITY ? Integer.class : Object.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Cart.Line line = cart.line(row);
+        switch (column) {
+            case PRODUCT:
+                return line.name;
+            case QUANTITY:
+                return line.quantity();
+            default:
+                return line.total();
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == QUANTITY;
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column == QUANTITY && value instanceof Number) {
+            cart.setQuantity(row, ((Number) value).intValue());
+        }
+    }
+
+    @Override
+    public void linesInserted(int first, int last) {
+        fireTableRowsInserted(first, last);
+    }
+
+    @Override
+    public void linesUpdated(int first, int last) {
+        fireTableRowsUpdated(first, last);
+    }
+
+    @Override
+    public void linesDeleted(int first, int last) {
+        fireTableRowsDeleted(first, last);
+    }
+}
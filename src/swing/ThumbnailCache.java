@@ -0,0 +1,295 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.Icon;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/*
+ * Product thumbnails, decoded off the EDT and kept within a memory budget.
+ *
+ * An image source is a file path or a URL. Loading one runs on a fixed pool of worker threads: the
+ * reader decodes only every n-th row and column of the source (ImageReadParam source subsampling),
+ * so a large photo never sits in the heap at full size, and the result is scaled down to the
+ * thumbnail size. Finished thumbnails are written as PNG to the disk directory, keyed by a hash of
+ * the source and the size, so the next run reads the small file instead of the original.
+ *
+ * In memory the thumbnails are kept in access order and the least recently used are dropped once
+ * their pixels (4 bytes each) pass maxPixelBytes. Two requests for the same source share one load,
+ * and a request nobody waits for any more is cancelled before it starts.
+ *
+ * A Thumbnail is an Icon of fixed size for one component: show(source) paints the image at once if
+ * it is cached, and otherwise a placeholder until it arrives, when only that component is repainted.
+ *
+ * Everything except the loading itself runs on the EDT.
+ */
+final class ThumbnailCache {
+    private static final Color PLACEHOLDER = new Color(0xE6E6E6);
+
+    private final int width;
+    private final int height;
+    private final long maxPixelBytes;
+    private final Path directory;
+    private final ExecutorService workers;
+    private final LinkedHashMap<String, BufferedImage> images = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Load> loading = new HashMap<>();
+    private long pixelBytes;
+
+    private static final class Load {
+        final List<Consumer<BufferedImage>> waiting = new ArrayList<>();
+        Future<?> future;
+    }
+
+    /** directory may be null to keep thumbnails in memory only. */
+    ThumbnailCache(int width, int height, int threads, long maxPixelBytes, Path directory) {
+        this.width = width;
+        this.height = height;
+        this.maxPixelBytes = maxPixelBytes;
+        this.directory = directory;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "thumbnails");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /** A placeholder-sized icon that shows thumbnails in owner. */
+    Thumbnail thumbnailFor(JComponent owner) {
+        return new Thumbnail(owner);
+    }
+
+    /** The thumbnail of source if it is in memory, else null. */
+    BufferedImage cached(String source) {
+        return images.get(source);
+    }
+
+    /**
+     * Passes the thumbnail of source to onLoaded on the EDT, at once if it is in memory; null if the
+     * source cannot be read. Returns false if it has to be loaded first.
+     */
+    boolean load(String source, Consumer<BufferedImage> onLoaded) {
+        BufferedImage image = images.get(source);
+        if (image != null) {
+            onLoaded.accept(image);
+            return true;
+        }
+        Load load = loading.get(source);
+        if (load == null) {
+            Load started = new Load();
+            loading.put(source, started);
+            started.future = workers.submit(() -> {
+                BufferedImage thumbnail = read(source);
+                SwingUtilities.invokeLater(() -> finish(source, started, thumbnail));
+            });
+            load = started;
+        }
+        load.waiting.add(onLoaded);
+        return false;
+    }
+
+    /** Stops waiting for source on behalf of onLoaded; the load is cancelled if nobody else waits. */
+    void cancel(String source, Consumer<BufferedImage> onLoaded) {
+        Load load = loading.get(source);
+        if (load == null) return;
+        load.waiting.remove(onLoaded);
+        if (load.waiting.isEmpty()) {
+            loading.remove(source);
+            load.future.cancel(false);
+        }
+    }
+
+    int size() {
+        return images.size();
+    }
+
+    long pixelBytes() {
+        return pixelBytes;
+    }
+
+    private void finish(String source, Load load, BufferedImage thumbnail) {
+        if (loading.get(source) != load) return; // cancelled meanwhile
+        loading.remove(source);
+        if (thumbnail != null) {
+            BufferedImage previous = images.put(source, thumbnail);
+            pixelBytes += bytes(thumbnail) - (previous == null ? 0 : bytes(previous));
+            Iterator<BufferedImage> eldest = images.values().iterator();
+            while (pixelBytes > maxPixelBytes && images.size() > 1) {
+                pixelBytes -= bytes(eldest.next());
+                eldest.remove();
+            }
+        }
+        for (Consumer<BufferedImage> waiting : load.waiting) {
+            waiting.accept(thumbnail);
+        }
+    }
+
+    private static long bytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    // On a worker: the disk copy if there is one, else the source decoded, scaled and saved
+    private BufferedImage read(String source) {
+        Path saved = directory == null ? null : directory.resolve(key(source) + ".png");
+        if (saved != null && Files.isRegularFile(saved)) {
+            try {
+                BufferedImage image = ImageIO.read(saved.toFile());
+                if (image != null) return image;
+            } catch (IOException ignored) {
+                // unreadable copy: decode the source again and overwrite it
+            }
+        }
+        BufferedImage thumbnail;
+        try (InputStream in = open(source)) {
+            thumbnail = decode(in, width, height);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        if (saved != null) {
+            try {
+                Files.createDirectories(directory);
+                Path temp = Files.createTempFile(directory, "thumb", ".tmp");
+                ImageIO.write(thumbnail, "png", temp.toFile());
+                Files.move(temp, saved, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ignored) {
+                // the disk copy is only a shortcut for the next run
+            }
+        }
+        return thumbnail;
+    }
+
+    private static InputStream open(String source) throws IOException {
+        if (source.contains("://")) {
+            URLConnection connection = new URL(source).openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(10000);
+            return connection.getInputStream();
+        }
+        return Files.newInputStream(Path.of(source));
+    }
+
+    /** Decodes an image scaled to fit in width x height, reading no more pixels than twice that size needs. */
+    static BufferedImage decode(InputStream in, int width, int height) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                double ratio = Math.max((double) sourceWidth / width, (double) sourceHeight / height);
+                // Every step-th pixel still leaves twice the thumbnail size to scale down smoothly
+                int step = Math.max(1, (int) (ratio / 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                double scale = Math.min(1.0, Math.min((double) width / decoded.getWidth(), (double) height / decoded.getHeight()));
+                int w = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+                int h = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+                BufferedImage thumbnail = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = thumbnail.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(decoded, 0, 0, w, h, null);
+                g.dispose();
+                return thumbnail;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private String key(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((source + "@" + width + "x" + height).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Fixed-size icon showing the thumbnail of one source at a time; see the class comment. */
+    final class Thumbnail implements Icon {
+        private final JComponent owner;
+        private final Consumer<BufferedImage> arrived = this::arrived;
+        private String source;
+        private BufferedImage image;
+
+        private Thumbnail(JComponent owner) {
+            this.owner = owner;
+        }
+
+        /** Shows the thumbnail of source, or the placeholder while it loads or if source is null. */
+        void show(String source) {
+            if (source != null && source.equals(this.source)) return;
+            if (this.source != null && image == null) {
+                cancel(this.source, arrived);
+            }
+            this.source = source;
+            image = null;
+            if (source == null || !load(source, arrived)) {
+                owner.repaint();
+            }
+        }
+
+        private void arrived(BufferedImage thumbnail) {
+            image = thumbnail;
+            owner.repaint();
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (image == null) {
+                g.setColor(PLACEHOLDER);
+                g.fillRect(x, y, width, height);
+                return;
+            }
+            g.drawImage(image, x + (width - image.getWidth()) / 2, y + (height - image.getHeight()) / 2, null);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return height;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/*
+ * Bitmap against a TreeSet of the same ids, over sets whose chunks of 65536 ids sit on either side
+ * of the 4096-id switch between sorted arrays and bitsets, so every pairing of container kinds is
+ * combined, and results that must switch back are read again.
+ */
+final class BitmapTest {
+    // Ids per chunk: empty, sparse, both sides of the array/bitset boundary, dense and full
+    private static final int[] CHUNK_SIZES = {0, 1, 37, 4095, 4096, 4097, 20_000, 65_535, 65_536};
+    private static final int CHUNKS = 4;
+
+    public static void main(String[] args) {
+        Random random = new Random(20_26);
+        new Check("BitmapTest")
+                .test("addAndContains", () -> {
+                    for (int round = 0; round < 20; round++) {
+                        TreeSet<Integer> expected = randomSet(random);
+                        Integer[] shuffled = expected.toArray(new Integer[0]);
+                        shuffle(shuffled, random);
+                        Bitmap bitmap = new Bitmap();
+                        for (int id : shuffled) {
+                            bitmap.add(id);
+                            bitmap.add(id);
+                        }
+                        same(expected, bitmap);
+                        for (int probe = 0; probe < 2000; probe++) {
+                            int id = random.nextInt(CHUNKS << 16);
+                            Check.equal(expected.contains(id), bitmap.contains(id));
+                        }
+                    }
+                })
+                .test("ofAndRange", () -> {
+                    same(new TreeSet<>(), Bitmap.of(new int[0]));
+                    Check.isTrue(Bitmap.of(new int[0]).isEmpty(), "empty");
+                    same(new TreeSet<>(Arrays.asList(3, 70_000, 5, 3)), Bitmap.of(new int[] {70_000, 3, 5, 3}));
+                    for (int count : new int[] {0, 1, 4096, 4097, 65_536, 65_537, 200_000}) {
+                        TreeSet<Integer> expected = new TreeSet<>();
+                        for (int id = 0; id < count; id++) expected.add(id);
+                        same(expected, Bitmap.range(count));
+                    }
+                })
+                .test("setAlgebra", () -> {
+                    for (int round = 0; round < 60; round++) {
+                        TreeSet<Integer> a = randomSet(random);
+                        TreeSet<Integer> b = round % 5 == 0 ? new TreeSet<>(a) : randomSet(random);
+                        Bitmap x = bitmap(a), y = bitmap(b);
+
+                        TreeSet<Integer> and = new TreeSet<>(a);
+                        and.retainAll(b);
+                        TreeSet<Integer> or = new TreeSet<>(a);
+                        or.addAll(b);
+                        TreeSet<Integer> andNot = new TreeSet<>(a);
+                        andNot.removeAll(b);
+
+                        same(and, x.and(y));
+                        same(and, y.and(x));
+                        same(or, x.or(y));
+                        same(andNot, x.andNot(y));
+                        Check.equal(and.size(), x.andCardinality(y));
+                        Check.equal(and.size(), y.andCardinality(x));
+                        // Results that changed container kind combine like any other bitmap
+                        same(andNot, x.andNot(y).or(x.and(y)).andNot(y));
+                        // and the operands are left as they were
+                        same(a, x);
+                        same(b, y);
+                    }
+                })
+                .test("selectAndCursor", () -> {
+                    for (int round = 0; round < 20; round++) {
+                        TreeSet<Integer> expected = randomSet(random);
+                        Bitmap bitmap = bitmap(expected);
+                        Integer[] ids = expected.toArray(new Integer[0]);
+                        for (int rank = 0; rank < ids.length; rank += 1 + random.nextInt(97)) {
+                            Check.equal((int) ids[rank], bitmap.select(rank));
+                        }
+                        if (ids.length > 0) {
+                            Check.equal((int) ids[ids.length - 1], bitmap.select(ids.length - 1));
+                        }
+                        for (int start : new int[] {0, ids.length / 3, Math.max(0, ids.length - 1), ids.length,
+                                random.nextInt(ids.length + 1)}) {
+                            Bitmap.Cursor cursor = bitmap.cursor(start);
+                            for (int rank = start; rank < ids.length; rank++) {
+                                Check.isTrue(cursor.hasNext(), "cursor from " + start + " ended at " + rank);
+                                Check.equal((int) ids[rank], cursor.next());
+                            }
+                            Check.isTrue(!cursor.hasNext(), "cursor from " + start + " ran past the end");
+                        }
+                        Check.fails(IndexOutOfBoundsException.class, () -> bitmap.select(ids.length));
+                        Check.fails(IndexOutOfBoundsException.class, () -> bitmap.select(-1));
+                        Check.fails(IndexOutOfBoundsException.class, () -> bitmap.cursor(ids.length + 1));
+                    }
+                })
+                .test("selectAfterAdd", () -> {
+                    Bitmap bitmap = Bitmap.of(new int[] {10, 20});
+                    Check.equal(20, bitmap.select(1));
+                    bitmap.add(15);
+                    Check.equal(15, bitmap.select(1));
+                    Check.equal(20, bitmap.cursor(2).next());
+                })
+                .test("copyIsIndependent", () -> {
+                    TreeSet<Integer> expected = randomSet(random);
+                    Bitmap original = bitmap(expected);
+                    Bitmap copy = original.copy();
+                    for (int id = 0; id < (CHUNKS << 16); id += 7) {
+                        copy.add(id);
+                    }
+                    same(expected, original);
+                    TreeSet<Integer> grown = new TreeSet<>(expected);
+                    for (int id = 0; id < (CHUNKS << 16); id += 7) grown.add(id);
+                    same(grown, copy);
+                })
+                .done();
+    }
+
+    // Each chunk gets one of CHUNK_SIZES random ids
+    private static TreeSet<Integer> randomSet(Random random) {
+        TreeSet<Integer> ids = new TreeSet<>();
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int size = CHUNK_SIZES[random.nextInt(CHUNK_SIZES.length)];
+            int base = chunk << 16;
+            if (size > 40_000) {
+                // Dense: start full and take ids out until size are left
+                TreeSet<Integer> full = new TreeSet<>();
+                for (int low = 0; low < 65_536; low++) full.add(base + low);
+                while (full.size() > size) full.remove(base + random.nextInt(65_536));
+                ids.addAll(full);
+            } else {
+                TreeSet<Integer> some = new TreeSet<>();
+                while (some.size() < size) some.add(base + random.nextInt(65_536));
+                ids.addAll(some);
+            }
+        }
+        return ids;
+    }
+
+    private static Bitmap bitmap(TreeSet<Integer> ids) {
+        return Bitmap.of(ids.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static void same(TreeSet<Integer> expected, Bitmap actual) {
+        Check.equal(expected.size(), actual.cardinality());
+        Check.equal(expected.isEmpty(), actual.isEmpty());
+        Check.isTrue(Arrays.equals(expected.stream().mapToInt(Integer::intValue).toArray(), actual.toArray()),
+                "ids differ from the expected " + expected.size());
+    }
+
+    private static void shuffle(Integer[] ids, Random random) {
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer swap = ids[i];
+            ids[i] = ids[j];
+            ids[j] = swap;
+        }
+    }
+}
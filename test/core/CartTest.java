@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Cart: the running total and item count it keeps by adjusting them on every change, checked against
+ * a recount of its lines and against a plain list that merges lines the same way, over random adds,
+ * reprices, quantity changes and removes; and indexOf(productId) as the lines before a product move.
+ */
+final class CartTest {
+    private static final Money.Currency INR = Money.Currency.INR;
+    private static final int PRODUCTS = 12;
+
+    public static void main(String[] args) {
+        Random random = new Random(20_26);
+        new Check("CartTest")
+                .test("mergesByProductId", () -> {
+                    Cart cart = new Cart(INR);
+                    Check.equal(0, cart.add(7, "Mug", Money.of(29900, INR), 1));
+                    Check.equal(1, cart.add(3, "Racket", Money.of(349900, INR), 2));
+                    Check.equal(0, cart.add(7, "Mug", Money.of(29900, INR), 2));
+                    Check.equal(2, cart.size());
+                    Check.equal(3, cart.line(0).quantity());
+                    Check.equal(5, cart.itemCount());
+                    Check.equal(Money.of(3 * 29900 + 2 * 349900, INR), cart.total());
+                })
+                .test("repriceKeepsThePlace", () -> {
+                    Cart cart = new Cart(INR);
+                    cart.add(1, "Headphones", Money.of(299900, INR), 1);
+                    cart.add(2, "Case", Money.of(49900, INR), 1);
+                    Events events = new Events(cart);
+                    Check.equal(0, cart.add(1, "Headphones", Money.of(249900, INR), 1));
+                    Check.equal("updated 0..0", events.last);
+                    Check.equal(Money.of(249900, INR), cart.line(0).unitPrice);
+                    Check.equal(2, cart.line(0).quantity());
+                    Check.equal(Money.of(2 * 249900 + 49900, INR), cart.total());
+                    Check.equal(0, cart.indexOf(1));
+                    Check.equal(1, cart.indexOf(2));
+                })
+                .test("linesWithoutIdMergeByNameAndPrice", () -> {
+                    Cart cart = new Cart(INR);
+                    Check.equal(0, cart.add("Mug", Money.of(29900, INR)));
+                    Check.equal(0, cart.add("Mug", Money.of(29900, INR), 2));
+                    Check.equal(1, cart.add("Mug", Money.of(19900, INR)));
+                    Check.equal(2, cart.add(4, "Mug", Money.of(29900, INR), 1));
+                    Check.equal(3, cart.line(0).quantity());
+                    Check.equal(-1, cart.line(0).productId);
+                    Check.equal(2, cart.indexOf(4));
+                    Check.equal(-1, cart.indexOf(5));
+                })
+                .test("indexOfAfterRemoves", () -> {
+                    Cart cart = new Cart(INR);
+                    for (int id = 0; id < 5; id++) {
+                        cart.add(id, "Product " + id, Money.of(1000 + id, INR), 1);
+                    }
+                    cart.remove(1);
+                    cart.setQuantity(cart.indexOf(3), 0);
+                    Check.equal(0, cart.indexOf(0));
+                    Check.equal(-1, cart.indexOf(1));
+                    Check.equal(1, cart.indexOf(2));
+                    Check.equal(-1, cart.indexOf(3));
+                    Check.equal(2, cart.indexOf(4));
+                    // A removed product added again gets a new line at the end
+                    Check.equal(3, cart.add(1, "Product 1", Money.of(1001, INR), 1));
+                    cart.clear();
+                    Check.equal(-1, cart.indexOf(4));
+                    Check.isTrue(cart.isEmpty(), "cleared");
+                })
+                .test("rejectsBadAdds", () -> {
+                    Cart cart = new Cart(INR);
+                    Check.fails(IllegalArgumentException.class, () -> cart.add(1, "Mug", Money.of(100, Money.Currency.USD), 1));
+                    Check.fails(IllegalArgumentException.class, () -> cart.add(1, "Mug", Money.of(100, INR), 0));
+                    Check.fails(ArithmeticException.class, () -> {
+                        cart.add(2, "Mug", Money.of(100, INR), Integer.MAX_VALUE);
+                        cart.add(2, "Mug", Money.of(100, INR), 1);
+                    });
+                    Check.equal(1, cart.size());
+                    Check.equal(Integer.MAX_VALUE, cart.itemCount());
+                })
+                .test("runningTotalsMatchRecount", () -> {
+                    for (int round = 0; round < 50; round++) {
+                        Cart cart = new Cart(INR);
+                        Events events = new Events(cart);
+                        List<Expected> expected = new ArrayList<>();
+                        long[] prices = new long[PRODUCTS];
+                        for (int id = 0; id < PRODUCTS; id++) {
+                            prices[id] = 100 + random.nextInt(100_000);
+                        }
+                        for (int step = 0; step < 400; step++) {
+                            int op = random.nextInt(20);
+                            if (op < 8) {
+                                int id = random.nextInt(PRODUCTS);
+                                if (random.nextInt(5) == 0) {
+                                    prices[id] = 100 + random.nextInt(100_000);
+                                }
+                                int quantity = 1 + random.nextInt(3);
+                                int index = cart.add(id, "Product " + id, Money.of(prices[id], INR), quantity);
+                                Check.equal(add(expected, id, "Product " + id, prices[id], quantity), index);
+                            } else if (op < 11) {
+                                String name = "Loose " + random.nextInt(3);
+                                long price = 100 * (1 + random.nextInt(2));
+                                int quantity = 1 + random.nextInt(3);
+                                int index = cart.add(name, Money.of(price, INR), quantity);
+                                Check.equal(add(expected, -1, name, price, quantity), index);
+                            } else if (op < 15 && !expected.isEmpty()) {
+                                int index = random.nextInt(expected.size());
+                                int quantity = random.nextInt(4);
+                                cart.setQuantity(index, quantity);
+                                if (quantity == 0) {
+                                    expected.remove(index);
+                                } else {
+                                    expected.get(index).quantity = quantity;
+                                }
+                            } else if (op < 19 && !expected.isEmpty()) {
+                                int index = random.nextInt(expected.size());
+                                cart.remove(index);
+                                expected.remove(index);
+                            } else if (op == 19 && random.nextInt(10) == 0) {
+                                cart.clear();
+                                expected.clear();
+                            }
+                            same(expected, cart);
+                            Check.equal(cart.size(), events.lines);
+                        }
+                    }
+                })
+                .done();
+    }
+
+    // The line a cart should hold, kept apart from Cart.Line so the test does not share its bookkeeping
+    private static final class Expected {
+        final int productId;
+        final String name;
+        long price;
+        int quantity;
+
+        Expected(int productId, String name, long price, int quantity) {
+            this.productId = productId;
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+        }
+    }
+
+    // What Cart.add should do, by searching the lines: returns the index of the line added to
+    private static int add(List<Expected> lines, int productId, String name, long price, int quantity) {
+        for (int i = 0; i < lines.size(); i++) {
+            Expected line = lines.get(i);
+            boolean same = productId >= 0
+                    ? line.productId == productId
+                    : line.productId < 0 && line.name.equals(name) && line.price == price;
+            if (same) {
+                line.price = price;
+                line.quantity += quantity;
+                return i;
+            }
+        }
+        lines.add(new Expected(productId, name, price, quantity));
+        return lines.size() - 1;
+    }
+
+    // Compares the cart with the expected lines, and its running totals with a recount of its own lines
+    private static void same(List<Expected> expected, Cart cart) {
+        List<Cart.Line> lines = cart.lines();
+        Check.equal(expected.size(), lines.size());
+        long total = 0;
+        int items = 0;
+        long recount = 0;
+        int recountItems = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            Cart.Line line = lines.get(i);
+            Expected want = expected.get(i);
+            Check.equal(want.productId, line.productId);
+            Check.equal(want.name, line.name);
+            Check.equal(want.price, line.unitPrice.minor());
+            Check.equal(want.quantity, line.quantity());
+            Check.equal(Money.of(want.price * want.quantity, INR), line.total());
+            total += want.price * want.quantity;
+            items += want.quantity;
+            recount += line.unitPrice.minor() * line.quantity();
+            recountItems += line.quantity();
+        }
+        Check.equal(Money.of(total, INR), cart.total());
+        Check.equal(Money.of(recount, INR), cart.total());
+        Check.equal(items, cart.itemCount());
+        Check.equal(recountItems, cart.itemCount());
+        Check.equal(expected.isEmpty(), cart.isEmpty());
+        for (int id = 0; id < PRODUCTS; id++) {
+            int index = -1;
+            for (int i = 0; i < expected.size(); i++) {
+                if (expected.get(i).productId == id) {
+                    index = i;
+                }
+            }
+            Check.equal(index, cart.indexOf(id));
+        }
+    }
+
+    // Follows a cart's line count from its listener events alone, as a table model would
+    private static final class Events implements Cart.Listener {
+        int lines;
+        String last;
+
+        Events(Cart cart) {
+            lines = cart.size();
+            cart.addListener(this);
+        }
+
+        @Override
+        public void linesInserted(int first, int last) {
+            lines += last - first + 1;
+            this.last = "inserted " + first + ".." + last;
+        }
+
+        @Override
+        public void linesUpdated(int first, int last) {
+            this.last = "updated " + first + ".." + last;
+        }
+
+        @Override
+        public void linesDeleted(int first, int last) {
+            lines -= last - first + 1;
+            this.last = "deleted " + first + ".." + last;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/*
+ * CatalogFile: a written catalog reads back the same, and a damaged file fails to open with an
+ * IOException instead of failing later on a table row.
+ */
+final class CatalogFileTest {
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("catalog-file-test");
+        try {
+            run(dir);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static void run(Path dir) {
+        new Check("CatalogFileTest")
+                .test("roundTrip", () -> {
+                    CatalogSnapshot catalog = sample().snapshot();
+                    Path path = dir.resolve("round-trip.bin");
+                    CatalogFile.write(catalog, path);
+                    try (CatalogFile file = CatalogFile.open(path)) {
+                        Check.equal(catalog.size(), file.size());
+                        Check.equal(catalog.currency(), file.currency());
+                        for (int id = 0; id < catalog.size(); id++) {
+                            Check.equal(catalog.name(id), file.name(id));
+                            Check.equal(catalog.description(id), file.description(id));
+                            Check.equal(catalog.price(id), file.price(id));
+                            Check.equal(catalog.category(id), file.category(id));
+                        }
+                        Check.equal(catalog.categoryCount(), file.categoryCount());
+                        for (int code = 0; code < catalog.categoryCount(); code++) {
+                            String category = catalog.categoryName(code);
+                            Check.isTrue(Arrays.equals(catalog.productsIn(category), file.productsIn(category)), "rows of " + category);
+                        }
+                        Check.equal(0, file.productsIn("No such category").length);
+                    }
+                })
+                .test("emptyCatalog", () -> {
+                    Path path = dir.resolve("empty.bin");
+                    CatalogFile.write(new CatalogStore(Money.Currency.USD).snapshot(), path);
+                    try (CatalogFile file = CatalogFile.open(path)) {
+                        Check.equal(0, file.size());
+                        Check.equal(0, file.categoryCount());
+                        Check.equal(Money.Currency.USD, file.currency());
+                    }
+                })
+                .test("rejectsShortFile", () -> {
+                    Path path = dir.resolve("short.bin");
+                    Files.write(path, new byte[10]);
+                    openFails(path);
+                })
+                .test("rejectsBadMagic", () -> openFails(damaged(dir, "magic", buffer -> buffer.putInt(0, 0x12345678))))
+                .test("rejectsUnknownVersion", () -> openFails(damaged(dir, "version", buffer -> buffer.putShort(4, (short) 99))))
+                .test("rejectsUnknownCurrency", () -> openFails(damaged(dir, "currency", buffer -> buffer.putShort(6, (short) 7))))
+                .test("rejectsNegativeProductCount", () -> openFails(damaged(dir, "count", buffer -> buffer.putInt(8, -1))))
+                .test("rejectsTablesOutsideFile", () -> {
+                    openFails(damaged(dir, "offsets", buffer -> buffer.putLong(24, buffer.capacity())));
+                    openFails(damaged(dir, "categories", buffer -> buffer.putLong(16, Long.MAX_VALUE)));
+                    openFails(damaged(dir, "category-count", buffer -> buffer.putInt(12, Integer.MAX_VALUE)));
+                })
+                .test("rejectsTruncatedFile", () -> {
+                    byte[] bytes = written(dir);
+                    for (int cut : new int[] {1, 8, 20, bytes.length / 2}) {
+                        Path path = dir.resolve("truncated-" + cut + ".bin");
+                        Files.write(path, Arrays.copyOf(bytes, bytes.length - cut));
+                        openFails(path);
+                    }
+                })
+                .done();
+    }
+
+    private static CatalogStore sample() {
+        CatalogStore store = new CatalogStore(Money.Currency.INR);
+        store.add("Electronics", "Headphones", "Over-ear, noise cancelling", Money.parse("₹2999", Money.Currency.INR));
+        store.add("Clothing", "T-Shirt", Money.parse("₹499", Money.Currency.INR));
+        store.add("Electronics", "Smartphone", "6.5\" screen, 128 GB — ünïcödé", Money.parse("₹14999.50", Money.Currency.INR));
+        store.add("Home & Garden", "Coffee Mug", "", Money.parse("₹299", Money.Currency.INR));
+        return store;
+    }
+
+    private static byte[] written(Path dir) throws Exception {
+        Path path = dir.resolve("source.bin");
+        CatalogFile.write(sample().snapshot(), path);
+        return Files.readAllBytes(path);
+    }
+
+    private interface Damage {
+        void apply(ByteBuffer file);
+    }
+
+    private static Path damaged(Path dir, String name, Damage damage) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(written(dir));
+        damage.apply(buffer);
+        Path path = dir.resolve("damaged-" + name + ".bin");
+        Files.write(path, buffer.array());
+        return path;
+    }
+
+    private static void openFails(Path path) {
+        Check.fails(IOException.class, () -> CatalogFile.open(path).close());
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * The few assertions the tests under test/ need, so they run with nothing but a JDK.
+ *
+ * A test class is a main() that hands its cases to run(); every case runs even after one fails, the
+ * failures are printed with their names, and the JVM exits with status 1 if there were any.
+ */
+final class Check {
+    interface Case {
+        void run() throws Exception;
+    }
+
+    private final String suite;
+    private final List<String> failures = new ArrayList<>();
+    private int passed;
+
+    Check(String suite) {
+        this.suite = suite;
+    }
+
+    Check test(String name, Case test) {
+        try {
+            test.run();
+            passed++;
+        } catch (Exception | AssertionError e) {
+            failures.add(name + ": " + e);
+        }
+        return this;
+    }
+
+    /** Prints the outcome and exits with status 1 if any case failed. */
+    void done() {
+        for (String failure : failures) {
+            System.out.println("FAIL " + suite + "." + failure);
+        }
+        System.out.println(suite + ": " + passed + " passed, " + failures.size() + " failed");
+        if (!failures.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    static void equal(Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError("expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    static void isTrue(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    /** Runs code and returns what it threw, failing unless that is a type. */
+    static <E extends Throwable> E fails(Class<E> type, Case code) {
+        try {
+            code.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError("expected " + type.getSimpleName() + " but got " + e, e);
+        }
+        throw new AssertionError("expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+}
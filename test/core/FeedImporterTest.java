@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * FeedImporter: CSV and JSON-lines feeds land in the store in file order across chunks, and a bad
+ * line is counted and reported on its own while the lines around it are still imported.
+ */
+final class FeedImporterTest {
+    private static final Money.Currency INR = Money.Currency.INR;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("feed-importer-test");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // Two lines a chunk and two chunks in flight, so even these small feeds span several chunks
+        FeedImporter importer = new FeedImporter(null, INR, 2, 2, pool);
+        try {
+            new Check("FeedImporterTest")
+                    .test("importsCsvInFileOrder", () -> {
+                        CatalogStore store = new CatalogStore(INR);
+                        FeedImporter.Report report = importer.importInto(feed(dir, "products.csv",
+                                "name,price,category,description",
+                                "Headphones,2999,Electronics,Over-ear",
+                                "\"Mug, large\",₹299.50,Home & Garden,",
+                                "T-Shirt,499,Clothing,\"Cotton, \"\"crew\"\" neck\"",
+                                "Yoga Mat,\"1,299\",Sports"), store);
+                        Check.equal(4L, report.rows);
+                        Check.equal(0L, report.rejected);
+                        CatalogSnapshot catalog = store.snapshot();
+                        Check.equal("Headphones", catalog.name(0));
+                        Check.equal("Mug, large", catalog.name(1));
+                        Check.equal(Money.of(29950, INR), catalog.price(1));
+                        Check.equal("Cotton, \"crew\" neck", catalog.description(2));
+                        Check.equal("Sports", catalog.category(3));
+                        Check.equal(Money.of(129900, INR), catalog.price(3));
+                        Check.equal("", catalog.description(3));
+                    })
+                    .test("importsJsonLines", () -> {
+                        CatalogStore store = new CatalogStore(INR);
+                        FeedImporter.Report report = importer.importInto(feed(dir, "products.jsonl",
+                                "{\"category\": \"Electronics\", \"name\": \"Smart\\u0070hone\", \"price\": 14999}",
+                                "",
+                                "{\"name\":\"Tab\\tlet\",\"category\":\"Electronics\",\"price\":\"₹9999.5\",\"description\":\"10\\\" \\u00fcber\"}"), store);
+                        Check.equal(2L, report.rows);
+                        Check.equal(0L, report.rejected);
+                        CatalogSnapshot catalog = store.snapshot();
+                        Check.equal("Smartphone", catalog.name(0));
+                        Check.equal("Tab\tlet", catalog.name(1));
+                        Check.equal("10\" über", catalog.description(1));
+                        Check.equal(Money.of(999950, INR), catalog.price(1));
+                    })
+                    .test("badEscapeRejectsOnlyItsLine", () -> {
+                        CatalogStore store = new CatalogStore(INR);
+                        FeedImporter.Report report = importer.importInto(feed(dir, "escapes.jsonl",
+                                "{\"category\":\"Sports\",\"name\":\"Ball\",\"price\":499}",
+                                "{\"category\":\"Sports\",\"name\":\"Bad \\u12G4\",\"price\":499}",
+                                "{\"category\":\"Sports\",\"name\":\"Short \\u12\",\"price\":499}",
+                                "{\"category\":\"Sports\",\"name\":\"Bat\",\"price\":999}"), store);
+                        Check.equal(2L, report.rows);
+                        Check.equal(2L, report.rejected);
+                        Check.equal("line 2: not a flat JSON object", report.errors.get(0));
+                        Check.equal("line 3: not a flat JSON object", report.errors.get(1));
+                        CatalogSnapshot catalog = store.snapshot();
+                        Check.equal("Ball", catalog.name(0));
+                        Check.equal("Bat", catalog.name(1));
+                    })
+                    .test("rejectsInvalidRowsWithLineNumbers", () -> {
+                        CatalogStore store = new CatalogStore(INR);
+                        FeedImporter strict = new FeedImporter(Set.of("Electronics"), INR, 2, 2, pool);
+                        FeedImporter.Report report = strict.importInto(feed(dir, "invalid.csv",
+                                "category,name,price",
+                                "Electronics,Headphones,2999",
+                                "Electronics,,100",
+                                "Toys,Kite,100",
+                                "Electronics,Cable,$5",
+                                "Electronics,Charger,0",
+                                "Electronics,Adapter,abc",
+                                "Electronics,Mouse"), store);
+                        Check.equal(1L, report.rows);
+                        Check.equal(6L, report.rejected);
+                        Check.equal("line 3: empty name", report.errors.get(0));
+                        Check.equal("line 4: unknown category \"Toys\"", report.errors.get(1));
+                        Check.equal("line 5: price $5 is not in INR", report.errors.get(2));
+                        Check.equal("line 6: price must be positive: 0", report.errors.get(3));
+                        Check.equal("line 8: missing category, name or price", report.errors.get(5));
+                        Check.equal(1, store.size());
+                    })
+                    .test("rejectsFeedWithoutHeader", () -> {
+                        Check.fails(IOException.class, () -> importer.importInto(feed(dir, "empty.csv"), new CatalogStore(INR)));
+                        Check.fails(IOException.class, () -> importer.importInto(feed(dir, "columns.csv", "title,cost"), new CatalogStore(INR)));
+                    })
+                    .test("parsesFlatJsonOnly", () -> {
+                        HashMap<String, String> fields = FeedImporter.parseJsonObject(" { \"a\" : \"x\" , \"b\":12 } ");
+                        Check.equal("x", fields.get("a"));
+                        Check.equal("12", fields.get("b"));
+                        Check.equal(0, FeedImporter.parseJsonObject("{}").size());
+                        Check.equal(null, FeedImporter.parseJsonObject("{\"a\":\"x\""));
+                        Check.equal(null, FeedImporter.parseJsonObject("[1,2]"));
+                        Check.equal(null, FeedImporter.parseJsonObject("{\"a\" \"x\"}"));
+                    })
+                    .done();
+        } finally {
+            pool.shutdown();
+            for (String name : new String[] {"products.csv", "products.jsonl", "escapes.jsonl", "invalid.csv", "empty.csv", "columns.csv"}) {
+                Files.deleteIfExists(dir.resolve(name));
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static Path feed(Path dir, String name, String... lines) throws IOException {
+        return Files.write(dir.resolve(name), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
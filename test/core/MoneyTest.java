@@ -0,0 +1,56 @@
+/*
+ * Money: parsing the price forms the catalogs and feeds use, display formatting and exact sums.
+ */
+final class MoneyTest {
+    private static final Money.Currency INR = Money.Currency.INR;
+    private static final Money.Currency USD = Money.Currency.USD;
+
+    public static void main(String[] args) {
+        new Check("MoneyTest")
+                .test("parsesSymbolsAndBareAmounts", () -> {
+                    Check.equal(Money.of(1499900, INR), Money.parse("₹14999", USD));
+                    Check.equal(Money.of(5999, USD), Money.parse("$59.99", INR));
+                    Check.equal(Money.of(129950, INR), Money.parse("Rs 1,299.5", USD));
+                    Check.equal(Money.of(4999, USD), Money.parse("49.99", USD));
+                    Check.equal(Money.of(-250, INR), Money.parse(" -2.50", INR));
+                })
+                .test("rejectsMalformedPrices", () -> {
+                    Check.fails(NumberFormatException.class, () -> Money.parse("", INR));
+                    Check.fails(NumberFormatException.class, () -> Money.parse("₹", INR));
+                    Check.fails(NumberFormatException.class, () -> Money.parse("12abc", INR));
+                    Check.fails(NumberFormatException.class, () -> Money.parse("1.999", INR));
+                    Check.fails(NumberFormatException.class, () -> Money.parse("1.2.3", INR));
+                    Check.fails(NumberFormatException.class, () -> Money.parse("99999999999999999999", INR));
+                })
+                .test("formatsByCurrency", () -> {
+                    Check.equal("₹14999", Money.of(1499900, INR).format());
+                    Check.equal("₹14999.05", Money.of(1499905, INR).format());
+                    Check.equal("$59.00", Money.of(5900, USD).format());
+                    Check.equal("$0.50", Money.of(50, USD).format());
+                    Check.equal("-$2.50", Money.of(-250, USD).format());
+                })
+                .test("formatParsesBack", () -> {
+                    for (long minor : new long[] {0, 1, 10, 99, 100, 123456, 1499900}) {
+                        for (Money.Currency currency : Money.Currency.values()) {
+                            Money money = Money.of(minor, currency);
+                            Check.equal(money, Money.parse(money.format(), currency));
+                        }
+                    }
+                })
+                .test("arithmeticIsExact", () -> {
+                    Money total = Money.zero(USD);
+                    for (int i = 0; i < 10; i++) {
+                        total = total.plus(Money.parse("0.10", USD));
+                    }
+                    Check.equal(Money.of(100, USD), total);
+                    Check.equal(Money.of(2997, USD), Money.of(999, USD).times(3));
+                    Check.equal(Money.of(1, USD), Money.of(100, USD).minus(Money.of(99, USD)));
+                })
+                .test("refusesMixedCurrencies", () -> {
+                    Check.fails(IllegalArgumentException.class, () -> Money.of(1, INR).plus(Money.of(1, USD)));
+                    Check.fails(IllegalArgumentException.class, () -> Money.of(1, INR).compareTo(Money.of(1, USD)));
+                    Check.fails(ArithmeticException.class, () -> Money.of(Long.MAX_VALUE / 2, USD).times(3));
+                })
+                .done();
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * QueryParser and QueryPlan: what counts as query syntax, the canonical form a query parses to, the
+ * errors a malformed query reports, and the products a plan finds with and without a text index.
+ */
+final class QueryParserTest {
+    private static final Money.Currency INR = Money.Currency.INR;
+
+    public static void main(String[] args) {
+        VersionedCatalog catalogs = new VersionedCatalog(INR);
+        CatalogStore store = new CatalogStore(INR);
+        store.add("Electronics", "Wireless Headphones", "Noise cancelling, over-ear", Money.parse("2999", INR));
+        store.add("Electronics", "Phone Case", "Steel blue", Money.parse("499", INR));
+        store.add("Home & Garden", "Steel Coffee Mug", "Keeps coffee hot", Money.parse("299", INR));
+        store.add("Sports", "Tennis Racket", "Carbon frame", Money.parse("3499", INR));
+        store.add("Electronics", "Smartphone", "Refurbished, blue", Money.parse("14999", INR));
+        VersionedCatalog.Version version = catalogs.publish(store);
+
+        new Check("QueryParserTest")
+                .test("plainWordsAreNotStructured", () -> {
+                    Check.isTrue(!QueryParser.isStructured("steel mug"), "steel mug");
+                    Check.isTrue(!QueryParser.isStructured("Coffee: hot"), "Coffee:");
+                    Check.isTrue(!QueryParser.isStructured("Note: blue"), "Note:");
+                    Check.isTrue(!QueryParser.isStructured("and or"), "lower-case operators");
+                })
+                .test("syntaxIsStructured", () -> {
+                    for (String query : new String[] {"phone OR case", "-refurbished phone", "NOT blue", "(a b)",
+                            "\"coffee mug\"", "name:steel", "Category:Sports", "price<500", "price:100..500", "\"unclosed"}) {
+                        Check.isTrue(QueryParser.isStructured(query), query);
+                    }
+                })
+                .test("canonicalForms", () -> {
+                    Check.equal("(phone AND case)", parse("Phone case"));
+                    Check.equal("(phone OR tablet)", parse("phone OR tablet"));
+                    Check.equal("((phone OR tablet) AND case)", parse("(phone OR tablet) AND case"));
+                    Check.equal("(a OR (b AND c))", parse("a OR b c"));
+                    Check.equal("(a AND b AND c)", parse("a (b c)"));
+                    Check.equal("(phone AND NOT refurbished)", parse("phone -refurbished"));
+                    Check.equal("blue", parse("NOT NOT blue"));
+                    Check.equal("name:\"coffee mug\"", parse("\"Coffee Mug\""));
+                    Check.equal("category:\"home & garden\"", parse("category:\"Home & Garden\""));
+                    Check.equal("(note: AND blue)", parse("Note: blue"));
+                })
+                .test("priceBounds", () -> {
+                    Check.equal("price:..49999", parse("price<500"));
+                    Check.equal("price:..50000", parse("price<=500"));
+                    Check.equal("price:50001..", parse("price>500"));
+                    Check.equal("price:10000..", parse("PRICE>=100"));
+                    Check.equal("price:10000..50000", parse("price:100..500"));
+                    Check.equal("price:..50000", parse("price:..500"));
+                    Check.equal("price:12345..12345", parse("price=123.45"));
+                })
+                .test("malformedQueries", () -> {
+                    Check.fails(IllegalArgumentException.class, () -> parse(""));
+                    Check.fails(IllegalArgumentException.class, () -> parse("   "));
+                    Check.fails(IllegalArgumentException.class, () -> parse("(phone"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("phone)"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("phone OR"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("\"unclosed"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("price:"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("price<abc"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("price<$5"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("name<steel"));
+                    Check.fails(IllegalArgumentException.class, () -> parse("price=<5"));
+                    String message = Check.fails(IllegalArgumentException.class, () -> parse("phone ) case")).getMessage();
+                    Check.equal("Unexpected ')' at position 7", message);
+                })
+                .test("planFindsProducts", () -> {
+                    TextIndex text = TextIndex.build(version.catalog);
+                    Check.equal("[1, 2]", run(version, text, "steel"));
+                    Check.equal("[2]", run(version, text, "steel -blue"));
+                    Check.equal("[1, 4]", run(version, text, "blue category:electronics"));
+                    Check.equal("[0, 3]", run(version, text, "price>=2999 price<10000"));
+                    Check.equal("[2, 3]", run(version, text, "racket OR (coffee price<300)"));
+                    Check.equal("[2]", run(version, text, "\"coffee mug\""));
+                    Check.equal("[0, 1, 4]", run(version, text, "name:phone"));
+                    Check.equal("[]", run(version, text, "steel category:Sports"));
+                    Check.equal("[0, 1, 3, 4]", run(version, text, "NOT coffee"));
+                })
+                .test("planWithoutTextIndexMatchesNames", () -> {
+                    Check.equal("[0, 1, 4]", run(version, null, "phone"));
+                    Check.equal("[2]", run(version, null, "steel price<400"));
+                })
+                .test("explainOrdersByEstimate", () -> {
+                    QueryPlan plan = QueryPlan.compile(QueryParser.parse("category:Electronics racket", INR), version,
+                            FacetIndex.build(version.catalog), TextIndex.build(version.catalog), ForkJoinPool.commonPool());
+                    String explain = plan.explain();
+                    Check.isTrue(explain.indexOf("racket") < explain.indexOf("lectronics"), explain);
+                    Check.equal("racket", plan.rankingQuery());
+                })
+                .done();
+    }
+
+    private static String parse(String query) {
+        return QueryParser.parse(query, INR).toString();
+    }
+
+    private static String run(VersionedCatalog.Version version, TextIndex text, String query) {
+        QueryPlan plan = QueryPlan.compile(QueryParser.parse(query, INR), version, FacetIndex.build(version.catalog), text,
+                ForkJoinPool.commonPool());
+        return Arrays.toString(plan.execute().toArray());
+    }
+}
@@ -0,0 +1,129 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * MarketplaceServer cart and checkout routes, over HTTP against the sample catalog: reading a cart
+ * never opens one, lines are addressed by product id so a retried DELETE is harmless, and checkout
+ * turns the cart into an order and empties it. A capped search still reports every match.
+ */
+final class MarketplaceServerTest {
+    private static final Pattern ORDER_ID = Pattern.compile("^\\{\"id\":(\\d+),");
+
+    private static MarketplaceServer server;
+    private static Marketplace market;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        market = new Marketplace(Money.Currency.INR, null);
+        market.catalog.openSample();
+        server = new MarketplaceServer(market, new InetSocketAddress("localhost", 0), 64, 8, 500);
+        server.start();
+        try {
+            new Check("MarketplaceServerTest")
+                    .test("readingMissingCartDoesNotOpenIt", () -> {
+                        Response cart = send("GET", "/carts/reader", null);
+                        Check.equal(200, cart.status);
+                        Check.isTrue(cart.body.contains("\"lines\":[]"), cart.body);
+                        Check.isTrue(cart.body.contains("\"itemCount\":0"), cart.body);
+                        Check.equal(null, market.carts.find("reader"));
+                    })
+                    .test("changingMissingCart", () -> {
+                        Check.equal(404, send("PUT", "/carts/ghost/items/1", "{\"quantity\":2}").status);
+                        Check.equal(200, send("DELETE", "/carts/ghost/items/1", null).status);
+                        Check.equal(409, send("POST", "/carts/ghost/checkout", "{}").status);
+                        Check.equal(null, market.carts.find("ghost"));
+                    })
+                    .test("addMergesByProduct", () -> {
+                        Check.equal(200, send("POST", "/carts/merge/items", "{\"productId\":1,\"quantity\":2}").status);
+                        Response cart = send("POST", "/carts/merge/items", "{\"productId\":1}");
+                        Check.equal(200, cart.status);
+                        Check.isTrue(cart.body.contains("\"productId\":1,\"name\":\"Headphones\""), cart.body);
+                        Check.isTrue(cart.body.contains("\"quantity\":3"), cart.body);
+                        Check.isTrue(cart.body.contains("\"itemCount\":3"), cart.body);
+                        Check.isTrue(market.carts.find("merge") != null, "cart opened by adding");
+                    })
+                    .test("linesAreAddressedByProductId", () -> {
+                        send("POST", "/carts/lines/items", "{\"productId\":1}");
+                        send("POST", "/carts/lines/items", "{\"productId\":3,\"quantity\":2}");
+                        Response cart = send("PUT", "/carts/lines/items/3", "{\"quantity\":5}");
+                        Check.equal(200, cart.status);
+                        Check.isTrue(cart.body.contains("\"itemCount\":6"), cart.body);
+                        // Removing product 1 moves product 3 up a line; a retried DELETE of 1 must not remove 3
+                        Check.equal(200, send("DELETE", "/carts/lines/items/1", null).status);
+                        cart = send("DELETE", "/carts/lines/items/1", null);
+                        Check.equal(200, cart.status);
+                        Check.isTrue(cart.body.contains("\"productId\":3"), cart.body);
+                        Check.isTrue(cart.body.contains("\"itemCount\":5"), cart.body);
+                        Check.equal(404, send("PUT", "/carts/lines/items/1", "{\"quantity\":1}").status);
+                        cart = send("PUT", "/carts/lines/items/3", "{\"quantity\":0}");
+                        Check.isTrue(cart.body.contains("\"lines\":[]"), cart.body);
+                    })
+                    .test("rejectsBadInput", () -> {
+                        Check.equal(400, send("POST", "/carts/bad/items", "{\"productId\":9999}").status);
+                        Check.equal(400, send("POST", "/carts/bad/items", "{\"quantity\":1}").status);
+                        Check.equal(400, send("POST", "/carts/bad/items", "{\"productId\":1,\"quantity\":0}").status);
+                        Check.equal(400, send("GET", "/carts/bad%20id", null).status);
+                        Check.equal(400, send("PUT", "/carts/bad/items/abc", "{\"quantity\":1}").status);
+                        Check.equal(null, market.carts.find("bad"));
+                    })
+                    .test("checkoutPlacesOrderAndEmptiesCart", () -> {
+                        send("POST", "/carts/buyer/items", "{\"productId\":1}");
+                        send("POST", "/carts/buyer/items", "{\"productId\":3,\"quantity\":2}");
+                        Response placed = send("POST", "/carts/buyer/checkout", "{\"instructions\":\"Leave at the door\"}");
+                        Check.equal(201, placed.status);
+                        Check.isTrue(placed.body.contains("\"name\":\"Headphones\""), placed.body);
+                        Check.isTrue(placed.body.contains("\"name\":\"Jacket\""), placed.body);
+                        Matcher id = ORDER_ID.matcher(placed.body);
+                        Check.isTrue(id.find(), placed.body);
+                        Response order = send("GET", "/orders/" + id.group(1), null);
+                        Check.equal(200, order.status);
+                        Check.equal(placed.body, order.body);
+                        Check.isTrue(send("GET", "/carts/buyer", null).body.contains("\"lines\":[]"), "cart emptied");
+                        Check.equal(409, send("POST", "/carts/buyer/checkout", "{}").status);
+                        Check.equal(404, send("GET", "/orders/999999", null).status);
+                    })
+                    .test("searchReportsEveryMatch", () -> {
+                        for (int i = 0; i < 60; i++) {
+                            market.catalog.sell("Electronics", "Gizmo " + i, "", Money.of(10000 + i, Money.Currency.INR)).get();
+                        }
+                        Response search = send("GET", "/products?q=gizmo&limit=5", null);
+                        Check.isTrue(search.body.contains("\"total\":60,\"rows\":" + SearchService.SEARCH_LIMIT + ","), search.body);
+                        Response listing = send("GET", "/products?category=Electronics&offset=60", null);
+                        Check.isTrue(listing.body.contains("\"total\":62,\"rows\":62,"), listing.body);
+                        Check.isTrue(listing.body.contains("\"name\":\"Gizmo 58\""), listing.body);
+                    })
+                    .test("closingCart", () -> {
+                        send("POST", "/carts/closing/items", "{\"productId\":1}");
+                        Check.equal(204, send("DELETE", "/carts/closing", null).status);
+                        Check.equal(null, market.carts.find("closing"));
+                        Check.equal(405, send("PATCH", "/carts/closing", null).status);
+                    })
+                    .done();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static Response send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/api" + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return new Response(response.statusCode(), response.body());
+    }
+}